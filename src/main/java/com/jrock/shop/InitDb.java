@@ -2,6 +2,7 @@ package com.jrock.shop;
 
 import com.jrock.shop.domain.*;
 import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.service.OrderSummaryProjection;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,6 +37,7 @@ public class InitDb {
     static class InitService {
 
         private final EntityManager em;
+        private final OrderSummaryProjection orderSummaryProjection;
 
         public void dbInit1() {
             Member member = createMember("userA", "서울", "1", "111-222");
@@ -53,6 +55,7 @@ public class InitDb {
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            orderSummaryProjection.placed(order);
         }
 
         public void dbInit2() {
@@ -71,6 +74,7 @@ public class InitDb {
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            orderSummaryProjection.placed(order);
         }
 
         private Book createBook(String name, int price, int stockQuantity) {
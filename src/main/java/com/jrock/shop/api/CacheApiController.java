@@ -0,0 +1,82 @@
+package com.jrock.shop.api;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 하이버네이트 2차 캐시 region 별 통계
+ *   - hit 비율이 낮은데 put 이 계속 늘어나면 region 크기(ehcache.xml)가 작거나 변경이 잦은 데이터다.
+ *   - 통계는 hibernate.generate_statistics: true 일 때만 쌓인다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class CacheApiController {
+
+    private final EntityManagerFactory emf;
+
+    @GetMapping("/api/cache/regions")
+    public CacheStats cacheRegions() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        List<RegionStats> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(name -> new RegionStats(name, statistics.getCacheRegionStatistics(name)))
+                .collect(toList());
+
+        return new CacheStats(statistics.isStatisticsEnabled(),
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                regions);
+    }
+
+    @Getter
+    static class CacheStats {
+        private final boolean statisticsEnabled;
+        private final long secondLevelCacheHits;
+        private final long secondLevelCacheMisses;
+        private final long queryCacheHits;
+        private final long queryCacheMisses;
+        private final List<RegionStats> regions;
+
+        CacheStats(boolean statisticsEnabled, long secondLevelCacheHits, long secondLevelCacheMisses,
+                   long queryCacheHits, long queryCacheMisses, List<RegionStats> regions) {
+            this.statisticsEnabled = statisticsEnabled;
+            this.secondLevelCacheHits = secondLevelCacheHits;
+            this.secondLevelCacheMisses = secondLevelCacheMisses;
+            this.queryCacheHits = queryCacheHits;
+            this.queryCacheMisses = queryCacheMisses;
+            this.regions = regions;
+        }
+    }
+
+    @Getter
+    static class RegionStats {
+        private final String region;
+        private final long hits;
+        private final long misses;
+        private final long puts;
+        private final long elementsInMemory; // 구현체가 지원하지 않으면 음수
+        private final double hitRate;
+
+        RegionStats(String region, CacheRegionStatistics statistics) {
+            this.region = region;
+            this.hits = statistics.getHitCount();
+            this.misses = statistics.getMissCount();
+            this.puts = statistics.getPutCount();
+            this.elementsInMemory = statistics.getElementCountInMemory();
+            long total = hits + misses;
+            this.hitRate = total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.jrock.shop.api;
+
+import com.jrock.shop.service.CategoryService;
+import com.jrock.shop.service.CategoryTree;
+import com.jrock.shop.service.ItemView;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * 카테고리 트리
+ *   - 트리는 캐시된 스냅샷을 그대로 내려준다. (카테고리가 바뀌기 전까지 쿼리 X)
+ *   - 하위 트리의 상품은 경로 조건 쿼리 한번, 목록은 페이지만큼만 읽고 전체 개수는 미리 세어둔 상품 수(count 쿼리 X)
+ */
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+
+    private final CategoryService categoryService;
+
+    @GetMapping("/api/categories/tree")
+    public CategoryTree tree() {
+        return categoryService.getTree();
+    }
+
+    /**
+     * ex) /api/categories/1/items?page=0&size=20&sort=price,desc (정렬: id, name, price, stockQuantity)
+     */
+    @GetMapping("/api/categories/{id}/items")
+    public Page<ItemView> items(@PathVariable("id") Long id, @PageableDefault(size = 20) Pageable pageable) {
+        return categoryService.findItems(id, pageable);
+    }
+
+    @PostMapping("/api/categories/{id}/items/{itemId}")
+    public ItemChangeResponse addItem(@PathVariable("id") Long id, @PathVariable("itemId") Long itemId) {
+        return new ItemChangeResponse(categoryService.addItem(id, itemId));
+    }
+
+    @DeleteMapping("/api/categories/{id}/items/{itemId}")
+    public ItemChangeResponse removeItem(@PathVariable("id") Long id, @PathVariable("itemId") Long itemId) {
+        return new ItemChangeResponse(categoryService.removeItem(id, itemId));
+    }
+
+    /**
+     * 상품 수 다시 세기 (category_item 을 직접 바꿨을 때)
+     */
+    @PostMapping("/api/categories/item-count/rebuild")
+    public int recountItems() {
+        return categoryService.recountItems();
+    }
+
+    @PostMapping("/api/categories")
+    public CreateCategoryResponse saveCategory(@RequestBody @Valid CreateCategoryRequest request) {
+        return new CreateCategoryResponse(categoryService.saveCategory(request.getName(), request.getParentId()));
+    }
+
+    @Data
+    static class CreateCategoryRequest {
+        @NotEmpty
+        private String name;
+        private Long parentId; // 없으면 루트
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateCategoryResponse {
+        private Long id;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class ItemChangeResponse {
+        private boolean changed; // 이미 있거나(추가) 없으면(삭제) false
+    }
+}
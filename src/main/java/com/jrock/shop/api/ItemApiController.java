@@ -0,0 +1,41 @@
+package com.jrock.shop.api;
+
+import com.jrock.shop.repository.item.ItemSearchIndex;
+import com.jrock.shop.service.ItemService;
+import com.jrock.shop.service.ItemView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * 상품 검색
+ *   - q: 공백으로 나눈 단어가 모두 들어있는 상품 (상품명, 저자/아티스트/감독, isbn), "jpa*" 처럼 * 로 끝나면 접두어
+ *   - 점수 높은 순 (상품명 일치가 저자 일치보다, 드문 단어가 흔한 단어보다 높다)
+ *   - limit: 1 이상 (아니면 400)
+ */
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private final ItemService itemService;
+    private final ItemSearchIndex itemSearchIndex;
+
+    @GetMapping("/api/items/search")
+    public List<ItemView> search(@RequestParam("q") String q,
+                                 @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit 는 1 이상이어야 합니다. limit=" + limit);
+        }
+        return itemService.search(q, limit);
+    }
+
+    @GetMapping("/api/items/search/stats")
+    public ItemSearchIndex.Stats stats() {
+        return itemSearchIndex.stats();
+    }
+}
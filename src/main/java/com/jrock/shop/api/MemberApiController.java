@@ -1,6 +1,8 @@
 package com.jrock.shop.api;
 
 import com.jrock.shop.domain.Member;
+import com.jrock.shop.repository.member.MemberNameIndex;
+import com.jrock.shop.repository.member.MemberNameTrigramIndex;
 import com.jrock.shop.service.MemberService;
 import lombok.*;
 import org.springframework.web.bind.annotation.*;
@@ -15,6 +17,8 @@ import java.util.stream.Collectors;
 public class MemberApiController {
 
     private final MemberService memberService;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberNameTrigramIndex memberNameTrigramIndex;
 
     /**
      * 조회 V1: 응답 값으로 엔티티를 직접 외부에 노출한다.
@@ -48,6 +52,22 @@ public class MemberApiController {
         return new Result(collect.size(), collect);
     }
 
+    /**
+     * 중복 회원 검증 블룸 필터 통계 (쿼리 없이 통과한 수, exists 쿼리 수, 오탐 수)
+     */
+    @GetMapping("/api/members/name-filter")
+    public MemberNameIndex.Stats memberNameFilterStats() {
+        return memberNameIndex.stats();
+    }
+
+    /**
+     * 주문 검색 회원명 트라이그램 인덱스 통계 (member_id in 으로 검색한 수, like 로 검색한 수)
+     */
+    @GetMapping("/api/members/name-search")
+    public MemberNameTrigramIndex.Stats memberNameSearchStats() {
+        return memberNameTrigramIndex.stats();
+    }
+
     @Data
     @AllArgsConstructor
     class Result<T> {
@@ -1,24 +1,59 @@
 package com.jrock.shop.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.jrock.shop.domain.Address;
 import com.jrock.shop.domain.Order;
 import com.jrock.shop.domain.OrderItem;
 import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.repository.OrderCursor;
+import com.jrock.shop.repository.OrderCursorSort;
 import com.jrock.shop.repository.OrderRepository;
 import com.jrock.shop.repository.OrderSearch;
+import com.jrock.shop.repository.OrderSearchDto;
+import com.jrock.shop.repository.OrderSlice;
+import com.jrock.shop.repository.order.query.OrderFlatAssembler;
 import com.jrock.shop.repository.order.query.OrderFlatDto;
-import com.jrock.shop.repository.order.query.OrderItemQueryDto;
+import com.jrock.shop.repository.order.query.OrderQueryCache;
 import com.jrock.shop.repository.order.query.OrderQueryDto;
 import com.jrock.shop.repository.order.query.OrderQueryRepository;
+import com.jrock.shop.repository.order.strategy.AdaptiveOrderReader;
+import com.jrock.shop.service.BulkCancelResult;
+import com.jrock.shop.service.CartLine;
+import com.jrock.shop.service.OrderFacade;
+import com.jrock.shop.service.OrderIdempotency;
+import com.jrock.shop.service.OrderIngestion;
+import com.jrock.shop.service.OrderLine;
+import com.jrock.shop.service.OrderLineResult;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.stream.Collectors.*;
 
@@ -91,6 +126,14 @@ public class OrderApiController {
 
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final OrderQueryCache orderQueryCache;
+    private final AdaptiveOrderReader adaptiveOrderReader;
+    private final ObjectMapper objectMapper;
+    private final OrderFacade orderFacade;
+    private final OrderIngestion orderIngestion;
+    private final OrderIdempotency orderIdempotency;
+
+    private static final String NDJSON = "application/x-ndjson";
 
     /**
      * V1. 엔티티 직접 노출
@@ -115,6 +158,16 @@ public class OrderApiController {
         return all;
     }
 
+    /**
+     * 주문 검색 (회원명, 상태, 주문일 기간, 상품, 주문 총액)
+     *   - ex) /api/v1/orders/search?orderStatus=ORDER&orderDateFrom=2021-01-01&orderDateTo=2021-01-31&itemId=1&minTotalPrice=50000
+     *   - QueryDSL 로 DTO 만 조회한다. (최근 주문 순, 최대 1000건)
+     */
+    @GetMapping("/api/v1/orders/search")
+    public List<OrderSearchDto> searchOrders(@ModelAttribute OrderSearch orderSearch) {
+        return orderRepository.findAll(orderSearch);
+    }
+
     /**
      * V2. 엔티티를 DTO로 변환
      *
@@ -190,6 +243,26 @@ public class OrderApiController {
         return result;
     }
 
+    /**
+     * V3.1 커서(키셋) 페이징
+     *   - offset 페이징은 페이지가 깊어질수록 DB가 앞의 row 를 다 읽고 버리므로 느려진다.
+     *   - 첫 페이지는 cursor 없이 호출하고, 응답의 nextCursor 를 그대로 다음 요청의 cursor 로 넘긴다. (nextCursor 가 null 이면 마지막 페이지)
+     *   - sort: ID(기본) 또는 ORDER_DATE, 커서에 정렬 기준이 들어있으므로 두번째 페이지부터는 cursor 의 정렬을 따른다.
+     *   - 컬렉션(orderItems)은 V3.1과 동일하게 @BatchSize 로 최적화
+     */
+    @GetMapping("/api/v3.1/orders/cursor")
+    public OrderCursorResult<List<OrderDto>> ordersV3_cursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                                            @RequestParam(value = "sort", defaultValue = "ID") OrderCursorSort sort,
+                                                            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        OrderCursor orderCursor = StringUtils.hasText(cursor) ? OrderCursor.decode(cursor) : null;
+        OrderSlice<Order> slice = orderRepository.findAllWithMemberDelivery(orderCursor, sort, limit);
+
+        List<OrderDto> result = slice.getContent().stream()
+                .map(OrderDto::new)
+                .collect(toList());
+        return new OrderCursorResult<>(result, slice.hasNext() ? slice.getNextCursor().encode() : null);
+    }
+
     /**
      * V4: JPA에서 DTO 직접 조회
      * Query: 루트 1번, 컬렉션 N 번 실행
@@ -223,6 +296,39 @@ public class OrderApiController {
         return orderQueryDtos;
     }
 
+    /**
+     * V5: 주문 한건 조회 (캐시)
+     *   - 같은 주문을 반복해서 조회하는 경우가 많아서 OrderQueryCache 를 먼저 본다. (read-through)
+     *   - 주문/취소, 회원명/상품명 변경은 커밋 후에 캐시에서 지운다.
+     */
+    @GetMapping("/api/v5/orders/{orderId}")
+    public OrderQueryDto orderV5(@PathVariable("orderId") Long orderId) {
+        OrderQueryDto order = orderQueryRepository.findOne(orderId);
+        if (order == null) {
+            throw new IllegalArgumentException("주문이 존재하지 않습니다. orderId=" + orderId);
+        }
+        return order;
+    }
+
+    /**
+     * 주문 캐시 통계 (크기, 가중치, hit/miss, hit rate, eviction)
+     */
+    @GetMapping("/api/v5/orders/cache")
+    public OrderQueryCache.Stats orderCacheStats() {
+        return orderQueryCache.stats();
+    }
+
+    /**
+     * V5.1: V5 페이징
+     *   - 루트(ToOne) 쿼리만 페이징 하고, 컬렉션은 해당 페이지의 orderId 로만 IN 절 조회 (1 + 1 + count)
+     *   - count 쿼리는 delivery 조인을 빼고 실행, 첫 페이지가 페이지 크기보다 작으면 count 쿼리를 생략한다.
+     *   - ex) /api/v5.1/orders?page=0&size=100
+     */
+    @GetMapping("/api/v5.1/orders")
+    public Page<OrderQueryDto> ordersV5_page(@PageableDefault(size = 100) Pageable pageable) {
+        return orderQueryRepository.findAllByDto_optimization(pageable);
+    }
+
     /**
      * V6: JPA에서 DTO로 직접 조회, 플랫 데이터 최적화
      *
@@ -231,21 +337,168 @@ public class OrderApiController {
      *   - 쿼리는 한번이지만 조인으로 인해 DB에서 애플리케이션에 전달하는 데이터에 중복 데이터가 추가되므로 상황에 따라 V5 보다 더 느릴 수 도 있다.
      *   - 애플리케이션에서 추가 작업이 크다.
      *   - 페이징 불가능
+     *
+     * 이전에는 groupingBy 로 키 전용 OrderQueryDto 를 만들어 묶고, entrySet 에서 다시 DTO 를 만들었다.
+     *   - 주문당 DTO 를 두번 생성하고, OrderQueryDto 의 equals/hashCode 에 의존하고, HashMap 이라 순서가 보장되지 않았다.
      */
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> ordersV6() {
         List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
 
-        return flats.stream()
-                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(),
-                                o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        mapping(o -> new OrderItemQueryDto(o.getOrderId(),
-                                o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-                )).entrySet().stream()
-                .map(e -> new OrderQueryDto(e.getKey().getOrderId(),
-                        e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),
-                        e.getKey().getAddress(), e.getValue()))
-                .collect(toList());
+        // 주문 id 순으로 정렬된 row 를 한번에 훑어서 조립한다. (groupingBy 처럼 중간 Map, 키 DTO 를 만들지 않고 순서도 유지)
+        return OrderFlatAssembler.collapse(flats);
+    }
+
+    /**
+     * V7: 실행 통계로 조회 전략을 자동 선택 (fetch-join, batch-fetch, dto-1+1, flat-dto)
+     *   - 주문 건수, 주문당 orderItem 수, 응답 시간에 따라 가장 빠른 전략이 달라지므로 AdaptiveOrderReader 가 고른다.
+     */
+    @GetMapping("/api/v7/orders")
+    public List<OrderQueryDto> ordersV7() {
+        return adaptiveOrderReader.findOrders();
+    }
+
+    /**
+     * V7 진단: 마지막으로 선택한 전략과 전략별 통계
+     */
+    @GetMapping("/api/v7/orders/strategy")
+    public AdaptiveOrderReader.Diagnostics ordersV7_strategy() {
+        return adaptiveOrderReader.diagnostics();
+    }
+
+    /**
+     * V6 플랫 데이터 스트리밍 내보내기 (NDJSON)
+     *   - 다른 API 처럼 List 를 다 만들고 나서 Jackson 으로 변환하면 전체 주문이 힙에 올라가서 순간 메모리 사용량이 커진다.
+     *   - 주문 한건이 완성될 때마다 JSON 한 줄로 바로 응답 스트림에 쓴다. (한 줄 = 주문 하나)
+     *   - 조회는 forward-only 커서, chunk 단위로 영속성 컨텍스트를 비우므로 row 수와 상관없이 힙 사용량이 일정하다.
+     */
+    @GetMapping(value = "/api/v6/orders/export", produces = NDJSON)
+    public void ordersV6_export(@RequestParam(value = "chunkSize", defaultValue = "500") int chunkSize,
+                                HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        ObjectWriter writer = objectMapper.writerFor(OrderQueryDto.class);
+        OutputStream out = response.getOutputStream();
+
+        orderQueryRepository.streamAllByDto_flat(chunkSize, order -> {
+            try {
+                out.write(writer.writeValueAsBytes(order));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    /**
+     * 일괄 주문
+     *   - 회원/상품은 IN 쿼리 한번씩, INSERT 는 JDBC 배치로 묶어서 전송
+     *   - 줄마다 성공/실패를 돌려준다. (한 줄이 실패해도 나머지는 주문된다)
+     *   - 줄마다 idempotencyKey 를 받는다. (헤더 하나로는 묶음을 나눠 재시도할 수 없다)
+     *     이미 처리한 키의 줄은 처음 주문 id 로 성공, 같은 키로 내용이 다른 줄은 그 줄만 실패한다.
+     */
+    @PostMapping("/api/v1/orders/batch")
+    public BatchOrderResponse orderBatch(@RequestBody @Valid BatchOrderRequest request) {
+        List<OrderLineResult> results = orderFacade.orderAll(request.getLines());
+        long successCount = results.stream().filter(OrderLineResult::isSuccess).count();
+        return new BatchOrderResponse(successCount, results.size() - successCount, results);
+    }
+
+    /**
+     * 여러 상품 주문 (주문 하나)
+     *   - 상품 행 락을 id 오름차순으로 잡고 모든 줄의 재고를 한 트랜잭션에서 차감한다.
+     *   - 한 줄이라도 재고가 부족하면 주문 전체가 실패한다.
+     *   - Idempotency-Key 헤더가 있으면 같은 키로 재시도한 요청은 처음 주문 id 를 그대로 돌려준다.
+     *     같은 키로 회원/상품/수량이 다른 요청이면 422 (IdempotencyKeyMismatchException)
+     */
+    @PostMapping("/api/v1/orders")
+    public CreateOrderResponse orderCart(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                         @RequestBody @Valid CreateOrderRequest request) {
+        return new CreateOrderResponse(orderFacade.order(idempotencyKey, request.getMemberId(), request.getLines()));
+    }
+
+    /**
+     * 중복 방지 키 상태 (메모리/테이블 적중 수)
+     */
+    @GetMapping("/api/v1/orders/idempotency/stats")
+    public OrderIdempotency.Stats idempotencyStats() {
+        return orderIdempotency.stats();
+    }
+
+    /**
+     * 비동기 주문 접수 (group commit)
+     *   - 요청을 큐에 넣고, 묶음 트랜잭션이 커밋되면 주문 id 로 응답한다. (서블릿 비동기 처리, 요청 스레드는 바로 반환)
+     *   - 큐가 가득 차면 요청 스레드에서 바로 주문한다.
+     *   - Idempotency-Key 헤더가 있으면 같은 키로 재시도한 요청은 처음 주문 id 를 그대로 돌려준다. (본문의 idempotencyKey 는 무시)
+     */
+    @PostMapping("/api/v1/orders/async")
+    public CompletableFuture<CreateOrderResponse> orderAsync(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                             @RequestBody @Valid OrderLine request) {
+        return orderIngestion.submit(idempotencyKey, request.getMemberId(), request.getItemId(), request.getCount())
+                .thenApply(CreateOrderResponse::new);
+    }
+
+    /**
+     * 비동기 주문 접수 상태 (큐 길이, 묶음 크기, 구간별 소요 시간)
+     */
+    @GetMapping("/api/v1/orders/async/stats")
+    public OrderIngestion.Stats orderAsyncStats() {
+        return orderIngestion.stats();
+    }
+
+    /**
+     * 일괄 취소 (벌크 UPDATE, 상품별 재고 원복 UPDATE 한번씩)
+     *   - 이미 취소되었거나 배송완료된 주문은 건너뛰고 건수만 돌려준다.
+     */
+    @PostMapping("/api/v1/orders/cancel")
+    public BulkCancelResult cancelOrders(@RequestBody @Valid BulkCancelRequest request) {
+        return orderFacade.cancelOrders(request.getOrderIds());
+    }
+
+    @Data
+    static class BulkCancelRequest {
+        @NotEmpty
+        @Size(max = 10000)
+        private List<@NotNull Long> orderIds;
+    }
+
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Size(max = 100)
+        private List<@Valid CartLine> lines;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
+    }
+
+    @Data
+    static class BatchOrderRequest {
+        @NotEmpty
+        @Size(max = 1000)
+        private List<@Valid OrderLine> lines;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BatchOrderResponse {
+        private long successCount;
+        private long failureCount;
+        private List<OrderLineResult> results;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class OrderCursorResult<T> {
+        private T data;
+        private String nextCursor;
     }
 
     @Data
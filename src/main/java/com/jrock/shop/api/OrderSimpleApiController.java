@@ -7,9 +7,12 @@ import com.jrock.shop.repository.OrderRepository;
 import com.jrock.shop.repository.OrderSearch;
 import com.jrock.shop.repository.OrderSimpleQueryDto;
 import com.jrock.shop.repository.order.simplequery.OrderSimpleQueryRepository;
+import com.jrock.shop.repository.order.summary.OrderSummaryDto;
+import com.jrock.shop.repository.order.summary.OrderSummaryRepository;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
@@ -30,6 +33,7 @@ public class OrderSimpleApiController {
 
     private final OrderRepository orderRepository;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
 
     @GetMapping("/api/v1/simple-orders")
     public List<Order> ordersV1() {
@@ -110,6 +114,17 @@ public class OrderSimpleApiController {
         return orderSimpleQueryRepository.findOrderDtos();
     }
 
+    /**
+     * 읽기 모델(order_summary) 조회
+     *   - 주문/회원/배송 조인 없이 테이블 하나를 인덱스 순서로 읽는다. (주문 총액까지 미리 계산되어 있다)
+     *   - 주문, 취소, 회원명 변경 때 같은 트랜잭션에서 갱신하므로 v4 와 같은 결과다.
+     */
+    @GetMapping("/api/v5/simple-orders")
+    public List<OrderSummaryDto> ordersV5(@RequestParam(value = "offset", defaultValue = "0") int offset,
+                                         @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return orderSummaryRepository.findSummaries(offset, limit);
+    }
+
     // 밖에서 RequestDto 처럼 요청하는 Dto는 private을 제외하고 static을 넣어주어야 InnerClass를 불러 올 수 있다.
     // 클래스 내부에서만 사용한다면 private으로 사용해도 된다.
     @Data
@@ -0,0 +1,23 @@
+package com.jrock.shop.api;
+
+import com.jrock.shop.service.OrderSummaryProjection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 주문 목록 읽기 모델(order_summary) 다시 만들기
+ *   - order_summary 를 처음 배포한 뒤 기존 주문 백필, 원본과 어긋났을 때 복구용
+ *   - 주문 id 순서로 chunk 마다 커밋하므로 중간에 실패하면 다시 호출하면 된다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderSummaryApiController {
+
+    private final OrderSummaryProjection orderSummaryProjection;
+
+    @PostMapping("/api/order-summary/rebuild")
+    public OrderSummaryProjection.RebuildResult rebuild() {
+        return orderSummaryProjection.rebuild();
+    }
+}
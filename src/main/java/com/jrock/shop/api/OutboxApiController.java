@@ -0,0 +1,23 @@
+package com.jrock.shop.api;
+
+import com.jrock.shop.service.OutboxDrainer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 아웃박스 드레이너 상태
+ *   - pending 이 계속 늘어나거나 lag 가 길어지면 드레이너가 쓰기 속도를 못 따라가는 것이다. (batch-size, poll-interval-ms 조정)
+ *   - dead 는 max-attempts 번 실패해서 더 이상 전달하지 않는 이벤트다. (lastError 확인 후 attempts 를 0 으로 되돌리면 다시 전달)
+ */
+@RestController
+@RequiredArgsConstructor
+public class OutboxApiController {
+
+    private final OutboxDrainer outboxDrainer;
+
+    @GetMapping("/api/outbox/stats")
+    public OutboxDrainer.Stats stats() {
+        return outboxDrainer.stats();
+    }
+}
@@ -1,15 +1,18 @@
 package com.jrock.shop.controller;
 
 import com.jrock.shop.domain.item.Book;
-import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.service.ItemCatalogSnapshot;
 import com.jrock.shop.service.ItemService;
+import com.jrock.shop.service.ItemView;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -17,6 +20,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    static final int SEARCH_LIMIT = 100;
+
     private final ItemService itemService;
 
     @GetMapping("/items/new")
@@ -42,10 +47,25 @@ public class ItemController {
         return "redirect:/";
     }
 
+    /**
+     * 상품 목록은 카탈로그 스냅샷에서 바로 꺼낸다. (JPA 조회 X)
+     * size 를 주면 스냅샷 안에서 페이지 단위로 자른다.
+     * q 를 주면 상품 검색 결과를 점수 순으로 보여준다. (ItemSearchIndex)
+     */
     @GetMapping("/items")
-    public String list(Model model) {
-        List<Item> items = itemService.findItems();
+    public String list(@RequestParam(value = "page", defaultValue = "0") int page,
+                       @RequestParam(value = "size", required = false) Integer size,
+                       @RequestParam(value = "q", required = false) String q,
+                       Model model) {
+        List<ItemView> items;
+        if (StringUtils.hasText(q)) {
+            items = itemService.search(q, SEARCH_LIMIT);
+        } else {
+            ItemCatalogSnapshot catalog = itemService.findCatalog();
+            items = size == null ? catalog.getItems() : catalog.page(page, size);
+        }
         model.addAttribute("items", items);
+        model.addAttribute("q", q);
         return "items/itemList";
     }
 
@@ -2,43 +2,52 @@ package com.jrock.shop.controller;
 
 import com.jrock.shop.domain.Member;
 import com.jrock.shop.domain.Order;
-import com.jrock.shop.domain.item.Item;
 import com.jrock.shop.repository.OrderSearch;
 import com.jrock.shop.service.ItemService;
+import com.jrock.shop.service.OrderFacade;
+import com.jrock.shop.service.ItemView;
 import com.jrock.shop.service.MemberService;
 import com.jrock.shop.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderFacade orderFacade;
     private final MemberService memberService;
     private final ItemService itemService;
 
     @GetMapping("/order")
-    public String createForm(Model model) {
+    public String createForm(@RequestParam(value = "q", required = false) String q, Model model) {
 
         List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
+        List<ItemView> items = StringUtils.hasText(q)
+                ? itemService.search(q, ItemController.SEARCH_LIMIT) // 상품 검색 (ItemSearchIndex)
+                : itemService.findCatalog().getItems(); // 카탈로그 스냅샷 (JPA 조회 X)
 
         model.addAttribute("members", members);
         model.addAttribute("items", items);
+        model.addAttribute("q", q);
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString()); // 폼 하나에 키 하나 (새로고침/재전송 시 중복 주문 방지)
 
         return "order/orderForm";
     }
 
     @PostMapping("/order")
     public String order(@RequestParam("memberId") Long memberId, @RequestParam("itemId") Long itemId,
-                        @RequestParam("count") int count) {
+                        @RequestParam("count") int count,
+                        @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey) {
 
-        orderService.order(memberId, itemId, count);
+        orderFacade.order(idempotencyKey, memberId, itemId, count); // 재고 변경 방식에 따라 재시도, 같은 키는 한번만 주문 (OrderFacade)
         return "redirect:/orders";
     }
 
@@ -53,7 +62,7 @@ public class OrderController {
 
     @PostMapping(value = "/orders/{orderId}/cancel")
     public String cancelOrder(@PathVariable("orderId") Long orderId) {
-        orderService.cancelOrder(orderId);
+        orderFacade.cancelOrder(orderId);
         return "redirect:/orders";
     }
 }
@@ -1,46 +1,127 @@
 package com.jrock.shop.domain;
 
 import com.jrock.shop.domain.item.Item;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_category_path", columnList = "path")) // 하위 트리 조회 (path like '/1/5/%')
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category") // 2차 캐시
 @Getter
 @Setter
 public class Category {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "category_id")
     private Long id;
 
     private String name;
 
+    /**
+     * 경로 열거(materialized path): 루트부터 자신까지의 id ("/1/5/9/")
+     *   - 하위 트리 전체를 path like '/1/5/%' 한번으로 찾는다. (부모를 따라 한 단계씩 조회 X)
+     *   - id 는 persist 할 때 정해지므로 저장한 뒤에 assignPath 로 채운다. (CategoryRepository.save, INSERT 후 UPDATE 한번)
+     *   - 부모를 바꾸는 것(하위 트리 이동)은 지원하지 않는다.
+     *   - 경로 컬럼이 생기기 전에 저장된 카테고리는 시작할 때 채운다. (CategoryService.assignMissingPaths)
+     */
+    @Setter(AccessLevel.NONE)
+    private String path;
+
     // @ManyToMany 를 쓰는 것이 좋지않다. 예제상 다양하게 쓰기 위해 사용함.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category.items") // 컬렉션 캐시는 item id 목록만 저장, Item 은 item region 에서 꺼낸다.
     @ManyToMany
     // 중간 테이블 맵핑 ( 관계형 DB상 중간 테이블 필요 ) 실전에서 쓰는 것은 좋지 않음. 유연하게 변경하기 힘듦.
+    // 목록/개수는 컬렉션을 초기화하지 말고 CategoryRepository 의 페이징 쿼리와 itemCount 를 쓴다. (추가/삭제는 CategoryService.addItem/removeItem)
     @JoinTable(name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"), // 중간 테이블에 있는 category_id
-            inverseJoinColumns = @JoinColumn(name = "item_id"))
+            inverseJoinColumns = @JoinColumn(name = "item_id"),
+            indexes = @Index(name = "idx_category_item_category_item", columnList = "category_id, item_id")) // 카테고리별 상품 id 순 페이징
     private List<Item> items = new ArrayList<>();
 
+    /**
+     * 하위 트리(자신 포함)에 들어있는 상품 수 (여러 카테고리에 들어있어도 한번)
+     *   - 목록 화면의 개수/전체 페이지 수를 count 쿼리 없이 보여준다.
+     *   - CategoryService.addItem/removeItem 이 벌크 UPDATE 로만 바꾼다. 변경 감지로 덮어쓰지 않도록 updatable = false
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(updatable = false)
+    private int itemCount;
+
     // 카테고리 계층 구조, 내 자신을 부모로 ( 이름만 내 것이지 다른 테이블이라 보자 )
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_id")
     private Category parent;
 
     // 카테고리 계층 구조, 내 자신을 자식으로 ( 이름만 내 것이지 다른 테이블이라 보자 )
+    // addChildCategory 로 양쪽을 같이 변경해야 컬렉션 캐시도 같이 갱신된다.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category.child")
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
     // 연관관계 메서드
     public void addChildCategory(Category child) {
+        if (child.getParent() != null && child.getParent() != this) {
+            throw new IllegalStateException("이미 다른 부모가 있는 카테고리 입니다.");
+        }
         this.child.add(child);
         child.setParent(this);
+        if (child.getId() != null) {
+            child.assignPath();
+        }
+    }
+
+    /**
+     * 부모 경로 + 자신의 id (부모는 경로가 먼저 정해져 있어야 한다)
+     */
+    public void assignPath() {
+        if (id == null) {
+            throw new IllegalStateException("저장 전 카테고리는 경로를 정할 수 없습니다.");
+        }
+        if (parent == null) {
+            path = "/" + id + "/";
+            return;
+        }
+        if (parent.getPath() == null) {
+            throw new IllegalStateException("부모 카테고리를 먼저 저장해야 합니다.");
+        }
+        path = parent.getPath() + id + "/";
+    }
+
+    /**
+     * 루트부터 자신까지의 id ("/1/5/9/" -> [1, 5, 9])
+     */
+    public List<Long> pathIds() {
+        requirePath();
+        List<Long> ids = new ArrayList<>();
+        for (String segment : path.substring(1, path.length() - 1).split("/")) {
+            ids.add(Long.valueOf(segment));
+        }
+        return ids;
+    }
+
+    /**
+     * 하위 트리 조회 조건 (자신 포함)
+     */
+    public String subtreePathPattern() {
+        requirePath();
+        return path + "%";
+    }
+
+    /**
+     * 경로가 없으면 "null%" 로 검색하지 않고 바로 실패한다.
+     */
+    private void requirePath() {
+        if (path == null) {
+            throw new IllegalStateException("경로가 없는 카테고리 입니다. categoryId=" + id);
+        }
     }
 
 }
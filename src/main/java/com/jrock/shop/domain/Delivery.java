@@ -12,7 +12,7 @@ import javax.persistence.*;
 public class Delivery {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "delivery_id")
     private Long id;
 
@@ -0,0 +1,41 @@
+package com.jrock.shop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 요청 중복 방지 키 (클라이언트가 보낸 Idempotency-Key -> 처음 만든 주문 id)
+ * 처음 요청의 해시(회원, 상품, 수량)를 같이 저장해서 같은 키로 다른 요청이 들어오면 거절한다.
+ * 키가 PK 이므로 같은 키로 두 주문이 동시에 커밋되면 나중 것은 PK 위반으로 롤백된다.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "createdAt"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyKey {
+
+    public static final int MAX_LENGTH = 100;
+    public static final int HASH_LENGTH = 64; // SHA-256 hex
+
+    @Id
+    @Column(name = "idempotency_key", length = MAX_LENGTH)
+    private String id; // 키 값
+
+    @Column(length = HASH_LENGTH, nullable = false)
+    private String requestHash;
+
+    private Long orderId;
+
+    private LocalDateTime createdAt;
+
+    public IdempotencyKey(String key, String requestHash, Long orderId) {
+        this.id = key;
+        this.requestHash = requestHash;
+        this.orderId = orderId;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -1,8 +1,11 @@
 package com.jrock.shop.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.jrock.shop.repository.member.MemberNameTrigramIndexListener;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -10,10 +13,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_member_name", columnNames = "name")) // 동시 가입 시 중복 검증을 빠져나가는 경우를 DB 에서 막는다.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member") // 2차 캐시 (orders 컬렉션은 캐시하지 않는다)
+@EntityListeners(MemberNameTrigramIndexListener.class) // 주문 검색 회원명 조건 인덱스
 @Getter @Setter
 public class Member {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "member_id")
     private Long id;
 
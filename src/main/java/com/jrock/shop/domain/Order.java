@@ -13,12 +13,15 @@ import java.util.Arrays;
 import java.util.List;
 
 @Entity
-@Table(name = "orders") // 관례로 order가 됨으로써 이름을 주자
+@Table(name = "orders", // 관례로 order가 됨으로써 이름을 주자
+        indexes = {
+                @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id"), // 주문일 기준 키셋 페이징용 인덱스
+                @Index(name = "idx_orders_status_order_date", columnList = "status, orderDate")}) // 주문 검색: 상태 + 주문일 기간
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED) // 생성자를 막음, JPA는 protected까지 지원, 이렇게하면 밖에서 생성자를 호출하는 것을 막는다고 보면 된다. 생성메서드를 통해 호출
 public class Order {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "order_id")
     private Long id;
 
@@ -116,11 +119,7 @@ public class Order {
      * 주문 취소
      */
     public void cancel() {
-        if (delivery.getStatus() == DeliveryStatus.COMP) {
-            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
-        }
-
-        this.setStatus(OrderStatus.CANCEL);
+        markCanceled();
 
 //        for (OrderItem orderItem : this.orderItems) { // this. 는 강조할 때만 쓰는. 스타일임
 //            // 주문 아이템이 여러개 일 수 있으니 각 각 만들어준다.
@@ -133,6 +132,18 @@ public class Order {
         orderItems.forEach(OrderItem::cancel);
     }
 
+    /**
+     * 주문 상태만 취소로 바꾼다.
+     * 재고 원복은 호출한 쪽에서 UPDATE 문으로 직접 한다. (StockMode.CONDITIONAL_UPDATE)
+     */
+    public void markCanceled() {
+        if (delivery.getStatus() == DeliveryStatus.COMP) {
+            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
+        }
+
+        this.setStatus(OrderStatus.CANCEL);
+    }
+
     // 조회 로직
     /**
      * 전체 주문 가격 조회
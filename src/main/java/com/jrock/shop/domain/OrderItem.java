@@ -10,12 +10,15 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_order_item_stock_applied", columnList = "stockApplied"), // StockLedger 가 아직 반영 안된 주문상품을 찾는다.
+        @Index(name = "idx_order_item_order_item", columnList = "order_id, item_id")}) // 주문 검색: 이 상품이 들어있는 주문 (exists)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED) // 생성자를 막음, JPA는 protected까지 지원, 이렇게하면 밖에서 생성자를 호출하는 것을 막는다고 보면 된다. 생성메서드를 통해 호출
 public class OrderItem {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "order_item_id")
     private Long id;
 
@@ -35,6 +38,12 @@ public class OrderItem {
     private int orderPrice; // 주문가격
     private int count; // 주문수량
 
+    /**
+     * 재고가 item.stock_quantity 에 반영되었는지
+     * StockMode.LEDGER 는 메모리에서 먼저 차감하고 false 로 저장, StockLedger 가 모아서 반영한 뒤 true 로 바꾼다.
+     */
+    private boolean stockApplied = true;
+
     // 생성 메서드
     public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
         // 쿠폰 값 이라던지 바뀔 수 있기 떄문에
@@ -48,6 +57,28 @@ public class OrderItem {
         return orderItem;
     }
 
+    /**
+     * 재고를 이미 UPDATE 문으로 차감한 경우 (StockMode.CONDITIONAL_UPDATE)
+     * 엔티티의 재고는 건드리지 않는다.
+     */
+    public static OrderItem createReservedOrderItem(Item item, int orderPrice, int count) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setItem(item);
+        orderItem.setOrderPrice(orderPrice);
+        orderItem.setCount(count);
+        return orderItem;
+    }
+
+    /**
+     * 재고를 메모리(StockLedger)에서만 차감한 경우 (StockMode.LEDGER)
+     * item.stock_quantity 는 StockLedger 가 나중에 모아서 반영한다.
+     */
+    public static OrderItem createDeferredOrderItem(Item item, int orderPrice, int count) {
+        OrderItem orderItem = createReservedOrderItem(item, orderPrice, count);
+        orderItem.setStockApplied(false);
+        return orderItem;
+    }
+
     // 비즈니스 로직
     public void cancel() {
         // 재고 수량을 원복
@@ -0,0 +1,54 @@
+package com.jrock.shop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 조회용 읽기 모델 (주문 + 회원명 + 배송지 + 총액을 한 행에)
+ *   - 주문/취소/회원명 변경 때 같은 트랜잭션에서 같이 바꾼다. (OrderSummaryProjection)
+ *   - 목록 조회는 조인 없이 이 테이블만 읽는다.
+ *   - 원본은 orders, member, delivery, order_item 이다. 어긋나면 다시 만든다. (OrderSummaryProjection.rebuild)
+ */
+@Entity
+@Table(name = "order_summary", indexes = {
+        @Index(name = "idx_order_summary_order_date_id", columnList = "orderDate, order_id"), // 최근 주문순 목록
+        @Index(name = "idx_order_summary_member_id", columnList = "member_id")}) // 회원명 변경
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary {
+
+    @Id // 주문 id 를 그대로 쓴다.
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String memberName;
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Embedded
+    private Address address;
+
+    private int totalPrice;
+
+    public static OrderSummary of(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.orderId = order.getId();
+        summary.memberId = order.getMember().getId();
+        summary.memberName = order.getMember().getName();
+        summary.orderDate = order.getOrderDate();
+        summary.status = order.getStatus();
+        summary.address = order.getDelivery().getAddress();
+        summary.totalPrice = order.getTotalPrice();
+        return summary;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jrock.shop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 트랜잭셔널 아웃박스 (주문 이벤트)
+ *   - 주문/취소와 같은 트랜잭션에서 저장하므로 주문이 커밋되면 이벤트도 반드시 남고, 롤백되면 이벤트도 없다.
+ *   - OutboxDrainer 가 읽어서 핸들러에 전달하고 지운다. 핸들러가 실패하면 attempts 를 올리고 남겨둔다.
+ */
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_attempts", columnList = "attempts"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
+    @Column(name = "outbox_event_id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private OutboxEventType eventType;
+
+    private Long aggregateId; // 주문 id
+
+    @Column(length = 4000)
+    private String payload; // JSON
+
+    private LocalDateTime createdAt;
+
+    private int attempts; // 핸들러 실패 횟수
+
+    @Column(length = 500)
+    private String lastError;
+
+    public OutboxEvent(OutboxEventType eventType, Long aggregateId, String payload) {
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public void failed(String error) {
+        this.attempts++;
+        this.lastError = error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
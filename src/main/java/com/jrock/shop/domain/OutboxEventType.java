@@ -0,0 +1,5 @@
+package com.jrock.shop.domain;
+
+public enum OutboxEventType {
+    ORDER_PLACED, ORDER_CANCELED
+}
@@ -0,0 +1,39 @@
+package com.jrock.shop.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * 테이블별 시퀀스 + pooled-lo 옵티마이저
+ *   - @GeneratedValue 기본값(hibernate_sequence 하나, 증가값 1)은 persist 할 때마다 시퀀스를 한번씩 호출한다.
+ *   - pooled-lo 는 시퀀스 값 하나로 allocationSize 개의 id 를 메모리에서 나눠준다. (시퀀스 값 = 구간의 시작)
+ *     ex) allocationSize 50 -> 시퀀스 1 이면 1 ~ 50, 다음 시퀀스 51 이면 51 ~ 100
+ *   - 시퀀스 이름은 테이블명 + _seq (orders_seq, member_seq ...)
+ *   - allocationSize 는 shop.id.allocation-size (spring.jpa.properties) 로 설정, 기본 50
+ *
+ * 주의: 서버를 재시작하면 받아둔 구간의 남은 id 는 버려지므로 id 에 구멍이 생긴다. (순서만 보장, 연속 X)
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "pooled_lo";
+    public static final String ALLOCATION_SIZE = "shop.id.allocation-size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_ALLOCATION_SIZE);
+
+        params.setProperty(SEQUENCE_PARAM, params.getProperty(PersistentIdentifierGenerator.TABLE) + "_seq");
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
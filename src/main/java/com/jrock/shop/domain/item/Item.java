@@ -1,10 +1,13 @@
 package com.jrock.shop.domain.item;
 
 import com.jrock.shop.domain.Category;
+import com.jrock.shop.domain.PooledLoSequenceGenerator;
 import com.jrock.shop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -12,6 +15,7 @@ import java.util.List;
 
 @BatchSize(size = 1000) // 글로벌 하게 말고 필요한 곳에서만 적용하려면(개별최적화) 어노테이션 활용 ( 여기는 컬렉션이 아닌 곳에 적용, 컬렉션은 해당 @OneToMany 적용 Order에 orderItems 참고 )
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item") // 2차 캐시, 하위 타입(Book, Album, Movie)은 루트 엔티티의 region 을 같이 쓴다.
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE) // 싱글테이블 전략(객체는 나누어져 있지만 Item 한 테이블에 다 떄려 박는 형식)
 @DiscriminatorColumn(name = "dtype") // 상속받는 타입을 지정해준다. ( 한 테이블이기 떄문에 타입 필요 )
 @Getter
@@ -20,7 +24,7 @@ public abstract class Item {
 
     @Id
     @Getter
-    @GeneratedValue
+    @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "item_id")
     private Long id;
 
@@ -28,6 +32,10 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    @Version // 낙관적 락, 동시에 재고를 변경하면 나중에 커밋하는 쪽이 실패한다. (StockMode.OPTIMISTIC 은 OrderFacade 에서 재시도, DIRTY_CHECKING 도 걸린다)
+    private Long version;
+
+    // 연관관계의 주인이 아닌 쪽 컬렉션은 캐시하지 않는다. (Category 쪽에서만 변경되므로 여기 캐시는 무효화되지 않는다)
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
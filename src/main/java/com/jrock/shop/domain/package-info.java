@@ -0,0 +1,8 @@
+/**
+ * 모든 엔티티 id 는 @GeneratedValue(generator = PooledLoSequenceGenerator.NAME) 로 테이블별 시퀀스를 쓴다.
+ * (식별자 생성기는 전역이므로 여기 한번만 선언하면 item 패키지에서도 쓸 수 있다)
+ */
+@GenericGenerator(name = PooledLoSequenceGenerator.NAME, strategy = "com.jrock.shop.domain.PooledLoSequenceGenerator")
+package com.jrock.shop.domain;
+
+import org.hibernate.annotations.GenericGenerator;
@@ -0,0 +1,15 @@
+package com.jrock.shop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 이미 다른 주문 요청에 쓴 Idempotency-Key 로 내용이 다른 요청이 들어왔다. (클라이언트가 키를 재사용했다)
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,190 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.Category;
+import com.jrock.shop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 카테고리 (경로 열거, Category.path)
+ *   - 하위 트리와 하위 트리의 상품은 path like '/1/5/%' 한번으로 찾는다. (idx_category_path)
+ *   - parent/child 를 따라가면 단계마다 쿼리가 한번씩 나간다.
+ *   - 카테고리 상품(category_item)은 Category.items 컬렉션을 거치지 않는다.
+ *     컬렉션은 한 건을 넣거나 빼도 전체를 초기화한다. 목록은 페이지만큼만 읽고, 추가/삭제는 중간 테이블 행 하나만 바꾼다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+
+    private static final Set<String> ITEM_SORT_PROPERTIES = Set.of("id", "name", "price", "stockQuantity");
+
+    private final EntityManager em;
+
+    /**
+     * 저장하고 경로를 채운다. (부모는 먼저 저장되어 있어야 한다)
+     */
+    public void save(Category category) {
+        em.persist(category);
+        category.assignPath(); // persist 로 id 가 정해진 뒤에
+    }
+
+    public Category findOne(Long id) {
+        return em.find(Category.class, id);
+    }
+
+    /**
+     * 하위 트리 전체 (자신 포함, 경로 순이므로 부모가 자식보다 먼저 나온다)
+     */
+    public List<Category> findSubtree(Category category) {
+        return em.createQuery("select c from Category c where c.path like :path order by c.path", Category.class)
+                .setParameter("path", category.subtreePathPattern())
+                .getResultList();
+    }
+
+    /**
+     * 하위 트리의 모든 카테고리에 들어있는 상품 (category_item 조인 한번, 여러 카테고리에 들어있어도 한번만, id 순)
+     */
+    public List<Item> findItemsInSubtree(Category category) {
+        return em.createQuery(
+                "select distinct i from Category c" +
+                        " join c.items i" +
+                        " where c.path like :path" +
+                        " order by i.id", Item.class)
+                .setParameter("path", category.subtreePathPattern())
+                .getResultList();
+    }
+
+    /**
+     * 하위 트리의 상품 페이지 (pageable 의 정렬, 없으면 id 순)
+     *   - 페이지 크기만큼만 읽는다. 전체 개수는 Category.itemCount (count 쿼리 X)
+     *   - 정렬은 id, name, price, stockQuantity 만 된다. 마지막에 id 를 붙여서 같은 값끼리도 페이지마다 순서가 같다.
+     */
+    public Page<Item> findItemsInSubtree(Category category, Pageable pageable) {
+        List<Item> content = em.createQuery(
+                "select i from Item i" +
+                        " where i.id in (select ci.id from Category c join c.items ci where c.path like :path)" +
+                        itemOrderBy(pageable.getSort()), Item.class)
+                .setParameter("path", category.subtreePathPattern())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, category::getItemCount);
+    }
+
+    private static String itemOrderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        for (Sort.Order order : sort) {
+            if (!ITEM_SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new IllegalArgumentException("정렬할 수 없는 속성입니다. sort=" + order.getProperty() + " 가능=" + ITEM_SORT_PROPERTIES);
+            }
+            orderBy.append("i.").append(order.getProperty()).append(order.isAscending() ? " asc" : " desc").append(", ");
+        }
+        return orderBy.append("i.id").toString();
+    }
+
+    /**
+     * 트리 스냅샷용 id, 이름, 경로, 상품 수 (엔티티를 올리지 않는다, 경로 순)
+     */
+    public List<Object[]> findAllPaths() {
+        return em.createQuery("select c.id, c.name, c.path, c.itemCount from Category c order by c.path", Object[].class)
+                .getResultList();
+    }
+
+    /**
+     * 경로가 없고 부모는 경로가 있는(또는 루트인) 카테고리, 위에서부터 한 단계씩 채운다.
+     */
+    public List<Category> findWithoutPath() {
+        return em.createQuery("select c from Category c left join c.parent p" +
+                        " where c.path is null and (p.id is null or p.path is not null)" +
+                        " order by c.id", Category.class)
+                .getResultList();
+    }
+
+    /**
+     * 행 락 (id 오름차순, 같은 조상을 여러 트랜잭션이 같은 순서로 잡는다)
+     */
+    public void lockAll(Collection<Long> categoryIds) {
+        em.createQuery("select c.id from Category c where c.id in :categoryIds order by c.id", Long.class)
+                .setParameter("categoryIds", categoryIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    public boolean containsItem(Long categoryId, Long itemId) {
+        return !em.createNativeQuery("select 1 from category_item where category_id = :categoryId and item_id = :itemId")
+                .setParameter("categoryId", categoryId)
+                .setParameter("itemId", itemId)
+                .setMaxResults(1)
+                .getResultList().isEmpty();
+    }
+
+    /**
+     * 중간 테이블에 행 하나 추가 (Category.items 2차 캐시는 무효화된다)
+     */
+    public void insertItem(Long categoryId, Long itemId) {
+        em.createNativeQuery("insert into category_item (category_id, item_id) values (:categoryId, :itemId)")
+                .setParameter("categoryId", categoryId)
+                .setParameter("itemId", itemId)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("category_item")
+                .executeUpdate();
+    }
+
+    public void deleteItem(Long categoryId, Long itemId) {
+        em.createNativeQuery("delete from category_item where category_id = :categoryId and item_id = :itemId")
+                .setParameter("categoryId", categoryId)
+                .setParameter("itemId", itemId)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("category_item")
+                .executeUpdate();
+    }
+
+    /**
+     * 상품을 넣기 전에: 하위 트리에 아직 이 상품이 없는 조상만 +1
+     */
+    public void increaseItemCount(Collection<Long> ancestorIds, Long itemId) {
+        updateItemCount(ancestorIds, itemId, 1);
+    }
+
+    /**
+     * 상품을 뺀 후에: 하위 트리에 더 이상 이 상품이 없는 조상만 -1
+     */
+    public void decreaseItemCount(Collection<Long> ancestorIds, Long itemId) {
+        updateItemCount(ancestorIds, itemId, -1);
+    }
+
+    private void updateItemCount(Collection<Long> ancestorIds, Long itemId, int delta) {
+        em.createQuery("update Category a set a.itemCount = a.itemCount + :delta" +
+                        " where a.id in :ancestorIds" +
+                        " and not exists (select d.id from Category d join d.items i" +
+                        " where i.id = :itemId and d.path like concat(a.path, '%'))")
+                .setParameter("delta", delta)
+                .setParameter("ancestorIds", ancestorIds)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    /**
+     * 상품 수를 category_item 으로 다시 센다. (벌크 UPDATE 한번, 어긋났을 때 복구용)
+     */
+    public int recountItems() {
+        return em.createNativeQuery("update category a set item_count = (" +
+                        "select count(distinct ci.item_id) from category d" +
+                        " join category_item ci on ci.category_id = d.category_id" +
+                        " where d.path like concat(a.path, '%'))")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Category.class)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,75 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.IdempotencyKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 키는 직접 할당하는 id 라서 merge 하면 다른 요청이 먼저 저장한 키를 덮어쓴다. 항상 persist 후 바로 flush 해서
+     * 같은 키가 있으면 이 자리에서 PK 위반(DataIntegrityViolationException)이 나게 한다.
+     */
+    public void save(IdempotencyKey idempotencyKey) {
+        em.persist(idempotencyKey);
+        em.flush();
+    }
+
+    /**
+     * flush 하지 않고 저장한다. (일괄 주문, 같은 키가 있으면 커밋할 때 PK 위반으로 전체가 롤백된다)
+     */
+    public void persist(IdempotencyKey idempotencyKey) {
+        em.persist(idempotencyKey);
+    }
+
+    /**
+     * since 이후에 저장된 키들 (IN 쿼리 한번)
+     */
+    public List<IdempotencyKey> findAllRecent(Collection<String> keys, LocalDateTime since) {
+        return em.createQuery("select k from IdempotencyKey k where k.id in :keys and k.createdAt >= :since", IdempotencyKey.class)
+                .setParameter("keys", keys)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    /**
+     * since 이후에 저장된 키 (없거나 오래된 키면 null)
+     */
+    public IdempotencyKey findRecent(String key, LocalDateTime since) {
+        return em.createQuery("select k from IdempotencyKey k where k.id = :key and k.createdAt >= :since", IdempotencyKey.class)
+                .setParameter("key", key)
+                .setParameter("since", since)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * 만료됐지만 아직 지워지지 않은 같은 키를 지운다. (지우지 않으면 다시 쓴 키를 저장할 때 PK 위반)
+     */
+    public void deleteExpired(String key, LocalDateTime before) {
+        deleteExpired(List.of(key), before);
+    }
+
+    public void deleteExpired(Collection<String> keys, LocalDateTime before) {
+        em.createQuery("delete from IdempotencyKey k where k.id in :keys and k.createdAt < :before")
+                .setParameter("keys", keys)
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+
+    public int deleteBefore(LocalDateTime before) {
+        return em.createQuery("delete from IdempotencyKey k where k.createdAt < :before")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
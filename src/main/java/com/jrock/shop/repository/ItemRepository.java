@@ -2,9 +2,18 @@ package com.jrock.shop.repository;
 
 import com.jrock.shop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -41,6 +50,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemRepository {
 
+    static final String ITEM_QUERY_REGION = "query.item";
+    // 재고 UPDATE 의 query space, item 으로 두면 하이버네이트가 item region 전체를 비운다.
+    private static final String STOCK_QUERY_SPACE = "item_stock";
+
     private final EntityManager em;
 
     public void save(Item item) {
@@ -55,8 +68,104 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    /**
+     * 재고 차감 (조건부 UPDATE 한번, 락을 잡고 읽고 쓰는 과정이 DB 안에서 원자적으로 끝난다)
+     *   - 재고가 부족하면 0 row 가 변경되고 false 를 돌려준다.
+     *   - version 도 같이 올려서 낙관적 락을 쓰는 쪽과 섞여도 충돌을 감지한다.
+     *   - 영속성 컨텍스트를 거치지 않으므로 영속성 컨텍스트의 Item 은 바뀌지 않는다. (필요하면 refresh)
+     *   - JPQL 벌크 연산(또는 item 테이블로 동기화한 네이티브 UPDATE)은 실행할 때마다 2차 캐시 item region 을 통째로 비우므로
+     *     주문마다 캐시가 비워져서 거의 맞지 않는다. 그래서 네이티브 UPDATE 는 재고 전용 query space 로 동기화하고,
+     *     커밋 후에 이 상품과 item 쿼리 캐시만 비운다. (evictAfterCommit)
+     */
+    public boolean decreaseStock(Long itemId, int count) {
+        return updateStock(itemId, em.createNativeQuery("update item set stock_quantity = stock_quantity - :count, version = version + 1" +
+                        " where item_id = :itemId and stock_quantity >= :count")
+                .setParameter("count", count)) == 1;
+    }
+
+    /**
+     * 재고 원복 (주문 취소), 음수면 차감 (StockLedger 반영)
+     */
+    public void increaseStock(Long itemId, int count) {
+        updateStock(itemId, em.createNativeQuery("update item set stock_quantity = stock_quantity + :count, version = version + 1" +
+                        " where item_id = :itemId")
+                .setParameter("count", count));
+    }
+
+    private int updateStock(Long itemId, Query update) {
+        em.flush(); // 이 트랜잭션에서 아직 보내지 않은 INSERT, 변경 감지를 먼저 보낸다.
+        int updated = update.setParameter("itemId", itemId)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(STOCK_QUERY_SPACE)
+                .executeUpdate();
+        evictAfterCommit(itemId);
+        return updated;
+    }
+
+    /**
+     * 커밋 후에 2차 캐시에서 이 상품과 item 쿼리 캐시(query.item)를 비운다. 다음 조회는 DB 에서 새 재고를 읽는다.
+     * 커밋 전에는 다른 트랜잭션에게 커밋된 이전 재고가 맞는 값이므로 그대로 둔다.
+     */
+    private void evictAfterCommit(Long itemId) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(cache, itemId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(cache, itemId);
+            }
+        });
+    }
+
+    private static void evict(Cache cache, Long itemId) {
+        cache.evict(Item.class, itemId);
+        cache.unwrap(org.hibernate.Cache.class).evictQueryRegion(ITEM_QUERY_REGION);
+    }
+
+    /**
+     * 벌크 연산 후에 영속성 컨텍스트에 이미 로딩된 Item 을 DB 값으로 다시 읽는다. (아직 로딩 안된 프록시는 그대로 둔다)
+     */
+    public void refresh(Item item) {
+        if (em.contains(item) && em.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(item)) {
+            em.refresh(item);
+        }
+    }
+
+    /**
+     * id 목록으로 한번에 조회 (IN 쿼리 한번)
+     */
+    public List<Item> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * id 목록으로 한번에 조회하면서 행 락(select ... for update)을 잡는다.
+     *   - id 오름차순으로 읽으므로 락도 id 오름차순으로 잡힌다.
+     *     여러 상품을 함께 주문하는 트랜잭션들이 모두 같은 순서로 락을 잡으므로 서로 기다리기만 하고 교착(deadlock)은 생기지 않는다.
+     *   - 영속성 컨텍스트에 이미 로딩된 Item 은 다시 읽지 않으므로 트랜잭션에서 처음 조회할 때 써야 한다.
+     */
+    public List<Item> findAllByIdForUpdate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
     public List<Item> findAll() {
         return em.createQuery("select i from Item i", Item.class)
+                .setHint(QueryHints.CACHEABLE, true) // 쿼리 캐시 (결과 id 목록만 저장, item 테이블이 변경되면 무효화, 재고 UPDATE 는 커밋 후에 비운다)
+                .setHint(QueryHints.CACHE_REGION, ITEM_QUERY_REGION)
                 .getResultList();
     }
 }
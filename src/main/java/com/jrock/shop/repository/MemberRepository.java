@@ -2,11 +2,26 @@ package com.jrock.shop.repository;
 
 import com.jrock.shop.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
 
+    // 쿼리 캐시 (결과 id 목록만 저장, member 테이블이 변경되면 무효화)
+    @Override
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "query.member")})
+    List<Member> findAll();
+
     // select m from Member m where m.name = ?
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "query.member")})
     List<Member> findByName(String name);
+
+    // select m.id from Member m where m.name = ? limit 1 (엔티티를 로딩하지 않고 member.name 유니크 인덱스만 탄다)
+    boolean existsByName(String name);
 }
@@ -0,0 +1,60 @@
+package com.jrock.shop.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징 커서
+ *   - 마지막으로 내려준 주문의 order_id (정렬 기준이 주문일이면 order_date 도 같이) 를 기억한다.
+ *   - 클라이언트에게는 Base64 문자열로 감싸서 내려주므로 내부 구조를 알 필요가 없다. (opaque cursor)
+ *   - offset 페이징은 앞의 row 를 전부 읽고 버리지만, 커서는 where 조건으로 바로 시작 위치를 찾아가므로 페이지 깊이와 상관없이 속도가 일정하다.
+ */
+@Getter
+public class OrderCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final OrderCursorSort sort;
+    private final Long orderId;
+    private final LocalDateTime orderDate;
+
+    private OrderCursor(OrderCursorSort sort, Long orderId, LocalDateTime orderDate) {
+        this.sort = sort;
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+    }
+
+    public static OrderCursor byId(Long orderId) {
+        return new OrderCursor(OrderCursorSort.ID, orderId, null);
+    }
+
+    public static OrderCursor byOrderDate(LocalDateTime orderDate, Long orderId) {
+        return new OrderCursor(OrderCursorSort.ORDER_DATE, orderId, orderDate);
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + orderId + SEPARATOR + (orderDate == null ? "" : orderDate.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 잘못된 커서는 클라이언트 입력 오류이므로 IllegalArgumentException 으로 돌려준다.
+     */
+    public static OrderCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] tokens = raw.split("\\|", -1);
+            OrderCursorSort sort = OrderCursorSort.valueOf(tokens[0]);
+            Long orderId = Long.valueOf(tokens[1]);
+            if (sort == OrderCursorSort.ID) {
+                return byId(orderId);
+            }
+            return byOrderDate(LocalDateTime.parse(tokens[2]), orderId);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서 입니다. cursor=" + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.jrock.shop.repository;
+
+/**
+ * 키셋 페이징 정렬 기준
+ *   - ID : order_id 오름차순
+ *   - ORDER_DATE : order_date, order_id 오름차순 (order_date 가 같으면 order_id 로 순서를 보장)
+ */
+public enum OrderCursorSort {
+    ID, ORDER_DATE
+}
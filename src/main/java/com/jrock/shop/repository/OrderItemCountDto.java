@@ -0,0 +1,20 @@
+package com.jrock.shop.repository;
+
+import lombok.Data;
+
+/**
+ * 상품별 주문 수량 합계 (일괄 취소 재고 원복용)
+ */
+@Data
+public class OrderItemCountDto {
+
+    private Long itemId;
+    private boolean stockApplied; // false 면 StockLedger 가 아직 DB 재고에 반영하지 않은 수량
+    private long count;
+
+    public OrderItemCountDto(Long itemId, boolean stockApplied, Long count) {
+        this.itemId = itemId;
+        this.stockApplied = stockApplied;
+        this.count = count;
+    }
+}
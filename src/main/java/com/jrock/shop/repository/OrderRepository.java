@@ -2,20 +2,30 @@ package com.jrock.shop.repository;
 
 import com.jrock.shop.domain.*;
 import com.jrock.shop.domain.Order;
+import com.jrock.shop.repository.member.MemberNameTrigramIndex;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import static com.jrock.shop.domain.QMember.*;
 import static com.jrock.shop.domain.QOrder.*;
+import static com.jrock.shop.domain.QOrderItem.*;
 
 @Repository
 //@RequiredArgsConstructor
@@ -23,10 +33,12 @@ public class OrderRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory query;
+    private final MemberNameTrigramIndex memberNameTrigramIndex;
 
-    public OrderRepository(EntityManager em) {
+    public OrderRepository(EntityManager em, MemberNameTrigramIndex memberNameTrigramIndex) {
         this.em = em;
         this.query = new JPAQueryFactory(em);
+        this.memberNameTrigramIndex = memberNameTrigramIndex;
     }
 
     public void save(Order order) {
@@ -37,8 +49,77 @@ public class OrderRepository {
         return em.find(Order.class, id);
     }
 
+    /**
+     * 일괄 취소 대상 주문 id (id 오름차순으로 주문 행 락)
+     *   - 주문 상태(ORDER)이고 배송완료(COMP)가 아닌 주문만 고른다. (Order.markCanceled 규칙을 SQL 로)
+     *   - 배송 상태가 아직 없는(null) 주문도 취소할 수 있다.
+     *   - 락을 잡으므로 같은 주문을 동시에 취소해도 재고가 두번 원복되지 않는다.
+     */
+    public List<Long> findCancelableIdsForUpdate(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select o.id from Order o" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :order" +
+                        " and not exists (select d.id from Delivery d where d.id = o.delivery.id and d.status = :comp)" +
+                        " order by o.id", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("order", OrderStatus.ORDER)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 주문 상태를 한번에 취소로 바꾼다. (벌크 연산, 영속성 컨텍스트는 바뀌지 않는다)
+     */
+    public int cancelAll(Collection<Long> orderIds) {
+        return em.createQuery("update Order o set o.status = :cancel where o.id in :orderIds")
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 주문상품 행 락 (id 오름차순)
+     * StockLedger 반영 스레드가 같은 주문상품을 동시에 반영하지 않도록 합계를 읽기 전에 잡는다.
+     */
+    public void lockOrderItems(Collection<Long> orderIds) {
+        em.createQuery("select oi.id from OrderItem oi where oi.order.id in :orderIds order by oi.id", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 상품별, 재고 반영 여부별 주문 수량 합계 (상품 id 오름차순)
+     */
+    public List<OrderItemCountDto> sumOrderItemCounts(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select new com.jrock.shop.repository.OrderItemCountDto(oi.item.id, oi.stockApplied, sum(oi.count))" +
+                        " from OrderItem oi" +
+                        " where oi.order.id in :orderIds" +
+                        " group by oi.item.id, oi.stockApplied" +
+                        " order by oi.item.id", OrderItemCountDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 아직 재고에 반영되지 않은 주문상품을 반영된 것으로 표시 (취소되었으므로 반영할 것이 없다)
+     */
+    public void markStockApplied(Collection<Long> orderIds) {
+        em.createQuery("update OrderItem oi set oi.stockApplied = true" +
+                        " where oi.order.id in :orderIds and oi.stockApplied = false")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
     // 아래의 동적쿼리 둘다 쓰지 말고 queryDSL을 사용하도록 하자.
     public List<Order> findAllByString(OrderSearch orderSearch) {
+        Set<Long> memberIds = memberIdsByName(orderSearch.getMemberName());
+        if (memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>(); // 이름이 일치하는 회원이 없다.
+        }
 
         //language=JPAQL
         String jpql = "select o From Order o join o.member m";
@@ -61,20 +142,27 @@ public class OrderRepository {
             } else {
                 jpql += " and";
             }
-            jpql += " m.name like :name";
+            jpql += memberIds != null ? " o.member.id in :memberIds" : " m.name like :name escape '!'";
         }
 
         TypedQuery<Order> query = em.createQuery(jpql, Order.class).setMaxResults(1000); //최대 1000건
         if (orderSearch.getOrderStatus() != null) {
             query = query.setParameter("status", orderSearch.getOrderStatus());
         }
-        if (StringUtils.hasText(orderSearch.getMemberName())) {
-            query = query.setParameter("name", orderSearch.getMemberName());
+        if (memberIds != null) {
+            query = query.setParameter("memberIds", memberIds);
+        } else if (StringUtils.hasText(orderSearch.getMemberName())) {
+            query = query.setParameter("name", likeContains(orderSearch.getMemberName()));
         }
         return query.getResultList();
     }
 
     public List<Order> findAllByCriteria(OrderSearch orderSearch) {
+        Set<Long> memberIds = memberIdsByName(orderSearch.getMemberName());
+        if (memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Order> cq = cb.createQuery(Order.class);
         Root<Order> o = cq.from(Order.class);
@@ -87,10 +175,11 @@ public class OrderRepository {
             criteria.add(status);
         }
         //회원 이름 검색
-        if (StringUtils.hasText(orderSearch.getMemberName())) {
+        if (memberIds != null) {
+            criteria.add(o.get("member").get("id").in(memberIds)); // orders.member_id
+        } else if (StringUtils.hasText(orderSearch.getMemberName())) {
             Predicate name =
-                    cb.like(m.<String>get("name"), "%" +
-                            orderSearch.getMemberName() + "%");
+                    cb.like(m.<String>get("name"), likeContains(orderSearch.getMemberName()), '!');
             criteria.add(name);
         }
         cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
@@ -106,17 +195,38 @@ public class OrderRepository {
      * 코드 자동완성
      * 코드 재사용(이것은 자바다)
      * JPQL new 명령어와는 비교가 안될 정도로 깔끔한 DTO 조회를 지원한다.
+     *
+     * 운영 조회용 검색 (주문일 기간, 상품, 주문 총액)
+     *   - 엔티티 대신 필요한 컬럼만 DTO 로 조회한다. (Projections.constructor, 주문상품/회원 엔티티를 올리지 않는다)
+     *   - 주문 총액은 주문상품을 조인해서 group by / having 으로 구한다.
+     *   - 상품 조건은 exists 서브쿼리로 건다. (조인하면 총액이 그 상품의 주문상품만으로 계산된다)
+     *   - 인덱스: orders(status, order_date) 로 상태 + 기간, order_item(order_id, item_id) 로 상품 exists 를 찾는다.
+     *   - 최근 주문 순, 최대 1000건
      */
-    public List<Order> findAll(OrderSearch orderSearch) {
+    public List<OrderSearchDto> findAll(OrderSearch orderSearch) {
 //        QOrder order = QOrder.order;
 //        QMember member = QMember.member;
+        Set<Long> memberIds = memberIdsByName(orderSearch.getMemberName());
+        if (memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
 
+        NumberExpression<Integer> totalPrice = orderItem.orderPrice.multiply(orderItem.count).sum().intValue();
         return query
-                .select(order)
+                .select(Projections.constructor(OrderSearchDto.class,
+                        order.id, member.name, order.orderDate, order.status, totalPrice))
                 .from(order)
                 .join(order.member, member)
+                .join(order.orderItems, orderItem)
                 .where(statusEq(orderSearch.getOrderStatus()),
-                        nameLike(orderSearch.getMemberName()))
+                        memberIds != null ? order.member.id.in(memberIds) : nameLike(orderSearch.getMemberName()),
+                        orderDateGoe(orderSearch.getOrderDateFrom()),
+                        orderDateLoe(orderSearch.getOrderDateTo()),
+                        containsItem(orderSearch.getItemId()))
+                .groupBy(order.id, member.name, order.orderDate, order.status)
+                .having(totalPriceGoe(totalPrice, orderSearch.getMinTotalPrice()),
+                        totalPriceLoe(totalPrice, orderSearch.getMaxTotalPrice()))
+                .orderBy(order.orderDate.desc(), order.id.desc())
                 .limit(1000)
                 .fetch();
     }
@@ -128,11 +238,71 @@ public class OrderRepository {
         return order.status.eq(statusCond);
     }
 
+    private BooleanExpression orderDateGoe(LocalDate fromCond) {
+        if (fromCond == null) {
+            return null;
+        }
+        return order.orderDate.goe(fromCond.atStartOfDay());
+    }
+
+    private BooleanExpression orderDateLoe(LocalDate toCond) {
+        if (toCond == null) {
+            return null;
+        }
+        return order.orderDate.lt(toCond.plusDays(1).atStartOfDay()); // 끝 날짜 하루 전체
+    }
+
+    private BooleanExpression containsItem(Long itemIdCond) {
+        if (itemIdCond == null) {
+            return null;
+        }
+        QOrderItem itemCond = new QOrderItem("itemCond");
+        return JPAExpressions.selectOne()
+                .from(itemCond)
+                .where(itemCond.order.eq(order), itemCond.item.id.eq(itemIdCond))
+                .exists();
+    }
+
+    private static BooleanExpression totalPriceGoe(NumberExpression<Integer> totalPrice, Integer minCond) {
+        return minCond != null ? totalPrice.goe(minCond) : null;
+    }
+
+    private static BooleanExpression totalPriceLoe(NumberExpression<Integer> totalPrice, Integer maxCond) {
+        return maxCond != null ? totalPrice.loe(maxCond) : null;
+    }
+
     private BooleanExpression nameLike(String nameCond) {
         if (!StringUtils.hasText(nameCond)) {
             return null;
         }
-        return member.name.like(nameCond);
+        return member.name.contains(nameCond); // like '%이름%' (%, _ 는 이스케이프)
+    }
+
+    /**
+     * 회원명 조건 (부분 일치)
+     *   - 트라이그램 인덱스로 이름이 일치하는 회원 id 를 먼저 찾고 주문은 member_id in (...) 로 조회한다. (like '%이름%' 은 회원 테이블 전체를 훑는다)
+     *   - 빈 집합이면 이름이 일치하는 회원이 없으므로 주문을 조회하지 않는다.
+     *     이 트랜잭션에서 저장하고 아직 flush 하지 않은 회원은 인덱스에 없으므로(@PostPersist 전) flush 하고 다시 찾는다.
+     *   - null 이면 인덱스로 풀 수 없으므로(준비 전, 일치하는 회원이 너무 많음) like 로 검색한다.
+     *   - 조건이 없어도 null 이다.
+     */
+    private Set<Long> memberIdsByName(String nameCond) {
+        if (!StringUtils.hasText(nameCond)) {
+            return null;
+        }
+        Set<Long> memberIds = memberNameTrigramIndex.findMemberIds(nameCond);
+        if (memberIds != null && memberIds.isEmpty() && em.unwrap(Session.class).isDirty()) {
+            em.flush();
+            memberIds = memberNameTrigramIndex.findMemberIds(nameCond);
+        }
+        return memberIds;
+    }
+
+    /**
+     * like '%이름%' 파라미터, 검색어의 %, _ 는 문자 그대로 찾는다. (escape '!')
+     */
+    private static String likeContains(String nameCond) {
+        return "%" + nameCond.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
     }
 
     /**
@@ -223,4 +393,52 @@ public class OrderRepository {
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    /**
+     * V3.1 키셋(seek) 페이징
+     *   - offset 대신 마지막으로 조회한 order_id (+ order_date) 를 where 조건으로 넘겨서 시작 위치를 인덱스로 바로 찾는다.
+     *   - 페이지가 깊어져도 앞의 row 를 읽고 버리지 않으므로 페이지당 응답 시간이 일정하다.
+     *   - ToOne 관계는 페치 조인, 컬렉션(orderItems)은 기존처럼 @BatchSize 로 최적화
+     *   - limit + 1 건을 조회해서 다음 페이지 존재 여부를 판단한다. (count 쿼리 X)
+     *   - ToOne 만 페치 조인하므로 row 가 증가하지 않는다. 그래서 distinct 가 필요없다.
+     */
+    public OrderSlice<Order> findAllWithMemberDelivery(OrderCursor cursor, OrderCursorSort sort, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit 는 1 이상이어야 합니다. limit=" + limit);
+        }
+        OrderCursorSort orderSort = cursor != null ? cursor.getSort() : sort;
+
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d";
+        if (cursor != null) {
+            jpql += orderSort == OrderCursorSort.ID
+                    ? " where o.id > :orderId"
+                    : " where o.orderDate > :orderDate or (o.orderDate = :orderDate and o.id > :orderId)";
+        }
+        jpql += orderSort == OrderCursorSort.ID
+                ? " order by o.id"
+                : " order by o.orderDate, o.id";
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+                .setMaxResults(limit + 1);
+        if (cursor != null) {
+            query.setParameter("orderId", cursor.getOrderId());
+            if (orderSort == OrderCursorSort.ORDER_DATE) {
+                query.setParameter("orderDate", cursor.getOrderDate());
+            }
+        }
+
+        List<Order> orders = query.getResultList();
+        if (orders.size() <= limit) {
+            return new OrderSlice<>(orders, null);
+        }
+
+        List<Order> content = orders.subList(0, limit);
+        Order last = content.get(limit - 1);
+        OrderCursor nextCursor = orderSort == OrderCursorSort.ID
+                ? OrderCursor.byId(last.getId())
+                : OrderCursor.byOrderDate(last.getOrderDate(), last.getId());
+        return new OrderSlice<>(new ArrayList<>(content), nextCursor);
+    }
 }
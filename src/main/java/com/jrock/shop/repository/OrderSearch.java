@@ -3,6 +3,9 @@ package com.jrock.shop.repository;
 import com.jrock.shop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
 
 @Getter
 @Setter
@@ -10,4 +13,13 @@ public class OrderSearch {
 
     private String memberName; // 회원이름
     private OrderStatus orderStatus; // 주문상태[ORDER, CANCEL]
+
+    // 아래 조건은 QueryDSL 검색(OrderRepository.findAll)만 사용한다.
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateFrom; // 주문일 시작 (포함)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateTo; // 주문일 끝 (포함)
+    private Long itemId; // 이 상품이 들어있는 주문
+    private Integer minTotalPrice; // 주문 총액 하한 (포함)
+    private Integer maxTotalPrice; // 주문 총액 상한 (포함)
 }
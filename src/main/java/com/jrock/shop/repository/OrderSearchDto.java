@@ -0,0 +1,26 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 검색 결과 (OrderRepository.findAll, QueryDSL Projections.constructor)
+ */
+@Data
+public class OrderSearchDto {
+    private Long orderId;
+    private String name;
+    private LocalDateTime orderDate;
+    private OrderStatus orderStatus;
+    private int totalPrice;
+
+    public OrderSearchDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, int totalPrice) {
+        this.orderId = orderId;
+        this.name = name;
+        this.orderDate = orderDate;
+        this.orderStatus = orderStatus;
+        this.totalPrice = totalPrice;
+    }
+}
@@ -0,0 +1,26 @@
+package com.jrock.shop.repository;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 키셋 페이징 결과
+ *   - content : 이번 페이지의 주문
+ *   - nextCursor : 다음 페이지를 조회할 커서 (마지막 페이지면 null)
+ */
+@Getter
+public class OrderSlice<T> {
+
+    private final List<T> content;
+    private final OrderCursor nextCursor;
+
+    public OrderSlice(List<T> content, OrderCursor nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.LockOptions;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxEventRepository {
+
+    private final EntityManager em;
+
+    public void save(OutboxEvent event) {
+        em.persist(event);
+    }
+
+    /**
+     * 처리할 이벤트를 id 순서로 최대 limit 개, 행 락을 잡고 읽는다.
+     *   - skip locked: 다른 드레이너가 잡고 있는 행은 기다리지 않고 건너뛴다. (드레이너 여러개가 서로 다른 묶음을 가져간다)
+     *   - skip locked 를 지원하지 않는 DB(H2 방언)는 하이버네이트가 일반 for update 로 보낸다. 이 경우 다른 드레이너가 끝날 때까지 기다린다.
+     *   - maxAttempts 번 넘게 실패한 이벤트는 가져오지 않는다. (계속 실패하는 이벤트가 뒤의 이벤트를 막지 않도록)
+     */
+    public List<OutboxEvent> findPendingForUpdate(int maxAttempts, int limit) {
+        return em.createQuery("select e from OutboxEvent e where e.attempts < :maxAttempts order by e.id", OutboxEvent.class)
+                .setParameter("maxAttempts", maxAttempts)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("javax.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public void deleteAll(Collection<Long> ids) {
+        em.createQuery("delete from OutboxEvent e where e.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public long countPending(int maxAttempts) {
+        return em.createQuery("select count(e) from OutboxEvent e where e.attempts < :maxAttempts", Long.class)
+                .setParameter("maxAttempts", maxAttempts)
+                .getSingleResult();
+    }
+
+    public long countDead(int maxAttempts) {
+        return em.createQuery("select count(e) from OutboxEvent e where e.attempts >= :maxAttempts", Long.class)
+                .setParameter("maxAttempts", maxAttempts)
+                .getSingleResult();
+    }
+}
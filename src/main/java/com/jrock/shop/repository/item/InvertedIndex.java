@@ -0,0 +1,116 @@
+package com.jrock.shop.repository.item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 역색인 (단어 -> 문서 id, 가중치)
+ *   - 문서는 단어 -> 가중치(필드 가중치 합) 로 넣는다. 같은 id 로 다시 넣으면 이전 단어를 빼고 새로 넣는다.
+ *   - 단어는 정렬된 맵(TreeMap)에 두므로 접두어 검색은 접두어로 시작하는 구간만 훑는다.
+ *   - 검색어의 단어는 모두 일치해야 한다. (AND)
+ *   - 점수 = 단어마다 idf * 가중치의 합. idf = ln(1 + 전체 문서 수 / 단어가 나온 문서 수) 이므로 흔한 단어일수록 점수가 낮다.
+ *     접두어로 찾은 단어는 PREFIX_BOOST 를 곱하고, 한 단어에 여러 단어가 걸리면 가장 높은 것만 쓴다.
+ */
+class InvertedIndex {
+
+    static final double PREFIX_BOOST = 0.5;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+
+    synchronized void put(Long id, Map<String, Integer> terms) {
+        remove(id);
+        documents.put(id, terms);
+        terms.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, weight));
+    }
+
+    /**
+     * 이미 있는 id 면 넣지 않는다. (다시 만드는 중에 먼저 들어온 최신 값을 덮어쓰지 않도록)
+     */
+    synchronized void putIfAbsent(Long id, Map<String, Integer> terms) {
+        if (!documents.containsKey(id)) {
+            put(id, terms);
+        }
+    }
+
+    synchronized void remove(Long id) {
+        Map<String, Integer> old = documents.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String term : old.keySet()) {
+            Map<Long, Integer> ids = postings.get(term);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * 점수 높은 순 (같으면 id 순) 최대 limit 개
+     */
+    synchronized List<ItemSearchHit> search(List<QueryTerm> query, int limit) {
+        if (query.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        Map<Long, Double> scores = null;
+        for (QueryTerm term : query) {
+            Map<Long, Double> termScores = score(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<ItemSearchHit> hits = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> hits.add(new ItemSearchHit(id, score)));
+        hits.sort(Comparator.comparingDouble(ItemSearchHit::getScore).reversed().thenComparing(ItemSearchHit::getItemId));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private Map<Long, Double> score(QueryTerm term) {
+        Map<Long, Double> scores = new HashMap<>();
+        Map<String, Map<Long, Integer>> matched = term.prefix
+                ? postings.subMap(term.text, true, term.text + Character.MAX_VALUE, true)
+                : postings.containsKey(term.text) ? Map.of(term.text, postings.get(term.text)) : Map.of();
+        matched.forEach((text, ids) -> {
+            double idf = Math.log(1 + (double) documents.size() / ids.size());
+            double boost = text.equals(term.text) ? 1 : PREFIX_BOOST;
+            ids.forEach((id, weight) -> scores.merge(id, idf * weight * boost, Math::max));
+        });
+        return scores;
+    }
+
+    synchronized int documentCount() {
+        return documents.size();
+    }
+
+    synchronized int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * 검색어 단어 하나 (prefix 면 text 로 시작하는 모든 단어)
+     */
+    static class QueryTerm {
+        final String text;
+        final boolean prefix;
+
+        QueryTerm(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+}
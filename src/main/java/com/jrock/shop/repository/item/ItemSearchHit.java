@@ -0,0 +1,18 @@
+package com.jrock.shop.repository.item;
+
+import lombok.Getter;
+
+/**
+ * 상품 검색 결과 한건 (상품 id, 점수)
+ */
+@Getter
+public class ItemSearchHit {
+
+    private final Long itemId;
+    private final double score;
+
+    public ItemSearchHit(Long itemId, double score) {
+        this.itemId = itemId;
+        this.score = score;
+    }
+}
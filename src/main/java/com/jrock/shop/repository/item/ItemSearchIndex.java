@@ -0,0 +1,243 @@
+package com.jrock.shop.repository.item;
+
+import com.jrock.shop.domain.item.Album;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.domain.item.Movie;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 상품 검색 (메모리 역색인)
+ *   - 색인 필드와 가중치: 상품명 3, 저자(Book.author)/아티스트(Album.artist)/감독(Movie.director) 2, isbn(Book, Movie) 1
+ *   - 단어: 글자/숫자가 아닌 문자로 나누고 소문자로 바꾼다. isbn 은 '-' 를 뺀 전체도 한 단어로 넣는다.
+ *   - 검색어: 공백으로 나눈 단어가 모두 들어있는 상품을 점수 순으로 돌려준다. "jpa*" 처럼 * 로 끝나면 접두어 검색이다.
+ *   - 시작할 때 상품 테이블을 스트림으로 읽어서 만들고(rebuild), 상품 등록/수정(ItemService)은 커밋 후에 반영한다.
+ *     다시 만드는 중에 커밋된 변경은 새 색인에도 같이 넣고, 스캔이 읽은 이전 값으로 덮어쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class ItemSearchIndex {
+
+    static final int NAME_WEIGHT = 3;
+    static final int CREATOR_WEIGHT = 2;
+    static final int CODE_WEIGHT = 1;
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final int fetchSize;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile InvertedIndex building; // 다시 만드는 중인 색인
+    private volatile boolean ready;
+
+    private final LongAdder queries = new LongAdder();
+    private volatile long lastRebuildMillis;
+
+    public ItemSearchIndex(EntityManager em, PlatformTransactionManager transactionManager,
+                           @Value("${shop.item-search.fetch-size:500}") int fetchSize) {
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * 상품 테이블 전체를 다시 색인한다.
+     *   - forward-only 커서로 한 행씩 읽고 fetchSize 마다 영속성 컨텍스트를 비운다. (상품 수와 상관없이 힙 사용량 일정)
+     *   - 2차 캐시는 채우지 않는다. (CacheMode.IGNORE)
+     *   - 다 만들면 통째로 교체하므로 만드는 동안에는 이전 색인으로 검색한다.
+     */
+    public synchronized void rebuild() {
+        long startedAt = System.nanoTime();
+        InvertedIndex fresh = new InvertedIndex();
+        building = fresh;
+        try {
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<Item> items = em.createQuery("select i from Item i order by i.id", Item.class)
+                        .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                        .setHint(QueryHints.READ_ONLY, true)
+                        .setHint(QueryHints.CACHE_MODE, CacheMode.IGNORE)
+                        .getResultStream()) {
+                    int rows = 0;
+                    for (Iterator<Item> it = items.iterator(); it.hasNext(); ) {
+                        Item item = it.next();
+                        fresh.putIfAbsent(item.getId(), terms(item));
+                        if (++rows % fetchSize == 0) {
+                            em.clear();
+                        }
+                    }
+                }
+            });
+            index = fresh;
+            ready = true;
+        } finally {
+            building = null;
+        }
+        lastRebuildMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("item search index rebuilt. items={} terms={} elapsed={}ms", fresh.documentCount(), fresh.termCount(), lastRebuildMillis);
+    }
+
+    /**
+     * 상품 등록/수정: 색인할 값은 지금 뽑고, 커밋 후에 반영한다. (롤백되면 아무것도 안함)
+     */
+    public void putAfterCommit(Item item) {
+        Long itemId = item.getId();
+        Map<String, Integer> terms = terms(item);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(itemId, terms);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(itemId, terms);
+            }
+        });
+    }
+
+    private void put(Long itemId, Map<String, Integer> terms) {
+        InvertedIndex rebuilding = building;
+        if (rebuilding != null) {
+            rebuilding.put(itemId, terms);
+        }
+        index.put(itemId, terms);
+    }
+
+    /**
+     * @param limit 최대 결과 수 (1 이상)
+     */
+    public List<ItemSearchHit> search(String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit 는 1 이상이어야 합니다. limit=" + limit);
+        }
+        if (!ready) {
+            rebuildIfNotReady(); // 시작 직후 아직 만들어지기 전
+        }
+        queries.increment();
+        return index.search(parse(query), limit);
+    }
+
+    /**
+     * 준비 전에 동시에 들어온 검색은 락을 기다린 뒤 다시 확인한다. (먼저 만든 색인이 있으면 또 만들지 않는다)
+     */
+    private synchronized void rebuildIfNotReady() {
+        if (!ready) {
+            rebuild();
+        }
+    }
+
+    static List<InvertedIndex.QueryTerm> parse(String query) {
+        List<InvertedIndex.QueryTerm> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < tokens.size(); i++) {
+                terms.add(new InvertedIndex.QueryTerm(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        return terms;
+    }
+
+    static Map<String, Integer> terms(Item item) {
+        Map<String, Integer> terms = new HashMap<>();
+        add(terms, item.getName(), NAME_WEIGHT);
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            add(terms, book.getAuthor(), CREATOR_WEIGHT);
+            addCode(terms, book.getIsbn());
+        } else if (item instanceof Album) {
+            add(terms, ((Album) item).getArtist(), CREATOR_WEIGHT);
+        } else if (item instanceof Movie) {
+            Movie movie = (Movie) item;
+            add(terms, movie.getDirector(), CREATOR_WEIGHT);
+            addCode(terms, movie.getIsbn());
+        }
+        return terms;
+    }
+
+    private static void add(Map<String, Integer> terms, String value, int weight) {
+        for (String token : tokenize(value)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private static void addCode(Map<String, Integer> terms, String code) {
+        add(terms, code, CODE_WEIGHT);
+        List<String> tokens = tokenize(code);
+        if (tokens.size() > 1) {
+            terms.merge(String.join("", tokens), CODE_WEIGHT, Integer::sum); // 978-89-1234 -> 978891234
+        }
+    }
+
+    static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        if (value == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString().toLowerCase(Locale.ROOT));
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString().toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    public Stats stats() {
+        InvertedIndex current = index;
+        return new Stats(ready, current.documentCount(), current.termCount(), queries.sum(), lastRebuildMillis);
+    }
+
+    @Getter
+    public static class Stats {
+        private final boolean ready;
+        private final int items;
+        private final int terms;
+        private final long queries;
+        private final long lastRebuildMillis;
+
+        Stats(boolean ready, int items, int terms, long queries, long lastRebuildMillis) {
+            this.ready = ready;
+            this.items = items;
+            this.terms = terms;
+            this.queries = queries;
+            this.lastRebuildMillis = lastRebuildMillis;
+        }
+    }
+}
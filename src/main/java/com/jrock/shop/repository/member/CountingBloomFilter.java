@@ -0,0 +1,96 @@
+package com.jrock.shop.repository.member;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 카운팅 블룸 필터 (문자열)
+ *   - mightContain 이 false 면 한번도 넣지 않은 값이다. (false negative 없음)
+ *   - true 면 넣었을 수도 있다. (falsePositiveRate 확률로 틀림)
+ *   - 비트 대신 카운터(byte)를 써서 remove 가 가능하다. 카운터가 255 에 도달하면 더 이상 줄이지 않는다. (false negative 방지)
+ *
+ * 주의: 넣지 않은 값을 remove 하면 다른 값의 카운터가 줄어 false negative 가 생길 수 있다.
+ */
+class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+
+    CountingBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedInsertions=" + expectedInsertions + ", falsePositiveRate=" + falsePositiveRate);
+        }
+        // m = -n ln(p) / (ln2)^2, k = m/n ln2
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Math.max(size, 64), Integer.MAX_VALUE - 8)];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / expectedInsertions * Math.log(2)));
+    }
+
+    synchronized void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+    }
+
+    synchronized void remove(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) { // 포화된 카운터는 실제 값을 알 수 없으므로 그대로 둔다.
+                counters[index] = (byte) (count - 1);
+            }
+        }
+    }
+
+    synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[index(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return counters.length;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 64비트 해시 하나를 둘로 나눠서 k 개의 해시를 만든다. (h1 + i * h2, Kirsch-Mitzenmacher)
+     */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % counters.length;
+    }
+
+    /**
+     * FNV-1a 64 + murmur3 finalizer
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jrock.shop.repository.member;
+
+import com.jrock.shop.repository.MemberRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 회원명 존재 여부 인덱스 (중복 회원 검증용)
+ *   - 블룸 필터가 "없다" 고 하면 쿼리 없이 새 이름으로 판단한다.
+ *   - "있을 수도 있다" 면 existsByName (member.name 유니크 인덱스) 으로 확인한다.
+ *   - 시작할 때 회원명만 스트림으로 읽어서 채운다. 채우기 전에는 항상 exists 쿼리로 확인한다.
+ *   - 동시에 같은 이름으로 가입하는 경우는 필터로 막을 수 없으므로 유니크 제약 조건이 최종적으로 막는다.
+ *
+ * 필터가 틀리는 방향은 항상 "있을 수도 있다" 쪽이다. (롤백된 가입, 중복 카운트 등) 이 경우 쿼리가 한번 더 나갈 뿐이다.
+ */
+@Slf4j
+@Component
+public class MemberNameIndex {
+
+    private final MemberRepository memberRepository;
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final CountingBloomFilter filter;
+
+    private volatile boolean ready;
+
+    private final LongAdder skippedQueries = new LongAdder();
+    private final LongAdder existsQueries = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public MemberNameIndex(MemberRepository memberRepository, EntityManager em, PlatformTransactionManager transactionManager,
+                           @Value("${shop.member-name-filter.expected-names:100000}") int expectedNames,
+                           @Value("${shop.member-name-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.memberRepository = memberRepository;
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.filter = new CountingBloomFilter(expectedNames, falsePositiveRate);
+    }
+
+    /**
+     * 기존 회원명을 필터에 채운다.
+     * 채우는 도중에 가입한 이름은 add 로 같이 들어가고, 중복으로 들어간 이름은 "있을 수도 있다" 로만 남는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LongAdder count = new LongAdder();
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<String> names = em.createQuery("select m.name from Member m", String.class).getResultStream()) {
+                names.forEach(name -> {
+                    filter.add(name);
+                    count.increment();
+                });
+            }
+        });
+        ready = true;
+        log.info("member name filter ready. names={} counters={} hashes={}", count.sum(), filter.size(), filter.hashCount());
+    }
+
+    /**
+     * 이미 있는 회원명인지 확인
+     */
+    public boolean exists(String name) {
+        if (ready && !filter.mightContain(name)) {
+            skippedQueries.increment();
+            return false;
+        }
+        existsQueries.increment();
+        boolean exists = memberRepository.existsByName(name);
+        if (ready && !exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 가입: 커밋 전에 바로 넣는다. (롤백되면 "있을 수도 있다" 로 남을 뿐이다)
+     */
+    public void add(String name) {
+        filter.add(name);
+    }
+
+    /**
+     * 이름 변경: 새 이름은 바로 넣고, 이전 이름은 커밋 후에 뺀다.
+     * 필터를 채우기 전에 시작한 변경은 이전 이름이 필터에 들어갔는지 알 수 없으므로 빼지 않는다.
+     */
+    public void rename(String oldName, String newName) {
+        filter.add(newName);
+        if (!ready || oldName == null || oldName.equals(newName)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            filter.remove(oldName);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                filter.remove(oldName);
+            }
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(ready, skippedQueries.sum(), existsQueries.sum(), falsePositives.sum());
+    }
+
+    @Getter
+    public static class Stats {
+        private final boolean ready;
+        private final long skippedQueries;
+        private final long existsQueries;
+        private final long falsePositives;
+
+        Stats(boolean ready, long skippedQueries, long existsQueries, long falsePositives) {
+            this.ready = ready;
+            this.skippedQueries = skippedQueries;
+            this.existsQueries = existsQueries;
+            this.falsePositives = falsePositives;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.jrock.shop.repository.member;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 회원명 부분 검색 인덱스 (주문 검색의 회원명 조건용)
+ *   - like '%이름%' 은 인덱스를 못 타서 주문 검색마다 회원 테이블 전체를 훑는다.
+ *     회원명 조각을 메모리 트라이그램 색인에서 회원 id 집합으로 바꾸고, 주문은 member_id in (...) 로 찾는다.
+ *   - 시작할 때 회원 id, 이름만 스트림으로 읽어서 채운다.
+ *   - 회원 저장/변경/삭제는 Member 엔티티 리스너(MemberNameTrigramIndexListener)가 반영한다. (MemberService 를 거치지 않아도)
+ *     저장은 바로 넣고 롤백되면 뺀다. 이름 변경, 삭제는 커밋 후에 반영한다.
+ *     커밋된 회원은 모두 인덱스에 있으므로 일치하는 회원이 없으면 빈 집합이다. (호출한 쪽은 주문을 조회하지 않는다)
+ *   - 준비 전이거나 일치하는 회원이 maxCandidates 명을 넘으면 null 을 돌려준다. (호출한 쪽은 like 로 검색)
+ *     IN 절이 너무 길어지면 like 로 한번 훑는 것보다 느리고, DB 마다 IN 절 파라미터 수 제한도 있다.
+ *
+ * 주의: 벌크 연산으로 바꾼 회원명은 반영되지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberNameTrigramIndex {
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final int maxCandidates;
+    private final TrigramIndex index = new TrigramIndex();
+
+    private volatile boolean ready;
+
+    private final LongAdder indexHits = new LongAdder();
+    private final LongAdder tooManyCandidates = new LongAdder();
+    private final LongAdder notReady = new LongAdder();
+
+    public MemberNameTrigramIndex(EntityManager em, PlatformTransactionManager transactionManager,
+                                  @Value("${shop.member-name-search.max-candidates:1000}") int maxCandidates) {
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * 기존 회원을 채운다. 채우는 도중에 커밋된 가입/변경이 먼저 들어갔으면 덮어쓰지 않는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LongAdder count = new LongAdder();
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<Object[]> members = em.createQuery("select m.id, m.name from Member m", Object[].class).getResultStream()) {
+                members.forEach(row -> {
+                    index.putIfAbsent((Long) row[0], (String) row[1]);
+                    count.increment();
+                });
+            }
+        });
+        ready = true;
+        log.info("member name trigram index ready. members={} trigrams={}", count.sum(), index.gramCount());
+    }
+
+    /**
+     * 이름에 fragment 가 들어있는 회원 id, 인덱스로 풀 수 없으면 null
+     */
+    public Set<Long> findMemberIds(String fragment) {
+        if (!ready) {
+            notReady.increment();
+            return null;
+        }
+        Set<Long> memberIds = index.find(fragment, maxCandidates);
+        if (memberIds == null) {
+            tooManyCandidates.increment();
+        } else {
+            indexHits.increment();
+        }
+        return memberIds;
+    }
+
+    /**
+     * 저장: 커밋 전에 바로 넣고 롤백되면 뺀다.
+     * 커밋 전에 다른 검색이 이 회원 id 를 찾아도 커밋되지 않은 회원의 주문은 보이지 않으므로 결과는 같다.
+     */
+    public void add(Long memberId, String name) {
+        index.put(memberId, name);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    index.remove(memberId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 이름 변경: 커밋 후에 바꾼다. (롤백되면 이전 이름 그대로)
+     */
+    public void rename(Long memberId, String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index.put(memberId, name);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.put(memberId, name);
+            }
+        });
+    }
+
+    /**
+     * 삭제: 커밋 후에 뺀다.
+     */
+    public void remove(Long memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index.remove(memberId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.remove(memberId);
+            }
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(ready, index.size(), index.gramCount(), maxCandidates,
+                indexHits.sum(), tooManyCandidates.sum(), notReady.sum());
+    }
+
+    @Getter
+    public static class Stats {
+        private final boolean ready;
+        private final int members;
+        private final int trigrams;
+        private final int maxCandidates;
+        private final long indexHits; // member_id in (...) 로 검색
+        private final long tooManyCandidates; // like 로 검색
+        private final long notReady; // like 로 검색
+
+        Stats(boolean ready, int members, int trigrams, int maxCandidates, long indexHits, long tooManyCandidates, long notReady) {
+            this.ready = ready;
+            this.members = members;
+            this.trigrams = trigrams;
+            this.maxCandidates = maxCandidates;
+            this.indexHits = indexHits;
+            this.tooManyCandidates = tooManyCandidates;
+            this.notReady = notReady;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jrock.shop.repository.member;
+
+import com.jrock.shop.domain.Member;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Member 엔티티 리스너, 회원명 트라이그램 인덱스를 persist/update/remove 에서 바로 채운다.
+ * MemberService 를 거치지 않고 저장한 회원(em.persist, 다른 서비스)도 인덱스에 들어가므로 인덱스에 없으면 없는 회원이다.
+ *
+ * 하이버네이트가 스프링 빈 컨테이너(SpringBeanContainer)로 만든다. EntityManagerFactory 를 만드는 도중이라
+ * 인덱스(EntityManager 를 쓴다)는 이벤트가 올 때 꺼낸다.
+ * 주의: 벌크 연산(JPQL/네이티브 insert, update)은 엔티티 리스너를 거치지 않는다.
+ */
+public class MemberNameTrigramIndexListener {
+
+    private final ObjectProvider<MemberNameTrigramIndex> index;
+
+    public MemberNameTrigramIndexListener(ObjectProvider<MemberNameTrigramIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    public void persisted(Member member) {
+        index.getObject().add(member.getId(), member.getName());
+    }
+
+    @PostUpdate
+    public void updated(Member member) {
+        index.getObject().rename(member.getId(), member.getName());
+    }
+
+    @PostRemove
+    public void removed(Member member) {
+        index.getObject().remove(member.getId());
+    }
+}
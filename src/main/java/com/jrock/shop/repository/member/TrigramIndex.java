@@ -0,0 +1,122 @@
+package com.jrock.shop.repository.member;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 부분 일치 검색용 트라이그램 역색인 (id -> 문자열)
+ *   - 값에서 연속된 3글자 조각을 모두 뽑아 조각 -> id 집합으로 저장한다. ("홍길동전" -> 홍길동, 길동전)
+ *   - 검색어의 조각마다 id 집합을 찾아서 작은 집합부터 교집합을 구하고, 실제 값에 검색어가 들어있는지 다시 확인한다.
+ *     (조각이 모두 있어도 이어져 있지 않을 수 있다. "홍길동" 과 "길동전" 은 있지만 "홍길동전" 은 아닌 "홍길동 길동전")
+ *   - 3글자보다 짧은 검색어는 조각을 만들 수 없으므로 모든 값을 훑는다.
+ *   - 대소문자를 구분한다. (like 와 같다)
+ */
+class TrigramIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<Long, String> values = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    synchronized void put(Long id, String value) {
+        remove(id);
+        if (value == null) {
+            return;
+        }
+        values.put(id, value);
+        for (String gram : grams(value)) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * 이미 있는 id 면 넣지 않는다. (초기 적재 중에 먼저 들어온 최신 값을 덮어쓰지 않도록)
+     */
+    synchronized void putIfAbsent(Long id, String value) {
+        if (!values.containsKey(id)) {
+            put(id, value);
+        }
+    }
+
+    synchronized void remove(Long id) {
+        String old = values.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : grams(old)) {
+            Set<Long> ids = postings.get(gram);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * fragment 가 들어있는 값의 id, limit 개를 넘으면 null
+     */
+    synchronized Set<Long> find(String fragment, int limit) {
+        Set<Long> result = new HashSet<>();
+        if (fragment.length() < GRAM) {
+            for (Map.Entry<Long, String> entry : values.entrySet()) {
+                if (entry.getValue().contains(fragment) && !add(result, entry.getKey(), limit)) {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        List<Set<Long>> candidates = new ArrayList<>();
+        for (String gram : grams(fragment)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return result; // 없는 조각이 하나라도 있으면 일치하는 값이 없다.
+            }
+            candidates.add(ids);
+        }
+        candidates.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> smallest = candidates.get(0);
+        for (Long id : smallest) {
+            if (containsAll(candidates, id) && values.get(id).contains(fragment) && !add(result, id, limit)) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+
+    synchronized int gramCount() {
+        return postings.size();
+    }
+
+    private static boolean add(Set<Long> result, Long id, int limit) {
+        result.add(id);
+        return result.size() <= limit;
+    }
+
+    private static boolean containsAll(List<Set<Long>> candidates, Long id) {
+        for (int i = 1; i < candidates.size(); i++) {
+            if (!candidates.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jrock.shop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * V6 플랫 데이터 조립기
+ *   - order by o.id 로 정렬된 OrderFlatDto row 를 한번만 훑으면서, 연속된 같은 주문의 row 를 OrderQueryDto 하나로 합친다.
+ *   - groupingBy 처럼 중간 Map 이나 키 전용 DTO 를 만들지 않으므로 주문당 DTO 를 한번만 생성하고, equals/hashCode 에 의존하지 않는다.
+ *   - 입력 순서(주문 id 순서)를 그대로 유지한다.
+ *
+ * 주의: 같은 주문의 row 가 붙어서 들어온다는 전제다. 정렬되지 않은 row 를 넣으면 같은 주문이 여러번 나올 수 있다.
+ */
+public class OrderFlatAssembler {
+
+    private final Consumer<OrderQueryDto> downstream;
+    private OrderQueryDto current;
+
+    public OrderFlatAssembler(Consumer<OrderQueryDto> downstream) {
+        this.downstream = downstream;
+    }
+
+    /**
+     * List 로 한번에 조립 (V6 API)
+     */
+    public static List<OrderQueryDto> collapse(List<OrderFlatDto> flats) {
+        List<OrderQueryDto> result = new ArrayList<>();
+        OrderFlatAssembler assembler = new OrderFlatAssembler(result::add);
+        flats.forEach(assembler::add);
+        assembler.finish();
+        return result;
+    }
+
+    /**
+     * row 하나를 추가한다. 주문 id 가 바뀌면 이전 주문은 완성된 것이므로 downstream 으로 넘긴다.
+     */
+    public void add(OrderFlatDto flat) {
+        if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+            finish();
+            current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(),
+                    flat.getOrderStatus(), flat.getAddress(), new ArrayList<>());
+        }
+        current.getOrderItems().add(new OrderItemQueryDto(flat.getOrderId(),
+                flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+    }
+
+    /**
+     * 마지막 주문을 downstream 으로 넘긴다. 모든 row 를 넣은 뒤에 반드시 호출해야 한다.
+     */
+    public void finish() {
+        if (current != null) {
+            downstream.accept(current);
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.jrock.shop.repository.order.query;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * orderItem 컬렉션을 IN 절로 조회 (V5 findAllByDto_optimization 용)
+ *
+ * orderId 를 IN 절 하나에 다 넣으면
+ *   - 데이터베이스에 따라 IN 절 파라미터 수 제한에 걸린다. (ex. 오라클 1000개)
+ *   - 파라미터 갯수마다 SQL 이 달라지므로 DB, 하이버네이트 쿼리 플랜 캐시에 갯수별로 플랜이 쌓인다.
+ *
+ * 그래서
+ *   - chunkSize(2의 제곱수) 단위로 나누고, 마지막 chunk 는 마지막 id 를 반복해서 2의 제곱수 크기로 채운다. (1, 2, 4, ... chunkSize)
+ *   - 이렇게 하면 IN 절 모양이 log2(chunkSize) + 1 개로 고정되므로 플랜 캐시가 늘어나지 않는다.
+ *   - 중복 id 는 IN 절 결과에 영향이 없다.
+ *   - parallelism 이 1보다 크고 chunk 가 여러개면 제한된 스레드 풀에서 chunk 를 병렬로 조회한다.
+ *     (병렬 조회는 스레드마다 커넥션을 하나씩 쓰므로 커넥션 풀 크기보다 작게 잡아야 한다.)
+ */
+@Slf4j
+@Component
+public class OrderItemQueryLoader {
+
+    private static final String ORDER_ITEMS_QUERY =
+            "select new com.jrock.shop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
+                    " from OrderItem oi" +
+                    " join oi.item i" +
+                    " where oi.order.id in :orderIds";
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final int chunkSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public OrderItemQueryLoader(EntityManager em, EntityManagerFactory emf,
+                                @Value("${shop.order-item-loader.chunk-size:512}") int chunkSize,
+                                @Value("${shop.order-item-loader.parallelism:1}") int parallelism) {
+        if (chunkSize < 1 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("chunk-size 는 2의 제곱수여야 합니다. chunkSize=" + chunkSize);
+        }
+        this.em = em;
+        this.emf = emf;
+        this.chunkSize = chunkSize;
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = this.parallelism > 1 ? createExecutor(this.parallelism) : null;
+    }
+
+    /**
+     * orderId 별 orderItem 목록 (orderItem 이 없는 주문은 Map 에 없다.)
+     */
+    public Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<List<Long>> chunks = toPaddedChunks(orderIds, chunkSize);
+
+        List<OrderItemQueryDto> orderItems;
+        if (executor == null || chunks.size() == 1) {
+            orderItems = new ArrayList<>();
+            chunks.forEach(chunk -> orderItems.addAll(findOrderItems(em, chunk)));
+        } else {
+            orderItems = findOrderItemsParallel(chunks);
+        }
+
+        log.debug("orderItems chunks={} size={}", chunks.size(), orderItems.size());
+
+        return orderItems.stream()
+                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
+    }
+
+    /**
+     * 병렬 조회는 스레드마다 별도의 EntityManager 를 사용한다. (EntityManager 는 스레드 세이프하지 않다.)
+     */
+    private List<OrderItemQueryDto> findOrderItemsParallel(List<List<Long>> chunks) {
+        List<CompletableFuture<List<OrderItemQueryDto>>> futures = chunks.stream()
+                .map(chunk -> CompletableFuture.supplyAsync(() -> {
+                    EntityManager chunkEm = emf.createEntityManager();
+                    try {
+                        return findOrderItems(chunkEm, chunk);
+                    } finally {
+                        chunkEm.close();
+                    }
+                }, executor))
+                .collect(Collectors.toList());
+
+        List<OrderItemQueryDto> orderItems = new ArrayList<>();
+        futures.forEach(f -> orderItems.addAll(f.join()));
+        return orderItems;
+    }
+
+    private List<OrderItemQueryDto> findOrderItems(EntityManager em, List<Long> orderIds) {
+        return em.createQuery(ORDER_ITEMS_QUERY, OrderItemQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * chunkSize 단위로 자르고 각 chunk 를 2의 제곱수 크기로 채운다.
+     * ex) chunkSize 4, ids [1..7] -> [1,2,3,4], [5,6,7,7]
+     */
+    static List<List<Long>> toPaddedChunks(List<Long> ids, int chunkSize) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = new ArrayList<>(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+            int paddedSize = Integer.highestOneBit(chunk.size()) == chunk.size()
+                    ? chunk.size()
+                    : Integer.highestOneBit(chunk.size()) << 1;
+            Long last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < paddedSize) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * 스레드 수, 대기 큐 모두 제한한다. 큐가 가득 차면 호출한 스레드가 직접 실행한다. (CallerRunsPolicy)
+     */
+    private static ExecutorService createExecutor(int parallelism) {
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 16),
+                r -> {
+                    Thread thread = new Thread(r, "order-item-loader-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.jrock.shop.repository.order.query;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * OrderQueryDto 읽기 캐시 (orderId 기준, 애플리케이션 메모리)
+ *   - 가중치(주문 1 + orderItem 수) 합이 maxWeight 를 넘으면 가장 오래 안쓴 주문부터 버린다. (LRU)
+ *   - 주문/취소, 회원명/상품명 변경은 트랜잭션 커밋 후에 무효화한다. 롤백된 트랜잭션은 캐시를 건드리지 않는다.
+ *   - 조회(DB) 도중에 무효화가 일어나면 조회 결과를 캐시에 넣지 않는다. (커밋 전 값으로 캐시가 오염되는 것을 방지)
+ *
+ * 주의: 캐시에 있는 DTO 를 그대로 돌려주므로 꺼내간 쪽에서 값을 변경하면 안된다.
+ */
+@Component
+public class OrderQueryCache {
+
+    private final long maxWeight;
+    private final Map<Long, OrderQueryDto> cache = new LinkedHashMap<>(16, 0.75f, true); // accessOrder = true (LRU)
+    private long weight;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OrderQueryCache(@Value("${shop.order-query-cache.max-weight:10000}") long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * 캐시에 있으면 바로 돌려주고, 없으면 loader 로 조회해서 캐시에 넣는다. (read-through)
+     */
+    public OrderQueryDto get(Long orderId, Function<Long, OrderQueryDto> loader) {
+        synchronized (this) {
+            OrderQueryDto cached = cache.get(orderId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+
+        long generation = invalidations.get();
+        OrderQueryDto loaded = loader.apply(orderId);
+        if (loaded != null) {
+            put(orderId, loaded, generation);
+        }
+        return loaded;
+    }
+
+    private synchronized void put(Long orderId, OrderQueryDto order, long generation) {
+        if (generation != invalidations.get()) {
+            return; // 조회하는 사이에 무효화가 있었다.
+        }
+        OrderQueryDto previous = cache.put(orderId, order);
+        if (previous != null) {
+            weight -= weightOf(previous);
+        }
+        weight += weightOf(order);
+
+        Iterator<OrderQueryDto> eldest = cache.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= weightOf(eldest.next());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized void evict(Long orderId) {
+        invalidations.incrementAndGet();
+        OrderQueryDto removed = cache.remove(orderId);
+        if (removed != null) {
+            weight -= weightOf(removed);
+        }
+    }
+
+    public synchronized void evictAll() {
+        invalidations.incrementAndGet();
+        cache.clear();
+        weight = 0;
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋된 후에 무효화 (트랜잭션 밖이면 바로 무효화)
+     */
+    public void evictAfterCommit(Long orderId) {
+        afterCommit(() -> evict(orderId));
+    }
+
+    public void evictAllAfterCommit() {
+        afterCommit(this::evictAll);
+    }
+
+    private void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    public synchronized Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return new Stats(cache.size(), weight, maxWeight, hitCount, missCount, evictions.sum(),
+                total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    private static long weightOf(OrderQueryDto order) {
+        return 1 + (order.getOrderItems() == null ? 0 : order.getOrderItems().size());
+    }
+
+    @Getter
+    public static class Stats {
+        private final int size;
+        private final long weight;
+        private final long maxWeight;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final double hitRate;
+
+        Stats(int size, long weight, long maxWeight, long hits, long misses, long evictions, double hitRate) {
+            this.size = size;
+            this.weight = weight;
+            this.maxWeight = maxWeight;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.hitRate = hitRate;
+        }
+    }
+}
@@ -2,14 +2,22 @@ package com.jrock.shop.repository.order.query;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -17,6 +25,8 @@ import java.util.stream.Collectors;
 public class OrderQueryRepository {
 
     private final EntityManager em;
+    private final OrderItemQueryLoader orderItemQueryLoader;
+    private final OrderQueryCache orderQueryCache;
 
     /**
      * 컬렉션은 별도로 조회
@@ -51,8 +61,8 @@ public class OrderQueryRepository {
 
         List<Long> orderIds = toOrderIds(result);
 
-        //orderItem 컬렉션을 MAP 한방에 조회
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(orderIds);
+        //orderItem 컬렉션을 MAP 한방에 조회 (id 가 많으면 2의 제곱수 크기 chunk 로 나누어 조회, OrderItemQueryLoader 참고)
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItemQueryLoader.findOrderItemMap(orderIds);
 
         //루프를 돌면서 컬렉션 추가(추가 쿼리 실행X)
         result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
@@ -60,32 +70,113 @@ public class OrderQueryRepository {
         return result;
     }
 
-    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
-                "select new com.jrock.shop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
-                        " from OrderItem oi" +
+    /**
+     * 플랫 데이터 조회
+     *   - order by o.id 로 같은 주문의 row 를 붙여서 내려준다. (OrderFlatAssembler 로 한번에 조립 가능)
+     */
+    public List<OrderFlatDto> findAllByDto_flat() {
+        return em.createQuery(
+                "select new com.jrock.shop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
                         " join oi.item i" +
-                        " where oi.order.id in :orderIds", OrderItemQueryDto.class)
-                .setParameter("orderIds", orderIds)
+                        " order by o.id", OrderFlatDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 주문 한건 조회 (OrderQueryCache read-through)
+     *   - 캐시에 없으면 루트 1번, 컬렉션 1번 조회해서 캐시에 넣는다.
+     *   - 없는 주문이면 null
+     */
+    public OrderQueryDto findOne(Long orderId) {
+        return orderQueryCache.get(orderId, this::findOrderQueryDto);
+    }
+
+    private OrderQueryDto findOrderQueryDto(Long orderId) {
+        List<OrderQueryDto> result = em.createQuery(
+                "select new com.jrock.shop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address) " +
+                        "from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " where o.id = :orderId", OrderQueryDto.class)
+                .setParameter("orderId", orderId)
+                .getResultList();
+        if (result.isEmpty()) {
+            return null;
+        }
+
+        OrderQueryDto order = result.get(0);
+        order.setOrderItems(findOrderItems(orderId));
+        return order;
+    }
+
+    /**
+     * V5 페이징
+     *   - 루트(ToOne) 쿼리만 페이징하고, 해당 페이지의 orderId 로만 orderItem 을 IN 절 조회
+     *   - count 쿼리는 별도로 최적화
+     *     - 건수에 영향이 없는 delivery 조인을 빼고 센다. (주문 : 배송 = 1 : 1)
+     *     - PageableExecutionUtils: 첫 페이지가 페이지 크기보다 작거나 마지막 페이지면 count 쿼리를 실행하지 않는다.
+     */
+    public Page<OrderQueryDto> findAllByDto_optimization(Pageable pageable) {
+        List<OrderQueryDto> content = em.createQuery(
+                "select new com.jrock.shop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address) " +
+                        "from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " order by o.id", OrderQueryDto.class)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
                 .getResultList();
 
-        log.info("orderItems >>>>  {} ", orderItems);
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItemQueryLoader.findOrderItemMap(toOrderIds(content));
+        content.forEach(o -> o.setOrderItems(orderItemMap.getOrDefault(o.getOrderId(), new ArrayList<>())));
 
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream()
-//                .collect(Collectors.groupingBy(orderItemQueryDto -> orderItemQueryDto.getOrderId()));
-                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
-        return orderItemMap;
+        return PageableExecutionUtils.getPage(content, pageable, this::countOrders);
     }
 
-    public List<OrderFlatDto> findAllByDto_flat() {
+    private long countOrders() {
         return em.createQuery(
+                "select count(o) from Order o" +
+                        " join o.member m", Long.class)
+                .getSingleResult();
+    }
+
+    /**
+     * V6 플랫 데이터를 스트리밍으로 조회
+     *   - List 로 한번에 모으지 않고 forward-only 커서(getResultStream, 하이버네이트 내부적으로 scroll)로 한 row 씩 읽는다.
+     *   - order by o.id 로 같은 주문의 row 가 연속으로 나오므로, OrderFlatAssembler 가 주문 id 가 바뀌는 시점에 주문 하나를 완성해서 consumer 에 넘긴다.
+     *   - chunkSize 마다 영속성 컨텍스트를 비워서 전체 row 수와 상관없이 힙 사용량을 일정하게 유지한다.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllByDto_flat(int chunkSize, Consumer<OrderQueryDto> consumer) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize 는 1 이상이어야 합니다. chunkSize=" + chunkSize);
+        }
+        try (Stream<OrderFlatDto> flats = em.createQuery(
                 "select new com.jrock.shop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDto.class)
-                .getResultList();
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .setHint(QueryHints.FETCH_SIZE, chunkSize)
+                .getResultStream()) {
+
+            OrderFlatAssembler assembler = new OrderFlatAssembler(consumer);
+            int rows = 0;
+            for (Iterator<OrderFlatDto> it = flats.iterator(); it.hasNext(); ) {
+                assembler.add(it.next());
+
+                if (++rows % chunkSize == 0) {
+                    em.clear();
+                }
+            }
+            assembler.finish();
+        }
     }
 
     private List<Long> toOrderIds(List<OrderQueryDto> result) {
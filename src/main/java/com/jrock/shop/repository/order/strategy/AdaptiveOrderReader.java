@@ -0,0 +1,129 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 실행 통계로 주문 조회 전략을 고른다.
+ *
+ * 선택 순서
+ *   1. 아직 minSamples 만큼 실행해보지 않은 전략이 있으면 그 전략 (워밍업)
+ *   2. exploreEvery 번 마다 가장 오래전에 실행한 전략을 한번 더 실행해서 통계를 갱신 (데이터가 변하면 순위도 변한다)
+ *   3. 나머지는 데이터 모양으로 후보를 거르고 응답 시간(EWMA)이 가장 짧은 전략
+ *     - 주문이 fetchJoinMaxOrders 보다 많으면 fetch-join 제외 (조인 row 전체를 메모리에서 distinct)
+ *     - 주문당 orderItem 이 flatMaxItemsPerOrder 보다 많으면 flat-dto 제외 (주문 컬럼 중복 전송)
+ */
+@Component
+public class AdaptiveOrderReader {
+
+    private final Map<String, OrderReadStrategy> strategies = new LinkedHashMap<>();
+    private final Map<String, OrderReadStrategyStats> stats = new LinkedHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int minSamples;
+    private final int exploreEvery;
+    private final int fetchJoinMaxOrders;
+    private final double flatMaxItemsPerOrder;
+
+    private volatile String lastChosen;
+
+    public AdaptiveOrderReader(List<OrderReadStrategy> strategies,
+                               @Value("${shop.order-read.min-samples:3}") int minSamples,
+                               @Value("${shop.order-read.explore-every:20}") int exploreEvery,
+                               @Value("${shop.order-read.fetch-join-max-orders:1000}") int fetchJoinMaxOrders,
+                               @Value("${shop.order-read.flat-max-items-per-order:20}") double flatMaxItemsPerOrder) {
+        strategies.forEach(s -> {
+            this.strategies.put(s.getName(), s);
+            this.stats.put(s.getName(), new OrderReadStrategyStats(s.getName()));
+        });
+        this.minSamples = minSamples;
+        this.exploreEvery = exploreEvery;
+        this.fetchJoinMaxOrders = fetchJoinMaxOrders;
+        this.flatMaxItemsPerOrder = flatMaxItemsPerOrder;
+    }
+
+    @Transactional(readOnly = true) // 엔티티 조회 전략은 지연 로딩(@BatchSize)이 필요
+    public List<OrderQueryDto> findOrders() {
+        long seq = sequence.incrementAndGet();
+        String name = choose(seq);
+        lastChosen = name;
+
+        long start = System.nanoTime();
+        List<OrderQueryDto> result = strategies.get(name).findOrders();
+        long elapsed = System.nanoTime() - start;
+
+        int items = result.stream()
+                .mapToInt(o -> o.getOrderItems() == null ? 0 : o.getOrderItems().size())
+                .sum();
+        stats.get(name).record(elapsed, result.size(), items, seq);
+        return result;
+    }
+
+    String choose(long seq) {
+        List<OrderReadStrategyStats.Snapshot> snapshots = snapshots();
+
+        // 1. 워밍업
+        for (OrderReadStrategyStats.Snapshot s : snapshots) {
+            if (s.getCalls() < minSamples) {
+                return s.getName();
+            }
+        }
+
+        // 2. 주기적으로 오래된 통계 갱신
+        if (exploreEvery > 0 && seq % exploreEvery == 0) {
+            return snapshots.stream()
+                    .min(Comparator.comparingLong(OrderReadStrategyStats.Snapshot::getLastSampledAt))
+                    .map(OrderReadStrategyStats.Snapshot::getName)
+                    .orElseThrow(IllegalStateException::new);
+        }
+
+        // 3. 데이터 모양으로 후보를 거르고 응답 시간이 가장 짧은 전략 (가장 최근 실행 결과를 현재 데이터 모양으로 본다)
+        OrderReadStrategyStats.Snapshot latest = snapshots.stream()
+                .max(Comparator.comparingLong(OrderReadStrategyStats.Snapshot::getLastSampledAt))
+                .orElseThrow(IllegalStateException::new);
+
+        List<OrderReadStrategyStats.Snapshot> candidates = snapshots.stream()
+                .filter(s -> !(s.getName().equals(FetchJoinOrderReadStrategy.NAME) && latest.getLastOrders() > fetchJoinMaxOrders))
+                .filter(s -> !(s.getName().equals(FlatDtoOrderReadStrategy.NAME) && latest.getAvgItemsPerOrder() > flatMaxItemsPerOrder))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            candidates = snapshots;
+        }
+
+        return candidates.stream()
+                .min(Comparator.comparingDouble(OrderReadStrategyStats.Snapshot::getEwmaMillis))
+                .map(OrderReadStrategyStats.Snapshot::getName)
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    public Diagnostics diagnostics() {
+        return new Diagnostics(lastChosen, snapshots());
+    }
+
+    private List<OrderReadStrategyStats.Snapshot> snapshots() {
+        return stats.values().stream()
+                .map(OrderReadStrategyStats::snapshot)
+                .collect(Collectors.toList());
+    }
+
+    @Getter
+    public static class Diagnostics {
+        private final String chosen;
+        private final List<OrderReadStrategyStats.Snapshot> strategies;
+
+        Diagnostics(String chosen, List<OrderReadStrategyStats.Snapshot> strategies) {
+            this.chosen = chosen;
+            this.strategies = strategies;
+        }
+    }
+}
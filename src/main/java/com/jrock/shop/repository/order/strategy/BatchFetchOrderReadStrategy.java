@@ -0,0 +1,34 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.OrderRepository;
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * V3.1: ToOne 만 페치 조인, 컬렉션은 지연 로딩 + @BatchSize (IN 절)
+ */
+@Component
+@RequiredArgsConstructor
+class BatchFetchOrderReadStrategy implements OrderReadStrategy {
+
+    static final String NAME = "batch-fetch";
+
+    private final OrderRepository orderRepository;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<OrderQueryDto> findOrders() {
+        return orderRepository.findAllWithMemberDelivery().stream()
+                .map(OrderQueryDtos::from)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,30 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import com.jrock.shop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * V5: DTO 직접 조회, 루트 1번 + 컬렉션 IN 절 1번 (1+1)
+ */
+@Component
+@RequiredArgsConstructor
+class DtoOrderReadStrategy implements OrderReadStrategy {
+
+    static final String NAME = "dto-1+1";
+
+    private final OrderQueryRepository orderQueryRepository;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<OrderQueryDto> findOrders() {
+        return orderQueryRepository.findAllByDto_optimization();
+    }
+}
@@ -0,0 +1,35 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.OrderRepository;
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * V3: 컬렉션까지 페치 조인, 쿼리 1번
+ *   - 주문이 많으면 조인 row 전체를 메모리로 가져와서 distinct 하므로 부담이 커진다.
+ */
+@Component
+@RequiredArgsConstructor
+class FetchJoinOrderReadStrategy implements OrderReadStrategy {
+
+    static final String NAME = "fetch-join";
+
+    private final OrderRepository orderRepository;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<OrderQueryDto> findOrders() {
+        return orderRepository.findAllWithItem().stream()
+                .map(OrderQueryDtos::from)
+                .collect(toList());
+    }
+}
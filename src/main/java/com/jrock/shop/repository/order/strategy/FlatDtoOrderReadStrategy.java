@@ -0,0 +1,32 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.order.query.OrderFlatAssembler;
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import com.jrock.shop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * V6: DTO 직접 조회, 플랫 데이터 1번
+ *   - 주문당 orderItem 이 많으면 주문 컬럼이 그만큼 중복 전송된다.
+ */
+@Component
+@RequiredArgsConstructor
+class FlatDtoOrderReadStrategy implements OrderReadStrategy {
+
+    static final String NAME = "flat-dto";
+
+    private final OrderQueryRepository orderQueryRepository;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<OrderQueryDto> findOrders() {
+        return OrderFlatAssembler.collapse(orderQueryRepository.findAllByDto_flat());
+    }
+}
@@ -0,0 +1,27 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.repository.order.query.OrderItemQueryDto;
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 엔티티 조회 전략의 결과를 DTO 조회 전략과 같은 모양(OrderQueryDto)으로 변환
+ */
+final class OrderQueryDtos {
+
+    private OrderQueryDtos() {
+    }
+
+    static OrderQueryDto from(Order order) {
+        return new OrderQueryDto(order.getId(),
+                order.getMember().getName(),
+                order.getOrderDate(),
+                order.getStatus(),
+                order.getDelivery().getAddress(),
+                order.getOrderItems().stream()
+                        .map(oi -> new OrderItemQueryDto(order.getId(), oi.getItem().getName(), oi.getOrderPrice(), oi.getCount()))
+                        .collect(toList()));
+    }
+}
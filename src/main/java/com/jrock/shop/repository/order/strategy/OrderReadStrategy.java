@@ -0,0 +1,17 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+
+import java.util.List;
+
+/**
+ * 주문 조회 전략 (OrderApiController V3 ~ V6)
+ *   - 어떤 전략이 빠른지는 주문 건수, 주문당 orderItem 수에 따라 달라지므로 같은 모양(OrderQueryDto)으로 결과를 맞추고
+ *     AdaptiveOrderReader 가 실행 통계를 보고 고른다.
+ */
+public interface OrderReadStrategy {
+
+    String getName();
+
+    List<OrderQueryDto> findOrders();
+}
@@ -0,0 +1,61 @@
+package com.jrock.shop.repository.order.strategy;
+
+import lombok.Getter;
+
+/**
+ * 전략별 실행 통계
+ *   - 응답 시간은 지수 이동 평균(EWMA)으로 최근 값에 가중치를 더 준다.
+ *   - 주문 수, 주문당 orderItem 수는 마지막 실행 기준 (데이터 모양이 바뀌면 바로 반영)
+ */
+public class OrderReadStrategyStats {
+
+    private static final double ALPHA = 0.3;
+
+    private final String name;
+    private long calls;
+    private long lastSampledAt;
+    private double ewmaMillis;
+    private double lastMillis;
+    private int lastOrders;
+    private int lastItems;
+
+    OrderReadStrategyStats(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long elapsedNanos, int orders, int items, long sequence) {
+        double millis = elapsedNanos / 1_000_000.0;
+        ewmaMillis = calls == 0 ? millis : ALPHA * millis + (1 - ALPHA) * ewmaMillis;
+        lastMillis = millis;
+        lastOrders = orders;
+        lastItems = items;
+        lastSampledAt = sequence;
+        calls++;
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(name, calls, lastSampledAt, ewmaMillis, lastMillis, lastOrders,
+                lastOrders == 0 ? 0 : (double) lastItems / lastOrders);
+    }
+
+    @Getter
+    public static class Snapshot {
+        private final String name;
+        private final long calls;
+        private final long lastSampledAt;
+        private final double ewmaMillis;
+        private final double lastMillis;
+        private final int lastOrders;
+        private final double avgItemsPerOrder;
+
+        Snapshot(String name, long calls, long lastSampledAt, double ewmaMillis, double lastMillis, int lastOrders, double avgItemsPerOrder) {
+            this.name = name;
+            this.calls = calls;
+            this.lastSampledAt = lastSampledAt;
+            this.ewmaMillis = ewmaMillis;
+            this.lastMillis = lastMillis;
+            this.lastOrders = lastOrders;
+            this.avgItemsPerOrder = avgItemsPerOrder;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jrock.shop.repository.order.summary;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * v4 간단 주문 조회(OrderSimpleQueryDto) 와 같은 필드 + 주문 총액
+ */
+@Data
+public class OrderSummaryDto {
+    private Long orderId;
+    private String name;
+    private LocalDateTime orderDate;
+    private OrderStatus orderStatus;
+    private Address address;
+    private int totalPrice;
+
+    public OrderSummaryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, int totalPrice) {
+        this.orderId = orderId;
+        this.name = name;
+        this.orderDate = orderDate;
+        this.orderStatus = orderStatus;
+        this.address = address;
+        this.totalPrice = totalPrice;
+    }
+}
@@ -0,0 +1,97 @@
+package com.jrock.shop.repository.order.summary;
+
+import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.domain.OrderSummary;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 주문 목록 읽기 모델 (order_summary)
+ * 변경은 모두 벌크 연산이다. 읽기 모델 엔티티를 영속성 컨텍스트에 올려두고 쓰는 곳이 없다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+
+    private final EntityManager em;
+
+    public void save(OrderSummary summary) {
+        em.persist(summary);
+    }
+
+    /**
+     * 최근 주문순, 조인 없이 order_summary 만 읽는다. (idx_order_summary_order_date_id)
+     */
+    public List<OrderSummaryDto> findSummaries(int offset, int limit) {
+        return em.createQuery("select new com.jrock.shop.repository.order.summary.OrderSummaryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address, s.totalPrice)" +
+                " from OrderSummary s" +
+                " order by s.orderDate desc, s.orderId desc", OrderSummaryDto.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public int markCanceled(Collection<Long> orderIds) {
+        return em.createQuery("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    public int renameMember(Long memberId, String name) {
+        return em.createQuery("update OrderSummary s set s.memberName = :name where s.memberId = :memberId")
+                .setParameter("name", name)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    /**
+     * 다시 만들기: afterOrderId 다음부터 주문 id 최대 limit 개
+     */
+    public List<Long> findOrderIdsAfter(Long afterOrderId, int limit) {
+        return em.createQuery("select o.id from Order o where o.id > :afterOrderId order by o.id", Long.class)
+                .setParameter("afterOrderId", afterOrderId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 다시 만들기: 주문 id (fromExclusive, toInclusive] 구간을 지우고 원본 테이블에서 INSERT ... SELECT 한번으로 채운다.
+     * 네이티브 쿼리는 하이버네이트가 어떤 테이블을 바꾸는지 모르면 2차 캐시를 전부 비우므로 order_summary 만 바꾼다고 알려준다.
+     */
+    public int rebuildRange(Long fromExclusive, Long toInclusive) {
+        em.createQuery("delete from OrderSummary s where s.orderId > :fromExclusive and s.orderId <= :toInclusive")
+                .setParameter("fromExclusive", fromExclusive)
+                .setParameter("toInclusive", toInclusive)
+                .executeUpdate();
+
+        return em.createNativeQuery("insert into order_summary (order_id, member_id, member_name, order_date, status, city, street, zipcode, total_price)" +
+                " select o.order_id, m.member_id, m.name, o.order_date, o.status, d.city, d.street, d.zipcode," +
+                "        coalesce((select sum(oi.order_price * oi.count) from order_item oi where oi.order_id = o.order_id), 0)" +
+                " from orders o" +
+                " join member m on m.member_id = o.member_id" +
+                " join delivery d on d.delivery_id = o.delivery_id" +
+                " where o.order_id > :fromExclusive and o.order_id <= :toInclusive")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderSummary.class)
+                .setParameter("fromExclusive", fromExclusive)
+                .setParameter("toInclusive", toInclusive)
+                .executeUpdate();
+    }
+
+    /**
+     * 다시 만들기: 마지막 주문 뒤에 남은 행 중 주문이 지워진 행만 지운다.
+     * 마지막 구간을 읽은 뒤에 들어온 주문은 주문할 때 이미 요약 행을 넣었으므로 남긴다.
+     */
+    public int deleteAfter(Long orderId) {
+        return em.createQuery("delete from OrderSummary s where s.orderId > :orderId" +
+                        " and not exists (select o.id from Order o where o.id = s.orderId)")
+                .setParameter("orderId", orderId)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,29 @@
+package com.jrock.shop.service;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 일괄 취소 결과
+ * 없는 주문, 이미 취소된 주문, 배송완료된 주문은 취소되지 않고 건너뛴다.
+ */
+@Getter
+public class BulkCancelResult {
+
+    private final int requestedCount;
+    private final List<Long> canceledOrderIds;
+
+    BulkCancelResult(int requestedCount, List<Long> canceledOrderIds) {
+        this.requestedCount = requestedCount;
+        this.canceledOrderIds = canceledOrderIds;
+    }
+
+    public int getCanceledCount() {
+        return canceledOrderIds.size();
+    }
+
+    public int getSkippedCount() {
+        return requestedCount - canceledOrderIds.size();
+    }
+}
@@ -0,0 +1,23 @@
+package com.jrock.shop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * 장바구니 주문 한 줄 (상품, 수량)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLine {
+
+    @NotNull
+    private Long itemId;
+
+    @Min(1)
+    private int count;
+}
@@ -0,0 +1,194 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Category;
+import com.jrock.shop.repository.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 카테고리
+ *   - 트리는 불변 스냅샷(CategoryTree)으로 캐시하고, 카테고리가 바뀌면 트랜잭션이 끝난 후에 버린다. 다음 조회에서 쿼리 한번으로 다시 만든다.
+ *     롤백되어도 버린다. (같은 트랜잭션 안에서 만든 트리에는 커밋되지 않은 카테고리가 들어있을 수 있다)
+ *   - 만들기와 버리기는 같은 락을 잡는다. 커밋 전 데이터로 만들던 중이면 다 만든 뒤에 버리므로 이전 트리가 남지 않는다.
+ *   - 하위 트리, 하위 트리의 상품은 경로(Category.path) 조건 쿼리 한번으로 읽는다.
+ *     경로 컬럼이 생기기 전에 저장된 카테고리는 시작할 때 경로를 채운다.
+ *   - 없는 카테고리 id 는 IllegalArgumentException
+ *   - 상품 추가/삭제는 중간 테이블(category_item) 행 하나와 조상들의 상품 수(Category.itemCount)만 바꾼다.
+ *     조상 행 락을 먼저 잡으므로 같은 상품을 형제 카테고리에 동시에 넣어도 부모의 상품 수가 두번 오르지 않는다.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate readOnlyTx;
+
+    private volatile CategoryTree tree;
+    private long version;
+
+    public CategoryService(CategoryRepository categoryRepository, PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * 카테고리 추가 (parentId 가 null 이면 루트)
+     */
+    @Transactional
+    public Long saveCategory(String name, Long parentId) {
+        Category category = new Category();
+        category.setName(name);
+        if (parentId != null) {
+            findCategory(parentId).addChildCategory(category);
+        }
+        categoryRepository.save(category);
+        invalidateTreeAfterCompletion();
+        return category.getId();
+    }
+
+    @Transactional
+    public void updateName(Long categoryId, String name) {
+        findCategory(categoryId).setName(name);
+        invalidateTreeAfterCompletion();
+    }
+
+    /**
+     * 카테고리에 상품 추가 (이미 있으면 false)
+     */
+    @Transactional
+    public boolean addItem(Long categoryId, Long itemId) {
+        List<Long> ancestorIds = findCategory(categoryId).pathIds();
+        categoryRepository.lockAll(ancestorIds);
+        if (categoryRepository.containsItem(categoryId, itemId)) {
+            return false;
+        }
+        categoryRepository.increaseItemCount(ancestorIds, itemId); // 넣기 전에 센다.
+        categoryRepository.insertItem(categoryId, itemId);
+        invalidateTreeAfterCompletion();
+        return true;
+    }
+
+    /**
+     * 카테고리에서 상품 삭제 (없으면 false)
+     */
+    @Transactional
+    public boolean removeItem(Long categoryId, Long itemId) {
+        List<Long> ancestorIds = findCategory(categoryId).pathIds();
+        categoryRepository.lockAll(ancestorIds);
+        if (!categoryRepository.containsItem(categoryId, itemId)) {
+            return false;
+        }
+        categoryRepository.deleteItem(categoryId, itemId);
+        categoryRepository.decreaseItemCount(ancestorIds, itemId); // 뺀 후에 센다.
+        invalidateTreeAfterCompletion();
+        return true;
+    }
+
+    /**
+     * 상품 수를 다시 센다. (category_item 을 직접 바꿨을 때)
+     */
+    @Transactional
+    public int recountItems() {
+        int updated = categoryRepository.recountItems();
+        invalidateTreeAfterCompletion();
+        return updated;
+    }
+
+    /**
+     * 경로가 없는 카테고리(경로 컬럼이 생기기 전에 저장된 행)의 경로를 루트부터 한 단계씩 채운다.
+     * 다음 단계를 찾는 쿼리 전에 자동 flush 되므로 방금 채운 부모의 경로가 보인다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public int assignMissingPaths() {
+        int assigned = 0;
+        for (List<Category> level = categoryRepository.findWithoutPath(); !level.isEmpty(); level = categoryRepository.findWithoutPath()) {
+            level.forEach(Category::assignPath);
+            assigned += level.size();
+        }
+        if (assigned > 0) {
+            log.info("category paths assigned. count={}", assigned);
+            invalidateTreeAfterCompletion();
+        }
+        return assigned;
+    }
+
+    public Category findOne(Long categoryId) {
+        return categoryRepository.findOne(categoryId);
+    }
+
+    /**
+     * 하위 트리 (자신 포함, 경로 순)
+     */
+    public List<Category> findSubtree(Long categoryId) {
+        return categoryRepository.findSubtree(findCategory(categoryId));
+    }
+
+    /**
+     * 하위 트리의 상품 페이지 (pageable 의 정렬, 없으면 id 순, 전체 개수는 Category.itemCount)
+     */
+    public Page<ItemView> findItems(Long categoryId, Pageable pageable) {
+        return categoryRepository.findItemsInSubtree(findCategory(categoryId), pageable)
+                .map(ItemView::from);
+    }
+
+    private Category findCategory(Long categoryId) {
+        Category category = categoryRepository.findOne(categoryId);
+        if (category == null) {
+            throw new IllegalArgumentException("카테고리가 없습니다. categoryId=" + categoryId);
+        }
+        return category;
+    }
+
+    /**
+     * 캐시된 트리, 없으면 지금 만든다.
+     */
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        return current != null ? current : buildTree();
+    }
+
+    private synchronized CategoryTree buildTree() {
+        CategoryTree current = tree;
+        if (current != null) {
+            return current;
+        }
+        current = new CategoryTree(++version, readOnlyTx.execute(status -> categoryRepository.findAllPaths()));
+        tree = current;
+        log.debug("category tree built. version={} size={}", current.getVersion(), current.getSize());
+        return current;
+    }
+
+    /**
+     * 현재 트랜잭션이 끝난 후에 트리 캐시를 버린다.
+     */
+    public void invalidateTreeAfterCompletion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateTree();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidateTree();
+            }
+        });
+    }
+
+    private synchronized void invalidateTree() {
+        tree = null;
+    }
+}
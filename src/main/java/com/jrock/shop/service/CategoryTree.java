@@ -0,0 +1,108 @@
+package com.jrock.shop.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 카테고리 트리 스냅샷 (불변)
+ *   - 카테고리 전체를 경로(Category.path) 순으로 한번에 읽어서 만든다. (단계마다 자식 조회 X)
+ *   - 만들어진 뒤에는 바뀌지 않으므로 여러 스레드가 락 없이 읽는다.
+ *   - 자식은 이름 순 (같으면 id 순)
+ */
+@Getter
+public class CategoryTree {
+
+    private static final Comparator<Node> BY_NAME = Comparator.comparing(Node::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Node::getId);
+
+    private final long version;
+    private final LocalDateTime builtAt;
+    private final List<Node> roots;
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Node> nodesById;
+
+    /**
+     * rows: id, 이름, 경로, 상품 수 (CategoryRepository.findAllPaths, 경로 순)
+     * 자식이 부모보다 뒤에 나오므로 거꾸로 돌면서 자식 목록이 다 찬 노드부터 만든다.
+     */
+    public CategoryTree(long version, List<Object[]> rows) {
+        Map<Long, List<Node>> childrenByParent = new HashMap<>();
+        Map<Long, Node> nodes = new HashMap<>();
+        List<Node> roots = new ArrayList<>();
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            Object[] row = rows.get(i);
+            String path = (String) row[2];
+            if (path == null) {
+                continue; // 경로가 정해지기 전
+            }
+            Long id = (Long) row[0];
+            Node node = new Node(id, (String) row[1], path, (Integer) row[3], childrenByParent.getOrDefault(id, Collections.emptyList()));
+            nodes.put(id, node);
+
+            Long parentId = node.getParentId();
+            if (parentId == null) {
+                roots.add(node);
+            } else {
+                childrenByParent.computeIfAbsent(parentId, p -> new ArrayList<>()).add(node);
+            }
+        }
+        roots.sort(BY_NAME);
+
+        this.version = version;
+        this.builtAt = LocalDateTime.now();
+        this.roots = Collections.unmodifiableList(roots);
+        this.nodesById = Collections.unmodifiableMap(nodes);
+    }
+
+    /**
+     * 없으면 null
+     */
+    public Node find(Long id) {
+        return nodesById.get(id);
+    }
+
+    public int getSize() {
+        return nodesById.size();
+    }
+
+    @Getter
+    public static class Node {
+        private final Long id;
+        private final String name;
+        private final String path;
+        private final int depth; // 루트 0
+        private final int itemCount; // 하위 트리 상품 수 (Category.itemCount)
+        private final List<Node> children;
+
+        Node(Long id, String name, String path, int itemCount, List<Node> children) {
+            List<Node> sorted = new ArrayList<>(children);
+            sorted.sort(BY_NAME);
+            this.id = id;
+            this.name = name;
+            this.path = path;
+            this.depth = segments(path).length - 1;
+            this.itemCount = itemCount;
+            this.children = Collections.unmodifiableList(sorted);
+        }
+
+        /**
+         * 경로의 마지막에서 두번째 id ("/1/5/9/" -> 5), 루트면 null
+         */
+        public Long getParentId() {
+            String[] segments = segments(path);
+            return segments.length < 2 ? null : Long.valueOf(segments[segments.length - 2]);
+        }
+
+        private static String[] segments(String path) {
+            return path.substring(1, path.length() - 1).split("/"); // "/1/5/9/" -> [1, 5, 9]
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 상품 카탈로그 스냅샷 관리
+ *   - 읽기: volatile 필드 하나만 읽는다. (락 X, JPA 조회 X)
+ *   - 쓰기: 상품 등록/수정, 주문/취소(재고 변경)가 커밋되면 바뀐 상품 id 를 모아두고, 백그라운드 스레드 하나가 그 상품만 IN 쿼리로 다시 읽어서
+ *     바뀐 ItemView 만 갈아끼운 새 스냅샷으로 교체한다. (상품 테이블 전체를 다시 읽지 않는다)
+ *     - 반영하는 중에 또 커밋이 들어오면 그동안 모인 id 를 한번에 반영한다. (요청이 몰려도 반영은 합쳐진다)
+ *   - 전체 재구성(refresh)은 시작할 때만 한다.
+ *   - 커밋 직후 아주 잠깐은 이전 스냅샷이 보일 수 있다.
+ */
+@Slf4j
+@Component
+public class ItemCatalog {
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "item-catalog-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final Set<Long> changedIds = ConcurrentHashMap.newKeySet();
+
+    private volatile ItemCatalogSnapshot snapshot;
+
+    public ItemCatalog(ItemRepository itemRepository, PlatformTransactionManager transactionManager) {
+        this.itemRepository = itemRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        refresh();
+    }
+
+    public ItemCatalogSnapshot getSnapshot() {
+        ItemCatalogSnapshot current = snapshot;
+        if (current == null) {
+            refresh(); // 시작 직후 아직 만들어지기 전
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * 지금 바로 다시 만든다.
+     */
+    public synchronized void refresh() {
+        List<ItemView> items = readOnlyTx.execute(status -> itemRepository.findAll().stream()
+                .map(ItemView::from)
+                .collect(Collectors.toList()));
+        long version = snapshot == null ? 1 : snapshot.getVersion() + 1;
+        snapshot = new ItemCatalogSnapshot(version, items);
+        log.debug("item catalog rebuilt. version={} size={}", version, items.size());
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋된 후에 바뀐 상품만 백그라운드에서 다시 읽는다. (롤백되면 아무것도 안함)
+     */
+    public void refreshAfterCommit(Long itemId) {
+        refreshAfterCommit(List.of(itemId));
+    }
+
+    public void refreshAfterCommit(Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(itemIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            requestRefresh(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                requestRefresh(ids);
+            }
+        });
+    }
+
+    private void requestRefresh(List<Long> itemIds) {
+        changedIds.addAll(itemIds);
+        if (refreshPending.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                refreshPending.set(false);
+                try {
+                    refreshChanged();
+                } catch (RuntimeException e) {
+                    log.warn("item catalog refresh failed", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 모아둔 상품 id 만 다시 읽어서 현재 스냅샷에 덮어쓴다.
+     * 읽은 뒤에 다시 들어온 id 는 set 에 남아있으므로 다음 반영 때 읽는다.
+     */
+    synchronized void refreshChanged() {
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> it = changedIds.iterator(); it.hasNext(); ) {
+            ids.add(it.next());
+            it.remove();
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (snapshot == null) {
+            refresh();
+            return;
+        }
+        List<ItemView> changed = readOnlyTx.execute(status -> itemRepository.findAllById(ids).stream()
+                .map(ItemView::from)
+                .collect(Collectors.toList()));
+        snapshot = snapshot.with(snapshot.getVersion() + 1, changed);
+        log.debug("item catalog refreshed. version={} changed={}", snapshot.getVersion(), changed.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+}
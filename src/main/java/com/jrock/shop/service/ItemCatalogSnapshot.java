@@ -0,0 +1,83 @@
+package com.jrock.shop.service;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 상품 카탈로그 스냅샷 (불변)
+ *   - 만들어진 뒤에는 바뀌지 않으므로 여러 스레드가 락 없이 읽는다.
+ *   - version 은 다시 만들 때마다 1씩 증가
+ */
+@Getter
+public class ItemCatalogSnapshot {
+
+    private final long version;
+    private final LocalDateTime builtAt;
+    private final List<ItemView> items;
+    private final Map<Long, ItemView> itemsById;
+
+    public ItemCatalogSnapshot(long version, List<ItemView> items) {
+        this.version = version;
+        this.builtAt = LocalDateTime.now();
+        this.items = Collections.unmodifiableList(items);
+        this.itemsById = items.stream().collect(toUnmodifiableMap(ItemView::getId, Function.identity()));
+    }
+
+    /**
+     * id 순서대로 (스냅샷에 아직 없는 상품은 건너뛴다)
+     */
+    public List<ItemView> findAll(List<Long> ids) {
+        List<ItemView> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ItemView item = itemsById.get(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 바뀐 상품만 갈아끼운 새 스냅샷 (copy-on-write)
+     *   - 목록은 참조만 복사하고 ItemView 는 그대로 같이 쓴다.
+     *   - 처음 보는 상품은 id 순서로 뒤에 붙인다.
+     */
+    public ItemCatalogSnapshot with(long version, List<ItemView> changed) {
+        Map<Long, ItemView> changedById = changed.stream().collect(toMap(ItemView::getId, Function.identity()));
+        List<ItemView> merged = new ArrayList<>(items.size() + changed.size());
+        for (ItemView item : items) {
+            merged.add(changedById.getOrDefault(item.getId(), item));
+        }
+        changed.stream()
+                .filter(item -> !itemsById.containsKey(item.getId()))
+                .sorted(Comparator.comparing(ItemView::getId))
+                .forEach(merged::add);
+        return new ItemCatalogSnapshot(version, merged);
+    }
+
+    /**
+     * 스냅샷 안에서 페이지 단위로 자른다. (JPA 조회 X)
+     * 음수 page 는 0 으로, size 가 1 보다 작으면 빈 페이지, 범위를 넘으면 빈 페이지를 돌려준다.
+     */
+    public List<ItemView> page(int page, int size) {
+        if (size < 1) {
+            return Collections.emptyList();
+        }
+        long from = Math.min((long) Math.max(page, 0) * size, items.size());
+        long to = Math.min(from + size, items.size());
+        return items.subList((int) from, (int) to);
+    }
+
+    public int getTotalCount() {
+        return items.size();
+    }
+}
@@ -3,22 +3,33 @@ package com.jrock.shop.service;
 import com.jrock.shop.domain.item.Book;
 import com.jrock.shop.domain.item.Item;
 import com.jrock.shop.repository.ItemRepository;
+import com.jrock.shop.repository.item.ItemSearchHit;
+import com.jrock.shop.repository.item.ItemSearchIndex;
+import com.jrock.shop.repository.order.query.OrderQueryCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+import static java.util.stream.Collectors.*;
+
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final OrderQueryCache orderQueryCache;
+    private final ItemCatalog itemCatalog;
+    private final StockLedger stockLedger;
+    private final ItemSearchIndex itemSearchIndex;
 
     @Transactional
     public void saveItem(Item item) {
         itemRepository.save(item);
+        itemCatalog.refreshAfterCommit(item.getId());
+        itemSearchIndex.putAfterCommit(item); // 상품 검색 색인
     }
 
     /**
@@ -60,7 +71,14 @@ public class ItemService {
 //        findItem.setName(name);
 //        findItem.setStockQuantity(stockQuantity);
 
+        // 재고를 직접 바꾸면 StockLedger 의 가용 재고도 차이만큼 조정 (커밋 후)
+        stockLedger.adjustAfterCommit(itemId, stockQuantity - book.getStockQuantity());
         book.change(price, stockQuantity, name);
+
+        // 주문 조회 캐시에 상품명이 들어있으므로 커밋 후에 전체 무효화
+        orderQueryCache.evictAllAfterCommit();
+        itemCatalog.refreshAfterCommit(itemId);
+        itemSearchIndex.putAfterCommit(book);
     }
 
     // 위임만 하는 비즈니스 로직은 컨트롤에서 바로 조회해도 상관 없다고 생각함.
@@ -68,6 +86,24 @@ public class ItemService {
         return itemRepository.findAll();
     }
 
+    /**
+     * 상품 카탈로그 스냅샷 조회 (JPA 조회 X, volatile 읽기만)
+     */
+    public ItemCatalogSnapshot findCatalog() {
+        return itemCatalog.getSnapshot();
+    }
+
+    /**
+     * 상품 검색 (메모리 역색인, 점수 순)
+     * 가격/재고는 카탈로그 스냅샷에서 채운다. (JPA 조회 X, 방금 등록한 상품은 스냅샷이 다시 만들어진 뒤에 보인다)
+     */
+    public List<ItemView> search(String query, int limit) {
+        List<Long> itemIds = itemSearchIndex.search(query, limit).stream()
+                .map(ItemSearchHit::getItemId)
+                .collect(toList());
+        return itemCatalog.getSnapshot().findAll(itemIds);
+    }
+
     // 위임만 하는 비즈니스 로직은 컨트롤에서 바로 조회해도 상관 없다고 생각함.
     public Item findOne(Long itemId) {
         return itemRepository.findOne(itemId);
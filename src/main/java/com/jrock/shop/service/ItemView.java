@@ -0,0 +1,29 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.item.Item;
+import lombok.Getter;
+
+/**
+ * 상품 카탈로그 스냅샷용 불변 객체
+ *   - 엔티티는 변경 가능하고 영속성 컨텍스트에 묶여있으므로 스레드 간에 공유하지 않고 값만 복사해서 쓴다.
+ *   - 화면(items/itemList, order/orderForm) 에서 쓰는 필드명은 Item 과 같다.
+ */
+@Getter
+public class ItemView {
+
+    private final Long id;
+    private final String name;
+    private final int price;
+    private final int stockQuantity;
+
+    public ItemView(Long id, String name, int price, int stockQuantity) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+
+    public static ItemView from(Item item) {
+        return new ItemView(item.getId(), item.getName(), item.getPrice(), item.getStockQuantity());
+    }
+}
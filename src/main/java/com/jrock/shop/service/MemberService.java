@@ -2,9 +2,12 @@ package com.jrock.shop.service;
 
 import com.jrock.shop.domain.Member;
 import com.jrock.shop.repository.MemberRepository;
+import com.jrock.shop.repository.member.MemberNameIndex;
+import com.jrock.shop.repository.order.query.OrderQueryCache;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,24 +34,33 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final OrderQueryCache orderQueryCache;
+    private final MemberNameIndex memberNameIndex;
+    private final OrderSummaryProjection orderSummaryProjection;
 
     // 회원가입
     @Transactional
     public Long join(Member member) {
         validateDuplicateMember(member); // 중복 회원검증
-        memberRepository.save(member);
-        return member.getId(); // 영속성 컨텍스트에 존재 (테이블에 들어가지 않은 상태)
+        memberNameIndex.add(member.getName());
+        try {
+            memberRepository.saveAndFlush(member); // 유니크 제약 조건 위반을 여기서 확인하기 위해 바로 flush
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e); // 동시에 같은 이름으로 가입
+        }
+        return member.getId();
     }
 
     /**
      * 참고: 실무에서는 검증 로직이 있어도 멀티 쓰레드 상황을 고려해서 회원 테이블의 회원명 컬럼에 유니크 제 약 조건을 추가하는 것이 안전하다.
+     *       (Member 에 uk_member_name 추가)
+     *
+     * findByName 으로 엔티티를 전부 로딩하지 않고, 블룸 필터가 "없다" 고 하면 쿼리 없이 통과한다. (MemberNameIndex)
      */
     private void validateDuplicateMember(Member member) {
 
         // EXCEPTION
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-
-        if (!findMembers.isEmpty()) {
+        if (memberNameIndex.exists(member.getName())) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
@@ -70,6 +82,11 @@ public class MemberService {
     public void update(Long id, String name) {
 //        Member member = memberRepository.findOne(id);
         Member member = memberRepository.findById(id).get(); // Spring Data Jpa
+        memberNameIndex.rename(member.getName(), name);
         member.setName(name);
+        orderSummaryProjection.memberRenamed(id, name); // 주문 목록 읽기 모델의 회원명 (UPDATE 한번)
+
+        // 주문 조회 캐시에 회원명이 들어있으므로 커밋 후에 전체 무효화
+        orderQueryCache.evictAllAfterCommit();
     }
 }
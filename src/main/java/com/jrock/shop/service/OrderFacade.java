@@ -0,0 +1,124 @@
+package com.jrock.shop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 주문/취소 진입점 (컨트롤러 -> OrderFacade -> OrderService)
+ *   - StockMode.OPTIMISTIC 은 @Version 충돌이 커밋 시점에 나므로 트랜잭션 밖에서 새 트랜잭션으로 재시도해야 한다.
+ *   - 다른 모드는 OrderService 를 그대로 호출한다.
+ */
+@Slf4j
+@Service
+public class OrderFacade {
+
+    private final OrderService orderService;
+    private final StockService stockService;
+    private final OrderIdempotency orderIdempotency;
+    private final int maxAttempts;
+
+    public OrderFacade(OrderService orderService, StockService stockService, OrderIdempotency orderIdempotency,
+                       @Value("${shop.stock.optimistic-max-attempts:10}") int maxAttempts) {
+        this.orderService = orderService;
+        this.stockService = stockService;
+        this.orderIdempotency = orderIdempotency;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public Long order(Long memberId, Long itemId, int count) {
+        return order(memberId, itemId, count, stockService.getMode());
+    }
+
+    public Long order(Long memberId, Long itemId, int count, StockMode stockMode) {
+        return retry(stockMode, () -> orderService.order(memberId, itemId, count, stockMode));
+    }
+
+    /**
+     * 중복 방지 키가 있는 주문, 이미 처리한 키면 처음 주문 id 를 돌려준다. (키가 없으면 일반 주문)
+     * 같은 키로 회원/상품/수량이 다른 요청이 오면 IdempotencyKeyMismatchException
+     */
+    public Long order(String idempotencyKey, Long memberId, Long itemId, int count) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return order(memberId, itemId, count);
+        }
+        StockMode stockMode = stockService.getMode();
+        String requestHash = OrderIdempotency.requestHash(memberId, List.of(new CartLine(itemId, count)));
+        return orderIdempotency.execute(idempotencyKey, requestHash, () ->
+                retry(stockMode, () -> orderService.order(idempotencyKey, requestHash, memberId, itemId, count, stockMode)));
+    }
+
+    /**
+     * 여러 상품 주문, 상품 행 락을 잡고 차감하므로 재시도하지 않는다.
+     */
+    public Long order(Long memberId, List<CartLine> lines) {
+        return orderService.order(memberId, lines);
+    }
+
+    public Long order(String idempotencyKey, Long memberId, List<CartLine> lines) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return order(memberId, lines);
+        }
+        String requestHash = OrderIdempotency.requestHash(memberId, lines);
+        return orderIdempotency.execute(idempotencyKey, requestHash, () -> orderService.order(idempotencyKey, requestHash, memberId, lines));
+    }
+
+    /**
+     * 일괄 주문, OPTIMISTIC 충돌이면 일괄 주문 전체를 다시 시도한다. (롤백되었으므로 중복 주문 X)
+     */
+    public List<OrderLineResult> orderAll(List<OrderLine> lines) {
+        StockMode stockMode = stockService.getMode();
+        return retry(stockMode, () -> orderService.orderAll(lines, stockMode));
+    }
+
+    public void cancelOrder(Long orderId) {
+        StockMode stockMode = stockService.getMode();
+        retry(stockMode, () -> {
+            orderService.cancelOrder(orderId, stockMode);
+            return null;
+        });
+    }
+
+    /**
+     * 일괄 취소, 벌크 UPDATE 는 @Version 충돌이 나지 않으므로 재시도하지 않는다.
+     */
+    public BulkCancelResult cancelOrders(List<Long> orderIds) {
+        return orderService.cancelOrders(orderIds);
+    }
+
+    private <T> T retry(StockMode stockMode, Supplier<T> action) {
+        if (stockMode != StockMode.OPTIMISTIC) {
+            return action.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("stock version conflict. attempt={}", attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 같은 상품에 몰린 요청이 같은 타이밍에 다시 충돌하지 않도록 시도 횟수만큼 늘린 구간에서 랜덤하게 쉰다.
+     */
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 1 + Math.min(attempt, 10) * 2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.IdempotencyKey;
+import com.jrock.shop.exception.IdempotencyKeyMismatchException;
+import com.jrock.shop.repository.IdempotencyKeyRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 주문 중복 요청 방지 (Idempotency-Key)
+ *   - 같은 키로 다시 들어온 요청은 처음 만든 주문 id 를 그대로 돌려주고 상품/주문 저장소는 건드리지 않는다.
+ *   - 키와 함께 요청 해시(회원, 상품, 수량)를 저장해서, 같은 키로 내용이 다른 요청이 들어오면
+ *     처음 주문 id 를 돌려주지 않고 IdempotencyKeyMismatchException(422)으로 거절한다.
+ *   - 최근 키는 메모리(최대 maxEntries 개, window 가 지나면 만료)에서 찾고, 없으면 idempotency_key 테이블에서 찾는다.
+ *     (메모리에서 밀려났거나 서버가 재시작됐거나 다른 서버가 처리한 요청)
+ *   - 키는 주문과 같은 트랜잭션에서 저장하므로 주문이 롤백되면 키도 남지 않는다. (재시도하면 다시 주문된다)
+ *   - 같은 서버에서 같은 키가 동시에 들어오면 나중 요청은 먼저 요청의 결과를 기다린다.
+ *     다른 서버에서 동시에 들어오면 키 PK 위반으로 나중 트랜잭션이 롤백되고, 먼저 커밋된 주문 id 를 돌려준다.
+ *   - 일괄 주문(OrderService.orderAll, 비동기 접수)은 줄마다 키를 받는다. 묶음의 키를 쿼리 한번으로 찾고 flush 없이 저장한다.
+ *     (줄마다 찾고 flush 하면 INSERT 배치가 끊긴다) 다른 묶음과 같은 키가 동시에 커밋되면 나중 묶음 전체가 PK 위반으로 롤백된다.
+ *   - window 가 지난 키는 새 요청으로 보고, 테이블에서도 주기적으로 지운다.
+ *     지워지기 전에 같은 키가 다시 오면 저장할 때 만료된 행을 먼저 지운다. (record)
+ */
+@Slf4j
+@Component
+public class OrderIdempotency {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate readTx;
+    private final TransactionTemplate tx;
+    private final Duration window;
+    private final int maxEntries;
+
+    private final Map<String, Entry> recent; // 삽입 순서 (오래된 키부터 밀려난다)
+    private final Map<String, Running> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder inFlightJoins = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final AtomicBoolean purgerStarted = new AtomicBoolean();
+    private final long purgeIntervalMillis;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "idempotency-key-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderIdempotency(IdempotencyKeyRepository idempotencyKeyRepository, PlatformTransactionManager transactionManager,
+                            @Value("${shop.order.idempotency.window-minutes:1440}") long windowMinutes,
+                            @Value("${shop.order.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${shop.order.idempotency.purge-interval-ms:600000}") long purgeIntervalMillis) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.tx = new TransactionTemplate(transactionManager);
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.maxEntries = maxEntries;
+        this.purgeIntervalMillis = purgeIntervalMillis;
+        this.recent = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > OrderIdempotency.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 처음 보는 키면 action(주문, 안에서 record 를 호출해야 한다)을 실행하고, 이미 처리한 키면 그 주문 id 를 돌려준다.
+     *
+     * @param requestHash 요청 내용의 해시 (requestHash 로 만든다)
+     * @throws IdempotencyKeyMismatchException 같은 키로 처리한(처리 중인) 요청과 내용이 다르면
+     */
+    public Long execute(String key, String requestHash, Supplier<Long> action) {
+        if (key.length() > IdempotencyKey.MAX_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 는 " + IdempotencyKey.MAX_LENGTH + "자 이하여야 합니다.");
+        }
+        startPurger();
+
+        Entry cached = findInMemory(key);
+        if (cached != null) {
+            checkSameRequest(key, cached.requestHash, requestHash);
+            memoryHits.increment();
+            return cached.orderId;
+        }
+
+        Running mine = new Running(requestHash);
+        Running running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            checkSameRequest(key, running.requestHash, requestHash);
+            inFlightJoins.increment();
+            return join(running.result);
+        }
+
+        try {
+            Long orderId;
+            IdempotencyKey stored = findInTable(key);
+            if (stored != null) {
+                checkSameRequest(key, stored.getRequestHash(), requestHash);
+                tableHits.increment();
+                orderId = stored.getOrderId();
+            } else {
+                orderId = runOnce(key, requestHash, action);
+            }
+            remember(key, requestHash, orderId);
+            mine.result.complete(orderId);
+            return orderId;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 주문 트랜잭션 안에서 키를 저장한다. 같은 키의 만료된 행이 남아있으면 먼저 지운다.
+     */
+    public void record(String key, String requestHash, Long orderId) {
+        idempotencyKeyRepository.deleteExpired(key, LocalDateTime.now().minus(window));
+        idempotencyKeyRepository.save(new IdempotencyKey(key, requestHash, orderId));
+    }
+
+    /**
+     * 일괄 주문용: 이미 처리한 키들을 한번에 찾는다. 같은 키의 만료된 행은 지운다. (주문 트랜잭션 안에서 호출)
+     */
+    public Map<String, IdempotencyKey> findAllRecorded(Collection<String> keys) {
+        for (String key : keys) {
+            if (key.length() > IdempotencyKey.MAX_LENGTH) {
+                throw new IllegalArgumentException("Idempotency-Key 는 " + IdempotencyKey.MAX_LENGTH + "자 이하여야 합니다.");
+            }
+        }
+        startPurger();
+        LocalDateTime since = LocalDateTime.now().minus(window);
+        idempotencyKeyRepository.deleteExpired(keys, since);
+        Map<String, IdempotencyKey> recorded = idempotencyKeyRepository.findAllRecent(keys, since).stream()
+                .collect(toMap(IdempotencyKey::getId, k -> k));
+        tableHits.add(recorded.size());
+        return recorded;
+    }
+
+    /**
+     * 일괄 주문용: flush 하지 않고 키를 저장한다. (커밋할 때 주문 INSERT 와 같이 배치로 나간다)
+     */
+    public IdempotencyKey recordInBatch(String key, String requestHash, Long orderId) {
+        IdempotencyKey idempotencyKey = new IdempotencyKey(key, requestHash, orderId);
+        idempotencyKeyRepository.persist(idempotencyKey);
+        misses.increment();
+        return idempotencyKey;
+    }
+
+    /**
+     * 회원과 주문 줄(상품, 수량)의 SHA-256. 줄 순서가 달라도 같은 요청으로 본다.
+     */
+    public static String requestHash(Long memberId, List<CartLine> lines) {
+        StringBuilder request = new StringBuilder().append(memberId);
+        lines.stream()
+                .sorted(Comparator.comparing(CartLine::getItemId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparingInt(CartLine::getCount))
+                .forEach(line -> request.append('|').append(line.getItemId()).append(':').append(line.getCount()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(IdempotencyKey.HASH_LENGTH);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 모든 JVM 이 SHA-256 을 지원한다.
+        }
+    }
+
+    static void checkSameRequest(String key, String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException("Idempotency-Key 가 다른 주문 요청에 이미 사용되었습니다. key=" + key);
+        }
+    }
+
+    private Long runOnce(String key, String requestHash, Supplier<Long> action) {
+        try {
+            Long orderId = action.get();
+            misses.increment();
+            return orderId;
+        } catch (DataIntegrityViolationException e) {
+            IdempotencyKey stored = findInTable(key); // 다른 서버가 같은 키로 먼저 커밋했다.
+            if (stored == null) {
+                throw e;
+            }
+            checkSameRequest(key, stored.getRequestHash(), requestHash);
+            tableHits.increment();
+            return stored.getOrderId();
+        }
+    }
+
+    private synchronized Entry findInMemory(String key) {
+        Entry entry = recent.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.nanoTime()) {
+            recent.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void remember(String key, String requestHash, Long orderId) {
+        recent.put(key, new Entry(orderId, requestHash, System.nanoTime() + window.toNanos()));
+    }
+
+    private IdempotencyKey findInTable(String key) {
+        return readTx.execute(status -> idempotencyKeyRepository.findRecent(key, LocalDateTime.now().minus(window)));
+    }
+
+    private static Long join(CompletableFuture<Long> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * window 가 지난 키를 테이블에서 지운다.
+     */
+    public int purgeExpired() {
+        Integer deleted = tx.execute(status -> idempotencyKeyRepository.deleteBefore(LocalDateTime.now().minus(window)));
+        return deleted == null ? 0 : deleted;
+    }
+
+    private void startPurger() {
+        if (purgerStarted.compareAndSet(false, true)) {
+            purger.scheduleWithFixedDelay(() -> {
+                try {
+                    int deleted = purgeExpired();
+                    if (deleted > 0) {
+                        log.info("expired idempotency keys purged. count={}", deleted);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("idempotency key purge failed", e);
+                }
+            }, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(recent.size(), maxEntries, window.toMinutes(), memoryHits.sum(), tableHits.sum(),
+                inFlightJoins.sum(), misses.sum());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    private static class Entry {
+        final Long orderId;
+        final String requestHash;
+        final long expiresAt;
+
+        Entry(Long orderId, String requestHash, long expiresAt) {
+            this.orderId = orderId;
+            this.requestHash = requestHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 처리 중인 요청 (같은 키로 들어온 요청은 해시가 같을 때만 결과를 기다린다)
+     */
+    private static class Running {
+        final String requestHash;
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        Running(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    @Getter
+    public static class Stats {
+        private final int size;
+        private final int maxEntries;
+        private final long windowMinutes;
+        private final long memoryHits;
+        private final long tableHits;
+        private final long inFlightJoins;
+        private final long misses; // 처음 들어온 키 (주문 실행)
+
+        Stats(int size, int maxEntries, long windowMinutes, long memoryHits, long tableHits, long inFlightJoins, long misses) {
+            this.size = size;
+            this.maxEntries = maxEntries;
+            this.windowMinutes = windowMinutes;
+            this.memoryHits = memoryHits;
+            this.tableHits = tableHits;
+            this.inFlightJoins = inFlightJoins;
+            this.misses = misses;
+        }
+    }
+}
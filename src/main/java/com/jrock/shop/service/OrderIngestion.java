@@ -0,0 +1,290 @@
+package com.jrock.shop.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 주문 비동기 접수 (group commit)
+ *   - 주문 요청은 제한된 큐에 넣고 바로 CompletableFuture 를 돌려준다. 주문 id 는 커밋된 뒤에 future 로 완료된다.
+ *   - 워커 스레드가 큐에서 최대 maxBatchSize 개, 또는 첫 요청을 꺼낸 뒤 maxWaitMillis 동안 모인 요청을 묶어서
+ *     일괄 주문(OrderService.orderAll) 트랜잭션 하나로 커밋한다. 요청마다 커밋(fsync)하던 것을 묶음마다 한번으로 줄인다.
+ *   - 재고 부족, 없는 회원/상품은 해당 요청의 future 만 예외로 완료된다.
+ *   - 묶음 트랜잭션 자체가 실패하면 그 묶음의 요청을 하나씩 동기 주문으로 다시 처리한다.
+ *   - 큐가 가득 차면 호출한 스레드에서 바로 동기 주문(OrderFacade.order)을 한다. (호출한 쪽이 느려지므로 자연스럽게 유입이 줄어든다)
+ *
+ * 주의: 큐에 들어간 요청은 메모리에만 있으므로 서버가 죽으면 커밋 전 요청은 유실된다. (future 를 기다리던 클라이언트는 응답을 못 받는다)
+ */
+@Slf4j
+@Component
+public class OrderIngestion {
+
+    private final OrderFacade orderFacade;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int workers;
+    private final int queueCapacity;
+    private final BlockingQueue<Request> queue;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running = true;
+    private final ExecutorService executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private final Latency queueWait = new Latency();
+    private final Latency commit = new Latency();
+    private final Latency total = new Latency();
+
+    public OrderIngestion(OrderFacade orderFacade,
+                          @Value("${shop.order.ingestion.queue-capacity:10000}") int queueCapacity,
+                          @Value("${shop.order.ingestion.max-batch-size:100}") int maxBatchSize,
+                          @Value("${shop.order.ingestion.max-wait-ms:5}") long maxWaitMillis,
+                          @Value("${shop.order.ingestion.workers:2}") int workers) {
+        this.orderFacade = orderFacade;
+        this.queueCapacity = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.workers = Math.max(1, workers);
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread thread = new Thread(r, "order-ingestion-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 주문 접수, 큐가 가득 찼으면 동기로 주문한 결과를 돌려준다.
+     */
+    public CompletableFuture<Long> submit(Long memberId, Long itemId, int count) {
+        return submit(null, memberId, itemId, count);
+    }
+
+    /**
+     * 중복 방지 키가 있는 주문 접수, 이미 처리한 키면 처음 주문 id 로 완료된다. (묶음 안에서도 키를 확인한다)
+     */
+    public CompletableFuture<Long> submit(String idempotencyKey, Long memberId, Long itemId, int count) {
+        submitted.increment();
+        Request request = new Request(new OrderLine(memberId, itemId, count, idempotencyKey));
+        if (running && queue.offer(request)) {
+            startWorkers();
+            return request.future;
+        }
+
+        fallbacks.increment();
+        orderNow(request);
+        return request.future;
+    }
+
+    private void startWorkers() {
+        if (started.compareAndSet(false, true)) {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * 종료할 때는 큐에 남은 요청까지 처리하고 끝낸다.
+     */
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<Request> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    process(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("order ingestion worker failed", e);
+            }
+        }
+    }
+
+    /**
+     * 첫 요청을 기다렸다가, maxBatchSize 가 찰 때까지 또는 maxWaitNanos 가 지날 때까지 모은다.
+     */
+    private List<Request> nextBatch() throws InterruptedException {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void process(List<Request> batch) {
+        long startedAt = System.nanoTime();
+        batch.forEach(request -> queueWait.record(startedAt - request.enqueuedAt));
+
+        List<OrderLineResult> results;
+        try {
+            results = orderFacade.orderAll(batch.stream().map(request -> request.line).collect(toList()));
+        } catch (RuntimeException e) {
+            log.warn("order ingestion batch failed, retry one by one. size={}", batch.size(), e);
+            batch.forEach(this::orderNow);
+            return;
+        }
+        commit.record(System.nanoTime() - startedAt);
+        batches.increment();
+        batchedRequests.add(batch.size());
+
+        for (OrderLineResult result : results) {
+            Request request = batch.get(result.getIndex());
+            if (result.isSuccess()) {
+                complete(request, result.getOrderId());
+            } else {
+                fail(request, result.getCause());
+            }
+        }
+    }
+
+    private void orderNow(Request request) {
+        OrderLine line = request.line;
+        try {
+            complete(request, orderFacade.order(line.getIdempotencyKey(), line.getMemberId(), line.getItemId(), line.getCount()));
+        } catch (RuntimeException e) {
+            fail(request, e);
+        }
+    }
+
+    private void complete(Request request, Long orderId) {
+        total.record(System.nanoTime() - request.enqueuedAt);
+        request.future.complete(orderId);
+    }
+
+    private void fail(Request request, RuntimeException cause) {
+        failures.increment();
+        total.record(System.nanoTime() - request.enqueuedAt);
+        request.future.completeExceptionally(cause);
+    }
+
+    public Stats stats() {
+        long batchCount = batches.sum();
+        return new Stats(queue.size(), queueCapacity, submitted.sum(), fallbacks.sum(),
+                failures.sum(), batchCount, batchCount == 0 ? 0 : (double) batchedRequests.sum() / batchCount,
+                queueWait.snapshot(), commit.snapshot(), total.snapshot());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Request {
+        final OrderLine line;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        Request(OrderLine line) {
+            this.line = line;
+        }
+    }
+
+    /**
+     * 구간별 소요 시간 (건수, 합계, 최대)
+     */
+    private static class Latency {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        LatencyStats snapshot() {
+            long n = count.sum();
+            return new LatencyStats(n, n == 0 ? 0 : totalNanos.sum() / n / 1000, maxNanos.get() / 1000);
+        }
+    }
+
+    @Getter
+    public static class LatencyStats {
+        private final long count;
+        private final long avgMicros;
+        private final long maxMicros;
+
+        LatencyStats(long count, long avgMicros, long maxMicros) {
+            this.count = count;
+            this.avgMicros = avgMicros;
+            this.maxMicros = maxMicros;
+        }
+    }
+
+    @Getter
+    public static class Stats {
+        private final int queueSize;
+        private final int queueCapacity;
+        private final long submitted;
+        private final long fallbacks; // 큐가 가득 차서 동기로 처리한 요청
+        private final long failures;
+        private final long batches;
+        private final double avgBatchSize;
+        private final LatencyStats queueWait; // 큐에 들어가서 묶음 처리가 시작될 때까지
+        private final LatencyStats commit; // 묶음 트랜잭션 (주문 + 커밋)
+        private final LatencyStats total; // 접수부터 future 완료까지
+
+        Stats(int queueSize, int queueCapacity, long submitted, long fallbacks, long failures, long batches,
+              double avgBatchSize, LatencyStats queueWait, LatencyStats commit, LatencyStats total) {
+            this.queueSize = queueSize;
+            this.queueCapacity = queueCapacity;
+            this.submitted = submitted;
+            this.fallbacks = fallbacks;
+            this.failures = failures;
+            this.batches = batches;
+            this.avgBatchSize = avgBatchSize;
+            this.queueWait = queueWait;
+            this.commit = commit;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.IdempotencyKey;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * 일괄 주문 한 줄 (회원, 상품, 수량, 중복 방지 키)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderLine {
+
+    @NotNull
+    private Long memberId;
+
+    @NotNull
+    private Long itemId;
+
+    @Min(1)
+    private int count;
+
+    @Size(max = IdempotencyKey.MAX_LENGTH)
+    private String idempotencyKey; // 없으면 중복 방지 X
+
+    public OrderLine(Long memberId, Long itemId, int count) {
+        this(memberId, itemId, count, null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.jrock.shop.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+/**
+ * 일괄 주문 한 줄의 결과 (요청 순서와 같은 index)
+ */
+@Getter
+public class OrderLineResult {
+
+    private final int index;
+    private final boolean success;
+    private final Long orderId; // 실패하면 null
+    private final String error; // 성공하면 null
+    @JsonIgnore
+    private final RuntimeException cause; // 실패 원인 (단건 주문이었으면 던졌을 예외)
+
+    private OrderLineResult(int index, boolean success, Long orderId, RuntimeException cause) {
+        this.index = index;
+        this.success = success;
+        this.orderId = orderId;
+        this.error = cause == null ? null : cause.getMessage();
+        this.cause = cause;
+    }
+
+    public static OrderLineResult success(int index, Long orderId) {
+        return new OrderLineResult(index, true, orderId, null);
+    }
+
+    public static OrderLineResult failure(int index, RuntimeException cause) {
+        return new OrderLineResult(index, false, null, cause);
+    }
+}
@@ -0,0 +1,67 @@
+package com.jrock.shop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OutboxEvent;
+import com.jrock.shop.domain.OutboxEventType;
+import com.jrock.shop.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 주문 이벤트를 아웃박스 테이블에 쓴다. 트랜잭션은 호출한 쪽(OrderService)의 것을 그대로 쓴다.
+ * 쓰기 경로에서는 INSERT 한번만 늘어나고 후처리는 OutboxDrainer 가 비동기로 한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public void placed(Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("memberId", order.getMember().getId());
+        payload.put("orderDate", order.getOrderDate().toString());
+        payload.put("totalPrice", order.getTotalPrice());
+        payload.put("items", order.getOrderItems().stream()
+                .map(oi -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("itemId", oi.getItem().getId());
+                    item.put("orderPrice", oi.getOrderPrice());
+                    item.put("count", oi.getCount());
+                    return item;
+                })
+                .collect(toList()));
+        append(OutboxEventType.ORDER_PLACED, order.getId(), payload);
+    }
+
+    public void canceled(Long orderId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", orderId);
+        append(OutboxEventType.ORDER_CANCELED, orderId, payload);
+    }
+
+    /**
+     * 일괄 취소, 주문마다 이벤트 하나 (INSERT 는 JDBC 배치로 묶인다)
+     */
+    public void canceled(List<Long> orderIds) {
+        orderIds.forEach(this::canceled);
+    }
+
+    private void append(OutboxEventType eventType, Long orderId, Map<String, Object> payload) {
+        try {
+            outboxEventRepository.save(new OutboxEvent(eventType, orderId, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("아웃박스 이벤트를 JSON 으로 만들 수 없습니다. orderId=" + orderId, e);
+        }
+    }
+}
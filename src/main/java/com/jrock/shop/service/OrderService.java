@@ -1,19 +1,35 @@
 package com.jrock.shop.service;
 
 import com.jrock.shop.domain.Delivery;
+import com.jrock.shop.domain.IdempotencyKey;
 import com.jrock.shop.domain.Member;
 import com.jrock.shop.domain.Order;
 import com.jrock.shop.domain.OrderItem;
 import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.exception.IdempotencyKeyMismatchException;
+import com.jrock.shop.exception.NotEnoughStockException;
 import com.jrock.shop.repository.ItemRepository;
 import com.jrock.shop.repository.MemberRepository;
+import com.jrock.shop.repository.OrderItemCountDto;
 import com.jrock.shop.repository.OrderRepository;
 import com.jrock.shop.repository.OrderSearch;
+import com.jrock.shop.repository.order.query.OrderQueryCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import javax.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static java.util.stream.Collectors.*;
 
 /**
  * 참고:
@@ -27,9 +43,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderService {
 
+    private static final int BULK_CHUNK_SIZE = 1000; // IN 절 파라미터 수 제한 (ex. 오라클 1000개)
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final OrderQueryCache orderQueryCache;
+    private final ItemCatalog itemCatalog;
+    private final StockService stockService;
+    private final StockLedger stockLedger;
+    private final OrderIdempotency orderIdempotency;
+    private final OrderOutbox orderOutbox;
+    private final OrderSummaryProjection orderSummaryProjection;
+    private final EntityManager em;
 
     /**
      * 주문
@@ -37,6 +63,15 @@ public class OrderService {
      */
     @Transactional
     public Long order(Long memberId, Long itemId, int count) {
+        return order(memberId, itemId, count, stockService.getMode());
+    }
+
+    /**
+     * 주문 (재고 변경 방식 지정)
+     * StockMode.OPTIMISTIC 의 충돌 재시도는 트랜잭션 밖(OrderFacade)에서 한다.
+     */
+    @Transactional
+    public Long order(Long memberId, Long itemId, int count, StockMode stockMode) {
 
         // 엔티티조회
 //        Member member = memberRepository.findOne(memberId);
@@ -48,7 +83,7 @@ public class OrderService {
         delivery.setAddress(member.getAddress());
 
         // 주문상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = stockService.createOrderItem(item, count, stockMode);
 
         // 주문생성
         Order order = Order.createOrder(member, delivery, orderItem);
@@ -58,21 +93,231 @@ public class OrderService {
         // 다른데서도 OrderItem, Delivery를 사용을 자주 한다면 CascadeType.ALL를 사용하지 말고 별도로 하는 것이 좋다. (현재는 오더만 씀)
         // 따로 쓰다가 익숙해지면 같이 쓰도록 하자.
         orderRepository.save(order);
+        orderOutbox.placed(order); // 같은 트랜잭션에서 이벤트 저장
+        orderSummaryProjection.placed(order); // 주문 목록 읽기 모델
+
+        // 주문 조회 캐시는 커밋 후에 무효화 (롤백되면 캐시를 건드리지 않는다)
+        orderQueryCache.evictAfterCommit(order.getId());
+        itemCatalog.refreshAfterCommit(itemId); // 재고 변경
 
         return order.getId();
 
     }
 
+    /**
+     * 주문 + 중복 방지 키 저장 (같은 트랜잭션, OrderIdempotency 가 호출)
+     */
+    @Transactional
+    public Long order(String idempotencyKey, String requestHash, Long memberId, Long itemId, int count, StockMode stockMode) {
+        Long orderId = order(memberId, itemId, count, stockMode);
+        orderIdempotency.record(idempotencyKey, requestHash, orderId);
+        return orderId;
+    }
+
+    @Transactional
+    public Long order(String idempotencyKey, String requestHash, Long memberId, List<CartLine> lines) {
+        Long orderId = order(memberId, lines);
+        orderIdempotency.record(idempotencyKey, requestHash, orderId);
+        return orderId;
+    }
+
+    /**
+     * 여러 상품 주문 (장바구니, 주문 하나에 주문상품 여러개)
+     *   - 상품은 IN 쿼리 한번으로 조회하면서 id 오름차순으로 행 락을 잡는다. (장바구니끼리 상품이 겹쳐도 교착 X)
+     *   - 락을 잡은 상태에서 변경 감지로 모든 줄의 재고를 차감한다.
+     *     한 줄이라도 재고가 부족하면 NotEnoughStockException 으로 전체 롤백된다.
+     *   - StockMode.LEDGER 이거나 StockLedger 가 예약을 들고 있는 상품은 DB 재고가 아니라 장부의 가용 재고에서 예약한다. (StockService)
+     *     앞 줄의 예약은 롤백되면 StockLedger 가 되돌린다.
+     */
+    @Transactional
+    public Long order(Long memberId, List<CartLine> lines) {
+        return order(memberId, lines, stockService.getMode());
+    }
+
+    @Transactional
+    public Long order(Long memberId, List<CartLine> lines, StockMode stockMode) {
+        Member member = memberRepository.findById(memberId).get();
+        TreeSet<Long> itemIds = lines.stream().map(CartLine::getItemId).collect(toCollection(TreeSet::new));
+        Map<Long, Item> items = (stockMode == StockMode.LEDGER
+                ? itemRepository.findAllById(itemIds) // 장부로 예약하므로 행 락 X
+                : itemRepository.findAllByIdForUpdate(itemIds)).stream()
+                .collect(toMap(Item::getId, i -> i));
+
+        OrderItem[] orderItems = new OrderItem[lines.size()];
+        for (int index = 0; index < lines.size(); index++) {
+            CartLine line = lines.get(index);
+            Item item = items.get(line.getItemId());
+            if (item == null) {
+                throw new IllegalArgumentException("상품이 없습니다. itemId=" + line.getItemId());
+            }
+            orderItems[index] = stockService.createOrderItem(item, line.getCount(),
+                    stockMode == StockMode.LEDGER ? StockMode.LEDGER : StockMode.DIRTY_CHECKING); // 행 락을 잡았으므로 변경 감지
+        }
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        Order order = Order.createOrder(member, delivery, orderItems);
+        orderRepository.save(order);
+        orderOutbox.placed(order);
+        orderSummaryProjection.placed(order);
+
+        orderQueryCache.evictAfterCommit(order.getId());
+        itemCatalog.refreshAfterCommit(items.keySet()); // 재고 변경
+
+        return order.getId();
+    }
+
+    /**
+     * 일괄 주문
+     *   - 회원, 상품은 IN 쿼리 한번씩으로 미리 조회한다.
+     *   - 줄마다 재고를 차감하고 주문을 persist 한 뒤, 커밋 시점에 hibernate.jdbc.batch_size 단위로 INSERT 를 묶어서 보낸다. (order_inserts)
+     *   - 없는 회원/상품, 재고 부족은 해당 줄만 실패로 돌려주고 나머지는 계속 진행한다.
+     *     (재고 차감은 실패하면 아무것도 바꾸지 않으므로 같은 트랜잭션에서 계속 진행해도 된다)
+     *   - Idempotency-Key 가 있는 줄은 묶음의 키를 IN 쿼리 한번으로 미리 찾는다. 이미 처리한 키면 처음 주문 id 를 돌려주고
+     *     (내용이 다르면 그 줄만 IdempotencyKeyMismatchException), 처음 보는 키는 주문과 같이 flush 없이 저장한다.
+     *     같은 묶음에 같은 키가 두 번 있으면 두 번째 줄은 첫 줄의 주문 id 를 돌려준다.
+     *   - 커밋(flush) 자체가 실패하면 전체가 롤백된다. (ex. 다른 요청이 같은 키를 먼저 커밋했다)
+     */
+    @Transactional
+    public List<OrderLineResult> orderAll(List<OrderLine> lines, StockMode stockMode) {
+        Map<Long, Member> members = memberRepository.findAllById(
+                        lines.stream().map(OrderLine::getMemberId).collect(toSet())).stream()
+                .collect(toMap(Member::getId, m -> m));
+        Map<Long, Item> items = itemRepository.findAllById(
+                        lines.stream().map(OrderLine::getItemId).collect(toSet())).stream()
+                .collect(toMap(Item::getId, i -> i));
+        Set<String> keys = lines.stream()
+                .map(OrderLine::getIdempotencyKey)
+                .filter(StringUtils::hasText)
+                .collect(toSet());
+        Map<String, IdempotencyKey> recorded = keys.isEmpty() ? new HashMap<>() : orderIdempotency.findAllRecorded(keys);
+
+        List<OrderLineResult> results = new ArrayList<>(lines.size());
+        for (int index = 0; index < lines.size(); index++) {
+            OrderLine line = lines.get(index);
+            String key = StringUtils.hasText(line.getIdempotencyKey()) ? line.getIdempotencyKey() : null;
+            String requestHash = key == null ? null
+                    : OrderIdempotency.requestHash(line.getMemberId(), List.of(new CartLine(line.getItemId(), line.getCount())));
+            if (key != null && recorded.containsKey(key)) {
+                IdempotencyKey stored = recorded.get(key);
+                try {
+                    OrderIdempotency.checkSameRequest(key, stored.getRequestHash(), requestHash);
+                    results.add(OrderLineResult.success(index, stored.getOrderId()));
+                } catch (IdempotencyKeyMismatchException e) {
+                    results.add(OrderLineResult.failure(index, e));
+                }
+                continue;
+            }
+
+            Member member = members.get(line.getMemberId());
+            Item item = items.get(line.getItemId());
+            if (member == null) {
+                results.add(OrderLineResult.failure(index,
+                        new IllegalArgumentException("회원이 없습니다. memberId=" + line.getMemberId())));
+                continue;
+            }
+            if (item == null) {
+                results.add(OrderLineResult.failure(index,
+                        new IllegalArgumentException("상품이 없습니다. itemId=" + line.getItemId())));
+                continue;
+            }
+
+            try {
+                Delivery delivery = new Delivery();
+                delivery.setAddress(member.getAddress());
+                OrderItem orderItem = stockService.createOrderItem(item, line.getCount(), stockMode);
+                Order order = Order.createOrder(member, delivery, orderItem);
+                orderRepository.save(order);
+                orderOutbox.placed(order);
+                orderSummaryProjection.placed(order);
+                if (key != null) {
+                    recorded.put(key, orderIdempotency.recordInBatch(key, requestHash, order.getId()));
+                }
+                results.add(OrderLineResult.success(index, order.getId()));
+            } catch (NotEnoughStockException e) {
+                results.add(OrderLineResult.failure(index,
+                        new NotEnoughStockException("재고가 부족합니다. itemId=" + line.getItemId())));
+            }
+        }
+
+        itemCatalog.refreshAfterCommit(items.keySet()); // 재고 변경
+        return results;
+    }
+
     /**
      *  주문 취소
      */
     @Transactional
     public void cancelOrder(Long orderId) {
+        cancelOrder(orderId, stockService.getMode());
+    }
+
+    @Transactional
+    public void cancelOrder(Long orderId, StockMode stockMode) {
         // 주문 엔티티 조회
         Order order = orderRepository.findOne(orderId);
-        // 주문 취소  DDD
-        order.cancel();
+        // 주문 취소  DDD (재고 원복은 StockMode 에 따라)
+        stockService.cancel(order, stockMode);
+        orderOutbox.canceled(orderId);
+        orderSummaryProjection.canceled(orderId);
+
+        orderQueryCache.evictAfterCommit(orderId);
+        itemCatalog.refreshAfterCommit(order.getOrderItems().stream()
+                .map(orderItem -> orderItem.getItem().getId())
+                .collect(toSet())); // 재고 변경
+
+    }
+
+    /**
+     * 일괄 취소 (ex. 결제 실패한 주문 묶음)
+     *   - 엔티티를 읽지 않고 벌크 연산으로 처리한다.
+     *     1. 취소 가능한 주문만 골라서 행 락 (주문 상태, 배송완료 여부는 SQL 조건으로 검사)
+     *     2. 주문 상태를 UPDATE 한번으로 취소
+     *     3. 주문상품 행 락 후 상품별 수량 합계를 읽는다.
+     *     4. 모든 chunk 의 합계를 모아서 상품마다 UPDATE 한번으로 재고 원복 (상품 id 오름차순, 여러 상품 주문과 같은 락 순서)
+     *   - StockLedger 가 아직 반영하지 않은 주문상품은 반영된 것으로 표시만 하고 DB 재고는 건드리지 않는다. 가용 재고 카운터는 커밋 후에 늘린다.
+     *   - 없는 주문, 이미 취소된 주문, 배송완료된 주문은 건너뛴다.
+     *   - 벌크 연산은 영속성 컨텍스트를 거치지 않으므로 먼저 flush 하고, 끝나면 비워서 이전에 읽은 주문/상품이 옛 값으로 남지 않게 한다.
+     */
+    @Transactional
+    public BulkCancelResult cancelOrders(List<Long> orderIds) {
+        List<Long> sortedIds = new ArrayList<>(new TreeSet<>(orderIds));
+        em.flush();
+
+        List<Long> canceledIds = new ArrayList<>();
+        Map<Long, Long> restoreByItem = new TreeMap<>(); // 상품 id 오름차순
+        Map<Long, Long> ledgerByItem = new TreeMap<>();
+        for (int from = 0; from < sortedIds.size(); from += BULK_CHUNK_SIZE) {
+            List<Long> chunk = sortedIds.subList(from, Math.min(from + BULK_CHUNK_SIZE, sortedIds.size()));
+            List<Long> cancelable = orderRepository.findCancelableIdsForUpdate(chunk);
+            if (cancelable.isEmpty()) {
+                continue;
+            }
+            orderRepository.cancelAll(cancelable);
+            orderRepository.lockOrderItems(cancelable);
+            for (OrderItemCountDto sum : orderRepository.sumOrderItemCounts(cancelable)) {
+                if (sum.isStockApplied()) {
+                    restoreByItem.merge(sum.getItemId(), sum.getCount(), Long::sum);
+                }
+                ledgerByItem.merge(sum.getItemId(), sum.getCount(), Long::sum);
+            }
+            orderRepository.markStockApplied(cancelable);
+            canceledIds.addAll(cancelable);
+        }
+
+        restoreByItem.forEach((itemId, count) -> itemRepository.increaseStock(itemId, Math.toIntExact(count)));
+        ledgerByItem.forEach((itemId, count) -> stockLedger.adjustAfterCommit(itemId, Math.toIntExact(count)));
+        orderOutbox.canceled(canceledIds);
+        orderSummaryProjection.canceled(canceledIds);
+        em.flush(); // 아웃박스 INSERT 를 비우기 전에 보낸다.
+        em.clear();
 
+        if (!canceledIds.isEmpty()) {
+            canceledIds.forEach(orderQueryCache::evictAfterCommit);
+            itemCatalog.refreshAfterCommit(ledgerByItem.keySet()); // 재고 변경
+        }
+        return new BulkCancelResult(sortedIds.size(), canceledIds);
     }
 
     // 검색
@@ -0,0 +1,102 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderSummary;
+import com.jrock.shop.repository.order.summary.OrderSummaryRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 주문 목록 읽기 모델(order_summary) 갱신
+ *   - 주문, 취소, 회원명 변경 때 호출한 쪽의 트랜잭션에서 같이 바꾼다. 커밋되면 목록에 바로 보이고 롤백되면 같이 롤백된다.
+ *     (아웃박스로 비동기로 바꾸면 쓰기는 가벼워지지만 방금 한 주문이 목록에 늦게 보인다)
+ *   - 쓰기 경로에서 늘어나는 것은 주문당 INSERT 하나, 취소/회원명 변경당 UPDATE 하나다.
+ *   - rebuild 는 원본 테이블에서 전체를 다시 만든다. (테이블 추가 후 백필, 어긋났을 때 복구)
+ */
+@Slf4j
+@Component
+public class OrderSummaryProjection {
+
+    private static final int CANCEL_CHUNK_SIZE = 1000; // IN 절 파라미터 수 제한
+
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final TransactionTemplate tx;
+    private final int rebuildChunkSize;
+
+    public OrderSummaryProjection(OrderSummaryRepository orderSummaryRepository, PlatformTransactionManager transactionManager,
+                                  @Value("${shop.order-summary.rebuild-chunk-size:1000}") int rebuildChunkSize) {
+        this.orderSummaryRepository = orderSummaryRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.rebuildChunkSize = Math.max(1, rebuildChunkSize);
+    }
+
+    public void placed(Order order) {
+        orderSummaryRepository.save(OrderSummary.of(order));
+    }
+
+    public void canceled(Long orderId) {
+        orderSummaryRepository.markCanceled(List.of(orderId));
+    }
+
+    public void canceled(List<Long> orderIds) {
+        for (int from = 0; from < orderIds.size(); from += CANCEL_CHUNK_SIZE) {
+            orderSummaryRepository.markCanceled(orderIds.subList(from, Math.min(from + CANCEL_CHUNK_SIZE, orderIds.size())));
+        }
+    }
+
+    public void memberRenamed(Long memberId, String name) {
+        orderSummaryRepository.renameMember(memberId, name);
+    }
+
+    /**
+     * 전체 다시 만들기
+     *   - 주문 id 순서로 rebuildChunkSize 개씩, chunk 마다 트랜잭션 하나 (구간 DELETE + INSERT ... SELECT)
+     *     한 트랜잭션으로 전체를 하면 주문이 많을 때 락과 undo 가 커진다.
+     *   - 다시 만드는 중에 들어온 주문/취소는 평소처럼 같이 반영된다. 이미 지나간 구간의 주문은 다시 만들 때 읽은 값보다 최신이다.
+     */
+    public RebuildResult rebuild() {
+        long startedAt = System.nanoTime();
+        long[] rows = new long[1];
+        int chunks = 0;
+        Long after = 0L;
+        while (after != null) {
+            Long from = after;
+            after = tx.execute(status -> {
+                List<Long> ids = orderSummaryRepository.findOrderIdsAfter(from, rebuildChunkSize);
+                if (ids.isEmpty()) {
+                    orderSummaryRepository.deleteAfter(from); // 지워진 주문
+                    return null;
+                }
+                Long to = ids.get(ids.size() - 1);
+                rows[0] += orderSummaryRepository.rebuildRange(from, to);
+                return to;
+            });
+            if (after != null) {
+                chunks++;
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("order summary rebuilt. rows={} chunks={} elapsed={}ms", rows[0], chunks, elapsedMillis);
+        return new RebuildResult(rows[0], chunks, elapsedMillis);
+    }
+
+    @Getter
+    public static class RebuildResult {
+        private final long rows;
+        private final int chunks;
+        private final long elapsedMillis;
+
+        RebuildResult(long rows, int chunks, long elapsedMillis) {
+            this.rows = rows;
+            this.chunks = chunks;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.OutboxEvent;
+import com.jrock.shop.repository.OutboxEventRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 아웃박스 드레이너
+ *   - pollInterval 마다 처리할 이벤트를 batchSize 개씩 행 락(skip locked)을 잡고 읽어서 핸들러에 전달한다.
+ *   - 묶음이 가득 차 있으면 쉬지 않고 다음 묶음을 읽는다. (밀린 이벤트를 빨리 따라잡는다)
+ *   - 성공한 이벤트는 같은 트랜잭션에서 지운다. 핸들러가 예외를 던지면 attempts 를 올리고 남겨서 다음에 다시 전달한다.
+ *   - 핸들러는 이벤트마다 새 트랜잭션(REQUIRES_NEW)에서 돈다.
+ *     핸들러의 @Transactional 빈이 실패해도 그 트랜잭션만 롤백되고, 행 락을 잡은 트랜잭션은 rollback-only 가 되지 않으므로
+ *     attempts 증가와 성공한 이벤트 삭제는 그대로 커밋된다.
+ *   - 이벤트 순서는 id 순서지만, 실패한 이벤트는 뒤의 이벤트보다 늦게 전달될 수 있다.
+ *
+ * 지표
+ *   - lag: 이벤트가 쓰여진 뒤 핸들러에 전달될 때까지 걸린 시간
+ *   - throughput: 마지막 묶음의 초당 처리 건수
+ */
+@Slf4j
+@Component
+public class OutboxDrainer {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxEventHandler> handlers;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate dispatchTx;
+    private final TransactionTemplate readTx;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long pollIntervalMillis;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalLagMillis = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private volatile double lastThroughput;
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbox-drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OutboxDrainer(OutboxEventRepository outboxEventRepository, ObjectProvider<OutboxEventHandler> handlers,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${shop.outbox.batch-size:100}") int batchSize,
+                         @Value("${shop.outbox.max-attempts:10}") int maxAttempts,
+                         @Value("${shop.outbox.poll-interval-ms:200}") long pollIntervalMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlers = handlers.orderedStream().collect(toList()); // 핸들러가 없어도 된다. (이벤트는 지워진다)
+        this.tx = new TransactionTemplate(transactionManager);
+        this.dispatchTx = new TransactionTemplate(transactionManager);
+        this.dispatchTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        log.info("outbox drainer started. handlers={}", handlers.size());
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                while (drain() == batchSize) {
+                    // 밀려 있으면 바로 다음 묶음
+                }
+            } catch (RuntimeException e) {
+                log.warn("outbox drain failed", e);
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 한 묶음을 처리한다.
+     *
+     * @return 읽은 이벤트 수 (실패 포함)
+     */
+    public int drain() {
+        long startedAt = System.nanoTime();
+        Integer size = tx.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.findPendingForUpdate(maxAttempts, batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> done = new ArrayList<>(events.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (OutboxEvent event : events) {
+                if (dispatch(event)) {
+                    done.add(event.getId());
+                    recordLag(Duration.between(event.getCreatedAt(), now).toMillis());
+                }
+            }
+            if (!done.isEmpty()) {
+                outboxEventRepository.deleteAll(done);
+            }
+            return events.size();
+        });
+
+        if (size != null && size > 0) {
+            batches.increment();
+            long elapsedNanos = Math.max(1, System.nanoTime() - startedAt);
+            lastThroughput = size * 1_000_000_000.0 / elapsedNanos;
+        }
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 이벤트를 처리하는 모든 핸들러에 전달한다. 하나라도 실패하면 이벤트 전체를 다시 전달하므로 핸들러는 멱등해야 한다.
+     * 핸들러가 예외 없이 rollback-only 만 걸어도 커밋할 때 UnexpectedRollbackException 이 나므로 실패로 본다.
+     */
+    private boolean dispatch(OutboxEvent event) {
+        try {
+            dispatchTx.executeWithoutResult(status -> {
+                for (OutboxEventHandler handler : handlers) {
+                    if (handler.supports(event.getEventType())) {
+                        handler.handle(event);
+                    }
+                }
+            });
+            dispatched.increment();
+            return true;
+        } catch (RuntimeException e) {
+            failures.increment();
+            event.failed(e.toString()); // 변경 감지로 attempts, lastError 저장
+            log.warn("outbox event handler failed. id={} type={} attempts={}", event.getId(), event.getEventType(), event.getAttempts(), e);
+            return false;
+        }
+    }
+
+    private void recordLag(long lagMillis) {
+        totalLagMillis.add(lagMillis);
+        maxLagMillis.accumulate(lagMillis);
+        lastLagMillis.set(lagMillis);
+    }
+
+    public Stats stats() {
+        long[] counts = readTx.execute(status -> new long[]{
+                outboxEventRepository.countPending(maxAttempts), outboxEventRepository.countDead(maxAttempts)});
+        long dispatchedCount = dispatched.sum();
+        return new Stats(handlers.size(), counts[0], counts[1], dispatchedCount, failures.sum(), batches.sum(),
+                lastThroughput, dispatchedCount == 0 ? 0 : totalLagMillis.sum() / dispatchedCount,
+                maxLagMillis.get(), lastLagMillis.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdown();
+        try {
+            poller.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Getter
+    public static class Stats {
+        private final int handlers;
+        private final long pending;
+        private final long dead; // maxAttempts 번 실패해서 더 이상 전달하지 않는 이벤트
+        private final long dispatched;
+        private final long failures;
+        private final long batches;
+        private final double lastThroughput; // events/s
+        private final long avgLagMillis;
+        private final long maxLagMillis;
+        private final long lastLagMillis;
+
+        Stats(int handlers, long pending, long dead, long dispatched, long failures, long batches,
+              double lastThroughput, long avgLagMillis, long maxLagMillis, long lastLagMillis) {
+            this.handlers = handlers;
+            this.pending = pending;
+            this.dead = dead;
+            this.dispatched = dispatched;
+            this.failures = failures;
+            this.batches = batches;
+            this.lastThroughput = lastThroughput;
+            this.avgLagMillis = avgLagMillis;
+            this.maxLagMillis = maxLagMillis;
+            this.lastLagMillis = lastLagMillis;
+        }
+    }
+}
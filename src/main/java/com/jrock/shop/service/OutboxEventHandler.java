@@ -0,0 +1,17 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.OutboxEvent;
+import com.jrock.shop.domain.OutboxEventType;
+
+/**
+ * 아웃박스 이벤트 핸들러 (검색 색인, 통계 등 주문 후처리)
+ * 스프링 빈으로 등록하면 OutboxDrainer 가 supports 가 true 인 이벤트를 전달한다.
+ *
+ * 주의: 같은 이벤트가 두번 이상 올 수 있다. (핸들러 처리 후 드레이너 커밋 전에 서버가 죽으면 다시 전달) 멱등하게 처리해야 한다.
+ */
+public interface OutboxEventHandler {
+
+    boolean supports(OutboxEventType eventType);
+
+    void handle(OutboxEvent event);
+}
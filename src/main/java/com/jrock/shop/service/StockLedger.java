@@ -0,0 +1,265 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderItem;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.exception.NotEnoughStockException;
+import com.jrock.shop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 인기 상품 재고 예약 장부 (StockMode.LEDGER)
+ *   - 주문은 상품별 메모리 카운터(가용 재고)를 CAS 로 차감하고, 주문상품을 stock_applied = false 로 저장한다. (item 행 락 X)
+ *     카운터는 stripes 칸으로 나눠 담아서 같은 상품 주문이 몰려도 스레드들이 CAS 하나에 몰리지 않는다. (StripedStock)
+ *   - 백그라운드 스레드가 stock_applied = false 인 주문상품을 모아서 상품별로 합산한 UPDATE 한번씩 반영하고 true 로 바꾼다.
+ *   - 가용 재고 = item.stock_quantity - (stock_applied = false 인 주문 수량 합) 이다.
+ *     메모리 카운터는 처음 쓸 때 이 식으로 DB 에서 읽어오므로, 서버가 죽어도 DB 만으로 다시 계산할 수 있다.
+ *   - 시작할 때 남아있는 stock_applied = false 주문상품을 모두 반영한다. (reconcile)
+ *
+ * 주의
+ *   - 서버 한 대 기준이다. 여러 대가 같은 상품을 예약하면 각자의 카운터가 다른 서버의 예약을 모른다.
+ *   - 화면에 보이는 재고(item.stock_quantity)는 반영 주기만큼 늦다.
+ *   - 상품 재고를 직접 수정하면(ItemService.updateItem) 커밋 후에 차이만큼 카운터를 조정한다.
+ */
+@Slf4j
+@Component
+public class StockLedger {
+
+    private final EntityManager em;
+    private final ItemRepository itemRepository;
+    private final ItemCatalog itemCatalog;
+    private final TransactionTemplate tx;
+    private final long flushIntervalMillis;
+    private final int flushBatchSize;
+    private final int stripes;
+
+    private final Map<Long, StripedStock> available = new ConcurrentHashMap<>(); // itemId -> 가용 재고
+    private final AtomicBoolean flusherStarted = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-ledger-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StockLedger(EntityManager em, ItemRepository itemRepository, ItemCatalog itemCatalog, PlatformTransactionManager transactionManager,
+                       @Value("${shop.stock.ledger.flush-interval-ms:200}") long flushIntervalMillis,
+                       @Value("${shop.stock.ledger.flush-batch-size:1000}") int flushBatchSize,
+                       @Value("${shop.stock.ledger.stripes:0}") int stripes) {
+        this.em = em;
+        this.itemRepository = itemRepository;
+        this.itemCatalog = itemCatalog;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushBatchSize = flushBatchSize;
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors(); // 0 이면 코어 수
+    }
+
+    /**
+     * 이전에 반영하지 못하고 종료된 예약을 모두 반영한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        int total = 0;
+        for (int applied = flush(); applied > 0; applied = flush()) {
+            total += applied;
+        }
+        if (total > 0) {
+            log.info("stock ledger reconciled. orderItems={}", total);
+        }
+    }
+
+    /**
+     * 가용 재고에서 차감한다. 트랜잭션이 롤백되면 되돌린다.
+     */
+    public void reserve(Item item, int count) {
+        StripedStock stock = counter(item.getId());
+        if (!stock.tryTake(count)) {
+            throw new NotEnoughStockException("need more stock");
+        }
+
+        onRollback(() -> stock.add(count));
+        startFlusher();
+    }
+
+    /**
+     * 이 상품의 가용 재고 카운터가 있는지 (LEDGER 로 예약한 적이 있는 상품)
+     * 카운터가 있는 상품은 DB 재고에 아직 반영 안된 예약이 있을 수 있으므로, 다른 방식으로 주문해도 장부로 예약해야 한다.
+     * (StockService.createOrderItem 이 모든 주문 경로에서 확인한다)
+     */
+    public boolean isReserving(Long itemId) {
+        return available.containsKey(itemId);
+    }
+
+    /**
+     * 주문 취소
+     *   - 아직 반영 전인 주문상품은 반영할 것이 없으므로 반영된 것으로 표시만 한다.
+     *   - 이미 반영된 주문상품은 DB 재고를 되돌린다.
+     *   - 반영 스레드와 동시에 같은 주문상품을 처리하지 않도록 주문상품 행에 락을 먼저 잡는다.
+     *   - 메모리 카운터는 커밋 후에 되돌린다.
+     */
+    public void cancel(Order order) {
+        order.markCanceled();
+        em.flush(); // 같은 트랜잭션에서 만든 주문상품도 DB 행이 있어야 락을 잡을 수 있다.
+
+        List<OrderItem> orderItems = order.getOrderItems().stream()
+                .sorted(Comparator.comparing(OrderItem::getId)) // 락 순서를 고정
+                .collect(toList());
+        for (OrderItem orderItem : orderItems) {
+            em.refresh(orderItem, LockModeType.PESSIMISTIC_WRITE); // 락을 잡으면서 다시 읽는다. (반영 스레드가 바꿨을 수 있다)
+            Long itemId = orderItem.getItem().getId();
+            if (orderItem.isStockApplied()) {
+                itemRepository.increaseStock(itemId, orderItem.getCount());
+            } else {
+                orderItem.setStockApplied(true);
+            }
+            afterCommit(() -> adjust(itemId, orderItem.getCount()));
+        }
+    }
+
+    /**
+     * 커밋 후에 가용 재고를 delta 만큼 조정한다. (상품 재고 직접 수정)
+     */
+    public void adjustAfterCommit(Long itemId, int delta) {
+        if (delta != 0) {
+            afterCommit(() -> adjust(itemId, delta));
+        }
+    }
+
+    /**
+     * 반영 전 예약을 최대 flushBatchSize 개 DB 에 반영한다.
+     * 주문상품 행 락 -> 상품별 합산 UPDATE -> stock_applied = true 를 한 트랜잭션에서 하므로 중간에 죽어도 두번 반영되지 않는다.
+     *
+     * @return 반영한 주문상품 수
+     */
+    public int flush() {
+        Integer applied = tx.execute(status -> {
+            List<OrderItem> pending = em.createQuery(
+                    "select oi from OrderItem oi where oi.stockApplied = false order by oi.id", OrderItem.class)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .setMaxResults(flushBatchSize)
+                    .getResultList();
+            if (pending.isEmpty()) {
+                return 0;
+            }
+
+            // 상품 id 순서로 UPDATE (락 순서를 고정)
+            Map<Long, Integer> countByItem = pending.stream()
+                    .collect(groupingBy(oi -> oi.getItem().getId(), TreeMap::new, summingInt(OrderItem::getCount)));
+            countByItem.forEach((itemId, count) -> itemRepository.increaseStock(itemId, -count));
+
+            em.createQuery("update OrderItem oi set oi.stockApplied = true where oi.id in :ids")
+                    .setParameter("ids", pending.stream().map(OrderItem::getId).collect(toList()))
+                    .executeUpdate();
+            itemCatalog.refreshAfterCommit(countByItem.keySet()); // 반영한 상품만 카탈로그 재고를 다시 읽는다.
+            return pending.size();
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    /**
+     * 상품의 가용 재고 카운터, 없으면 DB 에서 읽어서 만든다.
+     * computeIfAbsent 는 쿼리가 끝날 때까지 맵의 버킷 락을 잡아서 같은 버킷의 다른 상품까지 막으므로, 맵 밖에서 읽고 putIfAbsent 한다.
+     * 동시에 처음 예약하면 둘 다 읽지만 먼저 넣은 카운터 하나만 쓴다.
+     */
+    private StripedStock counter(Long itemId) {
+        StripedStock stock = available.get(itemId);
+        if (stock != null) {
+            return stock;
+        }
+        StripedStock loaded = loadAvailable(itemId);
+        StripedStock raced = available.putIfAbsent(itemId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    /**
+     * 재고와 반영 전 예약 합계를 쿼리 하나로 읽는다. (두번 나눠 읽으면 그 사이에 반영 스레드가 커밋할 수 있다)
+     */
+    private StripedStock loadAvailable(Long itemId) {
+        Number stock = em.createQuery(
+                "select i.stockQuantity - coalesce((select sum(oi.count) from OrderItem oi" +
+                        " where oi.item.id = i.id and oi.stockApplied = false), 0)" +
+                        " from Item i where i.id = :itemId", Number.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+        return new StripedStock(stock.intValue(), stripes);
+    }
+
+    private void adjust(Long itemId, int delta) {
+        available.computeIfPresent(itemId, (id, stock) -> {
+            stock.add(delta);
+            return stock;
+        });
+    }
+
+    private void startFlusher() {
+        if (flusherStarted.compareAndSet(false, true)) {
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    log.warn("stock ledger flush failed", e);
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.jrock.shop.service;
+
+/**
+ * 재고 변경 방식
+ */
+public enum StockMode {
+
+    /**
+     * 기존 방식: 엔티티 재고를 읽고 빼서 변경 감지로 UPDATE
+     * Item 에 @Version 이 있으므로 동시에 변경하면 나중에 커밋하는 쪽이 실패한다. (재시도 X)
+     */
+    DIRTY_CHECKING,
+
+    /**
+     * update item set stock_quantity = stock_quantity - ? where item_id = ? and stock_quantity >= ?
+     * 한번으로 차감, 0 row 면 재고 부족 (기본값)
+     */
+    CONDITIONAL_UPDATE,
+
+    /**
+     * 변경 감지 + @Version 충돌 시 OrderFacade 가 트랜잭션을 새로 시작해서 재시도
+     */
+    OPTIMISTIC,
+
+    /**
+     * 메모리 장부(StockLedger)에서 CAS 로 차감하고, DB 재고는 백그라운드에서 모아서 반영
+     * item 행 락을 주문마다 잡지 않으므로 인기 상품 하나에 주문이 몰릴 때 쓴다. (서버 한 대 기준)
+     */
+    LEDGER
+}
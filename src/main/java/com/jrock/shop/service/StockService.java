@@ -0,0 +1,80 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderItem;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.exception.NotEnoughStockException;
+import com.jrock.shop.repository.ItemRepository;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 주문/취소 시 재고 변경 (StockMode 별)
+ * 트랜잭션은 호출한 쪽(OrderService)에서 시작한다.
+ *
+ * StockLedger 가 가용 재고 카운터를 들고 있는 상품은 모든 주문 경로(단건, 장바구니, 일괄)가 같은 규칙을 따른다.
+ *   - 주문은 모드와 상관없이 장부로 예약한다. (DB 재고에는 아직 반영 안된 예약이 빠져있지 않다)
+ *   - 다른 모드로 재고를 바꾼 주문/취소는 커밋 후에 카운터도 같이 조정한다.
+ */
+@Service
+public class StockService {
+
+    private final ItemRepository itemRepository;
+    private final StockLedger stockLedger;
+
+    @Getter
+    private final StockMode mode; // 기본 재고 변경 방식
+
+    public StockService(ItemRepository itemRepository, StockLedger stockLedger,
+                        @Value("${shop.stock.mode:CONDITIONAL_UPDATE}") StockMode mode) {
+        this.itemRepository = itemRepository;
+        this.stockLedger = stockLedger;
+        this.mode = mode;
+    }
+
+    /**
+     * 재고를 차감하고 주문상품을 생성
+     */
+    public OrderItem createOrderItem(Item item, int count, StockMode mode) {
+        if (mode == StockMode.LEDGER || stockLedger.isReserving(item.getId())) {
+            stockLedger.reserve(item, count);
+            return OrderItem.createDeferredOrderItem(item, item.getPrice(), count);
+        }
+
+        OrderItem orderItem;
+        if (mode != StockMode.CONDITIONAL_UPDATE) {
+            orderItem = OrderItem.createOrderItem(item, item.getPrice(), count); // 변경 감지 (@Version)
+        } else {
+            if (!itemRepository.decreaseStock(item.getId(), count)) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            itemRepository.refresh(item);
+            orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count);
+        }
+        stockLedger.adjustAfterCommit(item.getId(), -count); // 그 사이에 카운터가 생겼으면 같이 줄인다.
+        return orderItem;
+    }
+
+    /**
+     * 주문 취소, 재고 원복
+     * 아직 DB 에 반영 안된 주문상품이 있으면(LEDGER 로 주문) 지금 모드와 상관없이 StockLedger 가 취소한다.
+     */
+    public void cancel(Order order, StockMode mode) {
+        if (mode == StockMode.LEDGER || order.getOrderItems().stream().anyMatch(oi -> !oi.isStockApplied())) {
+            stockLedger.cancel(order);
+            return;
+        }
+        if (mode != StockMode.CONDITIONAL_UPDATE) {
+            order.cancel(); // 변경 감지 (@Version)
+        } else {
+            order.markCanceled();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                itemRepository.increaseStock(orderItem.getItem().getId(), orderItem.getCount());
+            }
+            order.getOrderItems().forEach(orderItem -> itemRepository.refresh(orderItem.getItem()));
+        }
+        // 카운터가 있는 상품이면 되돌린 재고만큼 가용 재고도 늘린다.
+        order.getOrderItems().forEach(orderItem -> stockLedger.adjustAfterCommit(orderItem.getItem().getId(), orderItem.getCount()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.jrock.shop.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 나눠 담은 가용 재고 카운터 (StockLedger 의 상품 하나)
+ *   - 카운터 하나를 CAS 로 차감하면 인기 상품 주문이 몰릴 때 모든 스레드가 같은 값 하나를 두고 재시도한다.
+ *   - 재고를 stripes 개로 나눠 담고, 스레드마다 정해진 칸에서 먼저 차감하므로 서로 다른 칸을 쓰는 스레드끼리는 부딪히지 않는다.
+ *   - 내 칸이 모자라면 다른 칸을 차례로 보고, 한 칸으로 모자라면 락을 잡고 여러 칸에서 모은다. (모으다 모자라면 되돌리고 실패)
+ *   - 칸마다 캐시 라인(64 byte)을 따로 쓰도록 사이를 띄운다. (false sharing X)
+ *   - 되돌리기, 조정(add)은 드물므로 락을 잡는다.
+ *     줄일 때는 여러 칸에서 덜어내고, 다 덜어내도 모자라면 한 칸만 음수로 남긴다. 늘릴 때는 음수 칸부터 채운다.
+ *     그래서 음수 칸이 있으면 나머지 칸은 모두 0 이고, 차감은 양수 칸에서만 하므로 합계보다 많이 팔리지 않는다.
+ */
+class StripedStock {
+
+    private static final int PADDING = 16; // int 16개 = 64 byte
+
+    private final int stripes;
+    private final AtomicIntegerArray cells;
+
+    StripedStock(int available, int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PADDING);
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, available / stripes + (i < available % stripes ? 1 : 0));
+        }
+    }
+
+    /**
+     * count 만큼 차감한다.
+     *
+     * @return 가용 재고가 모자라면 false (아무것도 바꾸지 않는다)
+     */
+    boolean tryTake(int count) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            if (tryTakeFrom((home + i) % stripes, count)) {
+                return true;
+            }
+        }
+        return gather(count);
+    }
+
+    synchronized void add(int delta) {
+        for (int i = 0; i < stripes && delta != 0; i++) {
+            int index = i * PADDING;
+            int current;
+            int moved;
+            do {
+                current = cells.get(index);
+                moved = delta > 0
+                        ? Math.min(Math.max(-current, 0), delta) // 음수 칸 채우기
+                        : -Math.min(Math.max(current, 0), -delta); // 양수 칸 덜어내기
+            } while (moved != 0 && !cells.compareAndSet(index, current, current + moved));
+            delta -= moved;
+        }
+        if (delta != 0) {
+            cells.addAndGet(home() * PADDING, delta);
+        }
+    }
+
+    int sum() {
+        int sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private boolean tryTakeFrom(int stripe, int count) {
+        int index = stripe * PADDING;
+        int current;
+        do {
+            current = cells.get(index);
+            if (current < count) {
+                return false;
+            }
+        } while (!cells.compareAndSet(index, current, current - count));
+        return true;
+    }
+
+    /**
+     * 여러 칸에서 조금씩 모은다. 모으는 쪽끼리 서로 조금씩 가져가다 둘 다 실패하지 않도록 한번에 하나만 모은다.
+     */
+    private synchronized boolean gather(int count) {
+        int[] taken = new int[stripes];
+        int remaining = count;
+        for (int i = 0; i < stripes && remaining > 0; i++) {
+            int index = i * PADDING;
+            int current;
+            int take;
+            do {
+                current = cells.get(index);
+                take = Math.min(Math.max(current, 0), remaining);
+            } while (take > 0 && !cells.compareAndSet(index, current, current - take));
+            taken[i] = take;
+            remaining -= take;
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        for (int i = 0; i < stripes; i++) {
+            if (taken[i] > 0) {
+                cells.addAndGet(i * PADDING, taken[i]);
+            }
+        }
+        return false;
+    }
+
+    private int home() {
+        long threadId = Thread.currentThread().getId();
+        return (int) ((threadId * 0x9E3779B97F4A7C15L) >>> 33) % stripes;
+    }
+}
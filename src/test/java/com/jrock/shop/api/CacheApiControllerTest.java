@@ -0,0 +1,116 @@
+package com.jrock.shop.api;
+
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.repository.ItemRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 2차 캐시는 트랜잭션 커밋 후에 반영되므로 테스트 클래스에 @Transactional 을 걸지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CacheApiControllerTest {
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired CacheApiController cacheApiController;
+    @Autowired ItemRepository itemRepository;
+
+    List<Long> itemIds = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (Long itemId : itemIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                EntityManager em = emf.createEntityManager();
+                em.joinTransaction();
+                em.remove(em.find(Item.class, itemId));
+                em.flush();
+                em.close();
+            });
+        }
+    }
+
+    @Test
+    public void 상품은_2차캐시에서_조회() throws Exception {
+        //given
+        Long itemId = createBook("캐시 JPA");
+        long before = itemRegion().getHits();
+
+        //when 영속성 컨텍스트를 새로 만들어서 조회
+        for (int i = 0; i < 2; i++) {
+            EntityManager em = emf.createEntityManager();
+            assertEquals("캐시 JPA", em.find(Item.class, itemId).getName());
+            em.close();
+        }
+
+        //then
+        assertEquals("두번 모두 item region 에서 꺼내야 한다.", before + 2, itemRegion().getHits());
+    }
+
+    @Test
+    public void 재고_UPDATE_는_그_상품만_캐시에서_뺀다() throws Exception {
+        //given
+        Long ordered = createBook("캐시 주문상품");
+        Long other = createBook("캐시 다른상품");
+        find(ordered);
+        find(other);
+        assertTrue(emf.getCache().contains(Item.class, ordered));
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> assertTrue(itemRepository.decreaseStock(ordered, 3)));
+
+        //then
+        assertFalse("커밋 후에 UPDATE 한 상품은 캐시에서 빠진다.", emf.getCache().contains(Item.class, ordered));
+        assertTrue("다른 상품은 캐시에 남아있다.", emf.getCache().contains(Item.class, other));
+        assertEquals("UPDATE 한 상품은 DB 에서 다시 읽는다.", 7, find(ordered).getStockQuantity());
+        assertEquals(10, find(other).getStockQuantity());
+    }
+
+    private Long createBook(String name) {
+        Long itemId = transactionTemplate.execute(status -> {
+            EntityManager em = emf.createEntityManager();
+            em.joinTransaction();
+            Book book = new Book();
+            book.setName(name);
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            em.flush();
+            em.close();
+            return book.getId();
+        });
+        itemIds.add(itemId);
+        return itemId;
+    }
+
+    private Item find(Long itemId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(Item.class, itemId);
+        } finally {
+            em.close();
+        }
+    }
+
+    private CacheApiController.RegionStats itemRegion() {
+        return cacheApiController.cacheRegions().getRegions().stream()
+                .filter(r -> r.getRegion().equals("item"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("item region 이 없습니다."));
+    }
+}
@@ -0,0 +1,272 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.repository.member.MemberNameTrigramIndex;
+import com.jrock.shop.service.CartLine;
+import com.jrock.shop.service.MemberService;
+import com.jrock.shop.service.OrderService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    MemberService memberService;
+
+    @Autowired
+    MemberNameTrigramIndex memberNameTrigramIndex;
+
+    @Test
+    public void 키셋_페이징() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 100);
+        for (int i = 0; i < 5; i++) {
+            orderService.order(member.getId(), book.getId(), 1);
+        }
+        em.flush();
+        em.clear();
+
+        long total = em.createQuery("select count(o) from Order o", Long.class).getSingleResult();
+
+        //when
+        List<Long> orderIds = new ArrayList<>();
+        OrderCursor cursor = null;
+        do {
+            // 커서는 문자열로 주고 받으므로 인코딩, 디코딩을 같이 검증한다.
+            OrderSlice<Order> slice = orderRepository.findAllWithMemberDelivery(cursor, OrderCursorSort.ID, 2);
+            slice.getContent().forEach(o -> orderIds.add(o.getId()));
+            cursor = slice.hasNext() ? OrderCursor.decode(slice.getNextCursor().encode()) : null;
+        } while (cursor != null);
+
+        //then
+        assertEquals("커서로 모든 주문을 한번씩 조회해야 한다.", total, orderIds.size());
+        for (int i = 1; i < orderIds.size(); i++) {
+            assertTrue("order_id 오름차순이어야 한다.", orderIds.get(i - 1) < orderIds.get(i));
+        }
+    }
+
+    @Test
+    public void 키셋_페이징_주문일() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 100);
+        for (int i = 0; i < 3; i++) {
+            orderService.order(member.getId(), book.getId(), 1);
+        }
+        em.flush();
+        em.clear();
+
+        long total = em.createQuery("select count(o) from Order o", Long.class).getSingleResult();
+
+        //when
+        List<Order> orders = new ArrayList<>();
+        OrderCursor cursor = null;
+        do {
+            OrderSlice<Order> slice = orderRepository.findAllWithMemberDelivery(cursor, OrderCursorSort.ORDER_DATE, 2);
+            orders.addAll(slice.getContent());
+            cursor = slice.hasNext() ? OrderCursor.decode(slice.getNextCursor().encode()) : null;
+        } while (cursor != null);
+
+        //then
+        assertEquals(total, orders.size());
+        for (int i = 1; i < orders.size(); i++) {
+            assertFalse("order_date 오름차순이어야 한다.", orders.get(i - 1).getOrderDate().isAfter(orders.get(i).getOrderDate()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 잘못된_커서() throws Exception {
+        OrderCursor.decode("not-a-cursor");
+    }
+
+    /**
+     * @Repository 예외 변환으로 IllegalArgumentException 이 InvalidDataAccessApiUsageException 으로 바뀌어 나온다.
+     */
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void 커서_페이지_크기는_1이상() throws Exception {
+        orderRepository.findAllWithMemberDelivery(null, OrderCursorSort.ID, 0);
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    @Test
+    public void 회원명_부분검색() throws Exception {
+        //given
+        Book book = createBook("시골 JPA", 10000, 100);
+        Long first = orderService.order(joinMember("부분검색_홍길동"), book.getId(), 1);
+        Long second = orderService.order(joinMember("부분검색_홍길동전"), book.getId(), 1);
+        orderService.order(joinMember("부분검색_김철수"), book.getId(), 1);
+        long indexHitsBefore = memberNameTrigramIndex.stats().getIndexHits();
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName("검색_홍길");
+
+        //when, then (member_id in 으로 검색)
+        assertEquals(Set.of(first, second), orderIds(orderRepository.findAllByString(search)));
+        assertEquals(Set.of(first, second), orderIds(orderRepository.findAllByCriteria(search)));
+        assertEquals(Set.of(first, second), searchIds(orderRepository.findAll(search)));
+        assertEquals(3, memberNameTrigramIndex.stats().getIndexHits() - indexHitsBefore);
+
+        search.setMemberName("부분검색_없는회원");
+        assertTrue(orderRepository.findAllByString(search).isEmpty());
+        assertTrue(orderRepository.findAll(search).isEmpty());
+    }
+
+    @Test
+    public void 서비스를_거치지_않고_저장한_회원도_인덱스로_찾는다() throws Exception {
+        //given MemberService 를 거치지 않고 저장한 회원 (엔티티 리스너가 인덱스에 넣는다, flush 전)
+        Book book = createBook("시골 JPA", 10000, 100);
+        Member member = new Member();
+        member.setName("리스너_이순신");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        long indexHitsBefore = memberNameTrigramIndex.stats().getIndexHits();
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName("너_이순");
+
+        //when, then (member_id in 으로 검색)
+        assertEquals(Set.of(orderId), orderIds(orderRepository.findAllByString(search)));
+        assertEquals(Set.of(orderId), orderIds(orderRepository.findAllByCriteria(search)));
+        assertEquals(Set.of(orderId), searchIds(orderRepository.findAll(search)));
+        assertEquals(3, memberNameTrigramIndex.stats().getIndexHits() - indexHitsBefore);
+    }
+
+    @Test
+    public void 일치하는_회원이_없으면_주문을_조회하지_않는다() throws Exception {
+        //given
+        Book book = createBook("시골 JPA", 10000, 100);
+        orderService.order(joinMember("조회안함_홍길동"), book.getId(), 1);
+        em.flush();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long queriesBefore = statistics.getQueryExecutionCount();
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName("조회안함_김철수");
+
+        //when, then
+        assertTrue(orderRepository.findAllByString(search).isEmpty());
+        assertTrue(orderRepository.findAllByCriteria(search).isEmpty());
+        assertTrue(orderRepository.findAll(search).isEmpty());
+        assertEquals(0, statistics.getQueryExecutionCount() - queriesBefore);
+    }
+
+    @Test
+    public void 주문_검색_기간_상품_총액() throws Exception {
+        //given
+        Long memberId = joinMember("검색조건회원");
+        Book jpa = createBook("검색조건 JPA", 10000, 100);
+        Book spring = createBook("검색조건 Spring", 20000, 100);
+        Long small = orderService.order(memberId, jpa.getId(), 1); // 10000
+        Long mixed = orderService.order(memberId, List.of(new CartLine(jpa.getId(), 2), new CartLine(spring.getId(), 1))); // 40000
+        Long large = orderService.order(memberId, spring.getId(), 3); // 60000
+        Long canceled = orderService.order(memberId, spring.getId(), 2); // 40000
+        orderService.cancelOrder(canceled);
+        em.flush();
+        em.createQuery("update Order o set o.orderDate = :orderDate where o.id = :id") // 한달 전 주문
+                .setParameter("orderDate", LocalDateTime.of(2020, 12, 15, 23, 59))
+                .setParameter("id", large)
+                .executeUpdate();
+        em.clear();
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName("검색조건회원");
+
+        //when, then
+        List<OrderSearchDto> all = orderRepository.findAll(search);
+        assertEquals("최근 주문 순", List.of(canceled, mixed, small, large), all.stream().map(OrderSearchDto::getOrderId).collect(toList()));
+        OrderSearchDto mixedDto = all.get(1);
+        assertEquals("주문상품 전체의 총액", 40000, mixedDto.getTotalPrice());
+        assertEquals("검색조건회원", mixedDto.getName());
+        assertEquals(OrderStatus.ORDER, mixedDto.getOrderStatus());
+
+        search.setItemId(jpa.getId());
+        assertEquals("상품 조건이 있어도 총액은 주문 전체", List.of(40000, 10000),
+                orderRepository.findAll(search).stream().map(OrderSearchDto::getTotalPrice).collect(toList()));
+
+        search.setItemId(null);
+        search.setMinTotalPrice(40000);
+        search.setMaxTotalPrice(50000);
+        assertEquals(Set.of(mixed, canceled), searchIds(orderRepository.findAll(search)));
+
+        search.setOrderStatus(OrderStatus.ORDER);
+        assertEquals(Set.of(mixed), searchIds(orderRepository.findAll(search)));
+
+        search.setOrderStatus(null);
+        search.setMinTotalPrice(null);
+        search.setMaxTotalPrice(null);
+        search.setOrderDateFrom(LocalDate.of(2020, 12, 1));
+        search.setOrderDateTo(LocalDate.of(2020, 12, 15));
+        assertEquals("끝 날짜는 하루 전체", Set.of(large), searchIds(orderRepository.findAll(search)));
+
+        search.setOrderDateFrom(LocalDate.of(2020, 12, 16));
+        search.setOrderDateTo(null);
+        assertEquals(Set.of(small, mixed, canceled), searchIds(orderRepository.findAll(search)));
+    }
+
+    private Long joinMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return memberService.join(member); // 트라이그램 인덱스에 들어간다.
+    }
+
+    private static Set<Long> orderIds(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(toSet());
+    }
+
+    private static Set<Long> searchIds(List<OrderSearchDto> orders) {
+        return orders.stream().map(OrderSearchDto::getOrderId).collect(toSet());
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,268 @@
+package com.jrock.shop.repository;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.service.OrderLine;
+import com.jrock.shop.service.OrderLineResult;
+import com.jrock.shop.service.OrderService;
+import com.jrock.shop.service.StockMode;
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * 주문 검색(OrderRepository.findAll) 인덱스 사용 확인 (H2 EXPLAIN) 과 인덱스 유무별 읽은 행 수, 검색 시간 비교
+ *   - 상태 + 주문일 기간 -> idx_orders_status_order_date
+ *   - 상품 조건 exists -> idx_order_item_order_item
+ *   - EXPLAIN 은 findAll 이 실제로 실행한 SQL(회원/주문상품 조인, group by, having, order by)과 바인딩 값을
+ *     p6spy 리스너로 잡아서 그대로 돌린다. (QueryDSL 이 만드는 SQL 이 바뀌어도 따라간다)
+ *   - 읽은 행 수는 EXPLAIN ANALYZE 의 scanCount 합계다.
+ *     메모리 DB 에 이 정도 데이터면 검색 시간은 JPA/QueryDSL 처리 시간이 대부분이고 JIT 에 따라 흔들리므로 출력만 한다.
+ *
+ * 주문이 1년에 걸쳐 있어야 기간 조건이 의미가 있으므로 주문일을 직접 흩어 놓는다.
+ * 인덱스를 지웠다가 다시 만들므로 메모리 DB 를 따로 쓰고, SQL 로그(hibernate, p6spy)는 끈다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:order-search",
+        "logging.level.org.hibernate.SQL=info",
+        "decorator.datasource.p6spy.enable-logging=false"})
+public class OrderSearchBenchmarkTest {
+
+    static final int ORDERS = 10000;
+    static final int ITEMS = 50;
+    static final int WARMUP = 500;
+    static final int SEARCHES = 200;
+
+    // 검색 조건(최근 30일 취소 주문)에 걸리는 주문, 검색할 상품을 고를 때만 쓴다.
+    static final String STATUS_DATE_SQL = "select o.order_id from orders o" +
+            " where o.status = 'CANCEL' and o.order_date >= dateadd('DAY', -30, current_timestamp)";
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired SqlCapture sqlCapture;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture(); // p6spy 가 JdbcEventListener 빈을 등록한다.
+        }
+    }
+
+    @Test
+    public void 주문검색_인덱스() throws Exception {
+        Long itemId = seed();
+
+        OrderSearch search = new OrderSearch();
+        search.setOrderStatus(OrderStatus.CANCEL);
+        search.setOrderDateFrom(LocalDate.now().minusDays(30));
+        search.setItemId(itemId);
+        search.setMinTotalPrice(1); // having 까지 들어간 SQL
+
+        CapturedQuery searchSql = capture(search);
+        assertTrue(searchSql.sql, searchSql.sql.contains("group by") && searchSql.sql.contains("having")
+                && searchSql.sql.contains("order by"));
+
+        String plan = explain("explain ", searchSql);
+        assertTrue(plan, plan.contains("IDX_ORDERS_STATUS_ORDER_DATE"));
+        assertTrue(plan, plan.contains("IDX_ORDER_ITEM_ORDER_ITEM"));
+        long indexedScans = scanCount(searchSql);
+        List<OrderSearchDto> expected = search(search, "indexed", indexedScans);
+
+        execute("drop index idx_orders_status_order_date");
+        execute("drop index idx_order_item_order_item");
+        try {
+            long noIndexScans = scanCount(searchSql);
+            assertEquals("인덱스가 없어도 결과는 같다.", expected, search(search, "no index", noIndexScans));
+            assertTrue("인덱스가 있으면 읽는 행이 적어야 한다. indexed=" + indexedScans + " noIndex=" + noIndexScans,
+                    indexedScans * 5 < noIndexScans);
+        } finally {
+            execute("create index idx_orders_status_order_date on orders (status, order_date)");
+            execute("create index idx_order_item_order_item on order_item (order_id, item_id)");
+        }
+        assertFalse(expected.isEmpty());
+    }
+
+    private List<OrderSearchDto> search(OrderSearch search, String phase, long scans) {
+        return transactionTemplate.execute(status -> {
+            List<OrderSearchDto> result = null;
+            for (int i = 0; i < WARMUP; i++) {
+                result = orderRepository.findAll(search); // JIT 워밍업
+            }
+            long startedAt = System.nanoTime();
+            for (int i = 0; i < SEARCHES; i++) {
+                result = orderRepository.findAll(search);
+            }
+            long elapsedMicros = (System.nanoTime() - startedAt) / 1_000;
+            System.out.printf("[OrderSearch] %-8s orders=%d scanned=%d found=%d searches=%d elapsed=%,dus (%.0fus/search)%n",
+                    phase, ORDERS, scans, result.size(), SEARCHES, elapsedMicros, (double) elapsedMicros / SEARCHES);
+            return result;
+        });
+    }
+
+    /**
+     * 상품 ITEMS 개에 고루 나눈 주문 ORDERS 건, 주문일은 최근 1년에 흩어 놓고 10건 중 1건은 취소 상태
+     * 최근 30일 안의 취소 주문이 들어있는 상품 id 를 돌려준다.
+     */
+    private Long seed() {
+        List<Long> itemIds = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < ITEMS; i++) {
+                Book book = new Book();
+                book.setName("검색벤치-" + i);
+                book.setPrice(1000 * (i + 1));
+                book.setStockQuantity(ORDERS);
+                em.persist(book);
+                ids.add(book.getId());
+            }
+            return ids;
+        });
+        Long memberId = transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("검색벤치회원");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            return member.getId();
+        });
+
+        List<OrderLine> lines = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            OrderLine line = new OrderLine();
+            line.setMemberId(memberId);
+            line.setItemId(itemIds.get(i % ITEMS));
+            line.setCount(1);
+            lines.add(line);
+        }
+        List<OrderLineResult> results = transactionTemplate.execute(status -> orderService.orderAll(lines, StockMode.DIRTY_CHECKING));
+        assertTrue(results.stream().allMatch(OrderLineResult::isSuccess));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createNativeQuery("update orders set order_date = dateadd('DAY', -mod(order_id, 365), current_timestamp)").executeUpdate();
+            em.createNativeQuery("update orders set status = 'CANCEL' where mod(order_id, 10) = 0").executeUpdate();
+            em.createNativeQuery("analyze").executeUpdate(); // 통계를 갱신해야 선택도에 맞는 인덱스를 고른다.
+        });
+        // 조건에 맞는 주문이 있는 상품 (id 는 시퀀스를 같이 쓰므로 상품과 취소 주문이 어떻게 겹칠지 모른다)
+        return transactionTemplate.execute(status -> ((Number) em.createNativeQuery(
+                "select min(oi.item_id) from order_item oi where oi.order_id in (" + STATUS_DATE_SQL + ")")
+                .getSingleResult()).longValue());
+    }
+
+    /**
+     * findAll 이 실행한 SQL 과 바인딩 값
+     */
+    private CapturedQuery capture(OrderSearch search) {
+        sqlCapture.start();
+        try {
+            transactionTemplate.executeWithoutResult(status -> orderRepository.findAll(search));
+        } finally {
+            sqlCapture.stop();
+        }
+        List<CapturedQuery> queries = sqlCapture.queries;
+        assertEquals("검색은 SQL 한번이어야 한다. " + queries, 1, queries.size());
+        return queries.get(0);
+    }
+
+    /**
+     * 검색 SQL 로 읽은 행 수 (테이블별 scanCount 합계)
+     */
+    private long scanCount(CapturedQuery searchSql) {
+        Matcher matcher = SCAN_COUNT.matcher(explain("explain analyze ", searchSql));
+        long scans = 0;
+        while (matcher.find()) {
+            scans += Long.parseLong(matcher.group(1));
+        }
+        return scans;
+    }
+
+    private String explain(String explain, CapturedQuery searchSql) {
+        return transactionTemplate.execute(status -> {
+            Query query = em.createNativeQuery(explain + searchSql.sql);
+            searchSql.parameters.forEach(query::setParameter);
+            return String.valueOf(query.getSingleResult());
+        });
+    }
+
+    private void execute(String sql) {
+        transactionTemplate.executeWithoutResult(status -> em.createNativeQuery(sql).executeUpdate());
+    }
+
+    static class CapturedQuery {
+        final String sql;
+        final Map<Integer, Object> parameters; // 1 부터
+
+        CapturedQuery(String sql, Map<Integer, Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public String toString() {
+            return sql + " " + parameters;
+        }
+    }
+
+    /**
+     * start ~ stop 사이에 실행된 select 와 바인딩 값을 모은다.
+     */
+    static class SqlCapture extends SimpleJdbcEventListener {
+
+        private volatile boolean capturing;
+        private final Map<PreparedStatementInformation, Map<Integer, Object>> bound = new IdentityHashMap<>();
+        final List<CapturedQuery> queries = new ArrayList<>();
+
+        synchronized void start() {
+            bound.clear();
+            queries.clear();
+            capturing = true;
+        }
+
+        synchronized void stop() {
+            capturing = false;
+        }
+
+        @Override
+        public synchronized void onAfterPreparedStatementSet(PreparedStatementInformation statementInformation,
+                                                             int parameterIndex, Object value, SQLException e) {
+            if (capturing) {
+                bound.computeIfAbsent(statementInformation, info -> new TreeMap<>()).put(parameterIndex, value);
+            }
+        }
+
+        @Override
+        public synchronized void onBeforeExecuteQuery(PreparedStatementInformation statementInformation) {
+            if (capturing) {
+                Map<Integer, Object> parameters = bound.remove(statementInformation);
+                queries.add(new CapturedQuery(statementInformation.getSql(),
+                        parameters == null ? new TreeMap<>() : parameters));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.jrock.shop.repository.item;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+public class InvertedIndexTest {
+
+    @Test
+    public void 모든_단어가_들어있는_문서만_점수순() throws Exception {
+        //given
+        InvertedIndex index = new InvertedIndex();
+        index.put(1L, Map.of("jpa", 3, "김영한", 2));
+        index.put(2L, Map.of("jpa", 2, "spring", 3)); // 저자 필드에만 jpa
+        index.put(3L, Map.of("spring", 3, "김영한", 2));
+
+        //when, then
+        assertEquals(List.of(1L, 2L), ids(index.search(List.of(term("jpa")), 10)));
+        assertEquals(List.of(1L), ids(index.search(List.of(term("jpa"), term("김영한")), 10)));
+        assertEquals(List.of(), ids(index.search(List.of(term("jpa"), term("없는단어")), 10)));
+    }
+
+    @Test
+    public void 드문_단어일수록_점수가_높다() throws Exception {
+        //given
+        InvertedIndex index = new InvertedIndex();
+        index.put(1L, Map.of("spring", 3, "jpa", 3));
+        index.put(2L, Map.of("spring", 3));
+        index.put(3L, Map.of("spring", 3));
+
+        //when
+        List<ItemSearchHit> jpa = index.search(List.of(term("jpa")), 10);
+        List<ItemSearchHit> spring = index.search(List.of(term("spring")), 10);
+
+        //then
+        assertTrue(jpa.get(0).getScore() > spring.get(0).getScore());
+        assertEquals("점수가 같으면 id 순", List.of(1L, 2L, 3L), ids(spring));
+    }
+
+    @Test
+    public void 접두어_검색() throws Exception {
+        //given
+        InvertedIndex index = new InvertedIndex();
+        index.put(1L, Map.of("jpa1", 3));
+        index.put(2L, Map.of("jpa", 3));
+        index.put(3L, Map.of("java", 3));
+
+        //when
+        List<ItemSearchHit> hits = index.search(List.of(new InvertedIndex.QueryTerm("jpa", true)), 10);
+
+        //then
+        assertEquals("접두어 자체와 일치하는 단어가 먼저", List.of(2L, 1L), ids(hits));
+        assertEquals(List.of(1L), ids(index.search(List.of(term("jpa1")), 10)));
+        assertEquals(1, index.search(List.of(new InvertedIndex.QueryTerm("j", true)), 1).size());
+    }
+
+    @Test
+    public void 다시_넣으면_이전_단어는_빠진다() throws Exception {
+        //given
+        InvertedIndex index = new InvertedIndex();
+        index.put(1L, Map.of("jpa", 3));
+
+        //when
+        index.put(1L, Map.of("spring", 3));
+        index.putIfAbsent(1L, Map.of("jpa", 3)); // 다시 만드는 중에 읽은 이전 값
+
+        //then
+        assertEquals(List.of(), ids(index.search(List.of(term("jpa")), 10)));
+        assertEquals(List.of(1L), ids(index.search(List.of(term("spring")), 10)));
+        assertEquals(1, index.termCount());
+    }
+
+    private static InvertedIndex.QueryTerm term(String text) {
+        return new InvertedIndex.QueryTerm(text, false);
+    }
+
+    private static List<Long> ids(List<ItemSearchHit> hits) {
+        return hits.stream().map(ItemSearchHit::getItemId).collect(toList());
+    }
+}
@@ -0,0 +1,108 @@
+package com.jrock.shop.repository.item;
+
+import com.jrock.shop.domain.item.Album;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.domain.item.Movie;
+import com.jrock.shop.service.ItemService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+/**
+ * 상품 검색 색인
+ * 상품 등록/수정은 커밋 후에 색인에 반영되므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemSearchIndexTest {
+
+    @Autowired ItemSearchIndex itemSearchIndex;
+    @Autowired ItemService itemService;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> itemIds = new ArrayList<>();
+
+    @Test
+    public void 등록_수정_반영() throws Exception {
+        //given
+        Book book = new Book();
+        book.setName("검색색인 자바 ORM 표준");
+        book.setAuthor("검색색인저자");
+        book.setIsbn("978-89-0000-0001");
+        Long bookId = save(book);
+
+        Album album = new Album();
+        album.setName("검색색인 앨범");
+        album.setArtist("검색색인저자"); // 저자와 같은 이름, 상품명 일치보다 점수가 낮다.
+        Long albumId = save(album);
+
+        Movie movie = new Movie();
+        movie.setName("검색색인저자 다큐");
+        movie.setDirector("검색색인감독");
+        movie.setIsbn("M-0001");
+        Long movieId = save(movie);
+
+        //when, then
+        assertEquals(List.of(bookId, albumId), search("검색색인 검색색인저자"));
+        assertEquals("상품명 일치가 먼저", movieId, search("검색색인저자").get(0));
+        assertEquals(List.of(bookId), search("9788900000001"));
+        assertEquals(List.of(bookId), search("978-89-0000-0001"));
+        assertEquals(List.of(movieId), search("검색색인감*"));
+        assertEquals(List.of(bookId), search("검색색인 ORM"));
+
+        itemService.updateItem(bookId, 10000, 10, "검색색인 하이버네이트");
+        assertEquals(List.of(), search("검색색인 orm"));
+        assertEquals(List.of(bookId), search("하이버네이트"));
+    }
+
+    @Test
+    public void 다시_만들기() throws Exception {
+        //given
+        Book book = new Book();
+        book.setName("다시만들기색인");
+        Long bookId = save(book);
+
+        //when
+        itemSearchIndex.rebuild();
+
+        //then
+        assertEquals(List.of(bookId), search("다시만들기색인"));
+        assertTrue(itemSearchIndex.stats().getItems() >= 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 검색_결과_수는_1이상() throws Exception {
+        itemSearchIndex.search("검색색인", -1);
+    }
+
+    private Long save(Item item) {
+        item.setPrice(10000);
+        item.setStockQuantity(10);
+        itemService.saveItem(item);
+        itemIds.add(item.getId());
+        return item.getId();
+    }
+
+    private List<Long> search(String query) {
+        return itemSearchIndex.search(query, 10).stream().map(ItemSearchHit::getItemId).collect(toList());
+    }
+
+    @After
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Item i where i.id in :itemIds").setParameter("itemIds", itemIds).executeUpdate());
+    }
+}
@@ -0,0 +1,59 @@
+package com.jrock.shop.repository.member;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CountingBloomFilterTest {
+
+    @Test
+    public void 넣은_이름은_항상_있을수도있다() throws Exception {
+        //given
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+
+        //when
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("회원" + i);
+        }
+
+        //then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue("false negative 가 있으면 안된다.", filter.mightContain("회원" + i));
+        }
+    }
+
+    @Test
+    public void 오탐률() throws Exception {
+        //given
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("회원" + i);
+        }
+
+        //when
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("신규" + i)) {
+                falsePositives++;
+            }
+        }
+
+        //then
+        assertTrue("오탐률은 설정값 근처여야 한다. rate=" + falsePositives / 100_000.0, falsePositives < 2_000);
+    }
+
+    @Test
+    public void 뺀_이름은_없다_다른_이름은_유지() throws Exception {
+        //given
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        filter.add("userA");
+        filter.add("userB");
+
+        //when
+        filter.remove("userA");
+
+        //then
+        assertFalse(filter.mightContain("userA"));
+        assertTrue(filter.mightContain("userB"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.jrock.shop.repository.member;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrigramIndexTest {
+
+    @Test
+    public void 부분일치_회원_id() throws Exception {
+        //given
+        TrigramIndex index = new TrigramIndex();
+        index.put(1L, "홍길동전");
+        index.put(2L, "홍길동");
+        index.put(3L, "홍길동 길동전"); // 조각(홍길동, 길동전)은 모두 있지만 "홍길동전" 은 아니다.
+        index.put(4L, "김철수");
+
+        //when, then
+        assertEquals(Set.of(1L), index.find("홍길동전", 10));
+        assertEquals(Set.of(1L, 2L, 3L), index.find("홍길동", 10));
+        assertEquals(Set.of(1L, 2L, 3L), index.find("길동", 10)); // 3글자보다 짧으면 모두 훑는다.
+        assertEquals(Set.of(), index.find("이영희", 10));
+    }
+
+    @Test
+    public void 이름변경_삭제() throws Exception {
+        //given
+        TrigramIndex index = new TrigramIndex();
+        index.put(1L, "홍길동");
+
+        //when
+        index.put(1L, "김철수");
+
+        //then
+        assertEquals(Set.of(), index.find("홍길동", 10));
+        assertEquals(Set.of(1L), index.find("김철수", 10));
+
+        index.remove(1L);
+        assertEquals(Set.of(), index.find("김철수", 10));
+        assertEquals("빈 조각은 남기지 않는다.", 0, index.gramCount());
+    }
+
+    @Test
+    public void 후보가_많으면_null() throws Exception {
+        //given
+        TrigramIndex index = new TrigramIndex();
+        for (long id = 1; id <= 20; id++) {
+            index.put(id, "회원" + id);
+        }
+
+        //when, then
+        assertNull(index.find("회원1", 5)); // 회원1, 회원10 ~ 회원19
+        assertEquals(11, index.find("회원1", 20).size());
+    }
+
+    @Test
+    public void 초기적재는_최신값을_덮어쓰지_않는다() throws Exception {
+        //given
+        TrigramIndex index = new TrigramIndex();
+        index.put(1L, "변경된이름");
+
+        //when
+        index.putIfAbsent(1L, "예전이름");
+
+        //then
+        assertEquals(Set.of(1L), index.find("변경된", 10));
+        assertEquals(Set.of(), index.find("예전이", 10));
+    }
+}
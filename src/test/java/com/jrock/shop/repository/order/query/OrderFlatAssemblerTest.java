@@ -0,0 +1,98 @@
+package com.jrock.shop.repository.order.query;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.OrderStatus;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+/**
+ * 순수 자바 단위 테스트 (스프링 X)
+ */
+public class OrderFlatAssemblerTest {
+
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Test
+    public void 연속된_row_를_주문_하나로_합친다() throws Exception {
+        //given
+        List<OrderFlatDto> flats = createFlats(3);
+
+        //when
+        List<OrderQueryDto> result = OrderFlatAssembler.collapse(flats);
+
+        //then
+        assertEquals(3, result.size());
+        assertEquals("주문 id 순서를 유지해야 한다.", Arrays.asList(1L, 2L, 3L),
+                result.stream().map(OrderQueryDto::getOrderId).collect(toList()));
+        result.forEach(o -> assertEquals(ITEMS_PER_ORDER, o.getOrderItems().size()));
+        assertEquals("item-2-1", result.get(1).getOrderItems().get(1).getItemName());
+    }
+
+    @Test
+    public void 빈_결과() throws Exception {
+        assertTrue(OrderFlatAssembler.collapse(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * 기존 groupingBy 조립 vs 한번에 훑는 조립 비교 (10k / 100k / 1M row)
+     *   - 결과는 표준 출력으로 남긴다. 실행 환경마다 수치가 다르므로 시간은 검증하지 않고 결과 건수만 검증한다.
+     */
+    @Test
+    public void 벤치마크_groupingBy_vs_collapse() throws Exception {
+        for (int rows : new int[]{10_000, 100_000, 1_000_000}) {
+            List<OrderFlatDto> flats = createFlats(rows / ITEMS_PER_ORDER);
+
+            // 워밍업
+            grouping(flats);
+            OrderFlatAssembler.collapse(flats);
+
+            long groupingNanos = measure(() -> assertEquals(flats.size() / ITEMS_PER_ORDER, grouping(flats).size()));
+            long collapseNanos = measure(() -> assertEquals(flats.size() / ITEMS_PER_ORDER, OrderFlatAssembler.collapse(flats).size()));
+
+            System.out.printf("[OrderFlatAssembler] rows=%,d groupingBy=%,dms collapse=%,dms%n",
+                    flats.size(), groupingNanos / 1_000_000, collapseNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * 기존 ordersV6 의 조립 코드
+     */
+    private List<OrderQueryDto> grouping(List<OrderFlatDto> flats) {
+        return flats.stream()
+                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(),
+                                o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                        mapping(o -> new OrderItemQueryDto(o.getOrderId(),
+                                o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
+                )).entrySet().stream()
+                .map(e -> new OrderQueryDto(e.getKey().getOrderId(),
+                        e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),
+                        e.getKey().getAddress(), e.getValue()))
+                .collect(toList());
+    }
+
+    private long measure(Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        return System.nanoTime() - start;
+    }
+
+    private List<OrderFlatDto> createFlats(int orderCount) {
+        Address address = new Address("서울", "강가", "123-123");
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderFlatDto> flats = new ArrayList<>(orderCount * ITEMS_PER_ORDER);
+        for (long orderId = 1; orderId <= orderCount; orderId++) {
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                flats.add(new OrderFlatDto(orderId, "회원" + (orderId % 100), now, OrderStatus.ORDER, address,
+                        "item-" + orderId + "-" + i, 10000, 1));
+            }
+        }
+        return flats;
+    }
+}
@@ -0,0 +1,42 @@
+package com.jrock.shop.repository.order.query;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class OrderItemQueryLoaderTest {
+
+    @Test
+    public void chunk_는_2의_제곱수_크기로_채운다() throws Exception {
+        //given
+        List<Long> ids = LongStream.rangeClosed(1, 7).boxed().collect(Collectors.toList());
+
+        //when
+        List<List<Long>> chunks = OrderItemQueryLoader.toPaddedChunks(ids, 4);
+
+        //then
+        assertEquals(Arrays.asList(
+                Arrays.asList(1L, 2L, 3L, 4L),
+                Arrays.asList(5L, 6L, 7L, 7L)), chunks);
+    }
+
+    @Test
+    public void IN_절_모양은_chunkSize_까지_2의_제곱수만_나온다() throws Exception {
+        for (int size = 1; size <= 2000; size++) {
+            List<Long> ids = LongStream.rangeClosed(1, size).boxed().collect(Collectors.toList());
+
+            List<List<Long>> chunks = OrderItemQueryLoader.toPaddedChunks(ids, 512);
+
+            for (List<Long> chunk : chunks) {
+                assertTrue(chunk.size() <= 512);
+                assertEquals("2의 제곱수여야 한다. size=" + chunk.size(), 1, Integer.bitCount(chunk.size()));
+            }
+            assertEquals(size, chunks.stream().flatMap(List::stream).distinct().count());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.jrock.shop.repository.order.query;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OrderQueryCacheTest {
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void 캐시에_있으면_다시_조회하지_않는다() throws Exception {
+        //given
+        OrderQueryCache cache = new OrderQueryCache(100);
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        cache.get(1L, id -> { loads.incrementAndGet(); return order(id, 1); });
+        cache.get(1L, id -> { loads.incrementAndGet(); return order(id, 1); });
+
+        //then
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    public void 가중치를_넘으면_오래_안쓴_주문부터_버린다() throws Exception {
+        //given
+        OrderQueryCache cache = new OrderQueryCache(6); // 주문 하나 가중치 = 1 + orderItem 2 = 3
+        cache.get(1L, id -> order(id, 2));
+        cache.get(2L, id -> order(id, 2));
+        cache.get(1L, id -> order(id, 2)); // 1번을 최근에 사용
+
+        //when
+        cache.get(3L, id -> order(id, 2));
+
+        //then
+        assertEquals(2, cache.stats().getSize());
+        assertEquals(1, cache.stats().getEvictions());
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, id -> { loads.incrementAndGet(); return order(id, 2); });
+        assertEquals("최근에 쓴 1번은 남아있어야 한다.", 0, loads.get());
+    }
+
+    @Test
+    public void 조회_도중_무효화되면_캐시에_넣지_않는다() throws Exception {
+        //given
+        OrderQueryCache cache = new OrderQueryCache(100);
+
+        //when
+        cache.get(1L, id -> {
+            cache.evict(id); // 조회하는 사이에 다른 트랜잭션이 커밋되었다.
+            return order(id, 1);
+        });
+
+        //then
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    public void 커밋_후에만_무효화한다() throws Exception {
+        //given
+        OrderQueryCache cache = new OrderQueryCache(100);
+        cache.get(1L, id -> order(id, 1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        //when
+        cache.evictAfterCommit(1L);
+
+        //then
+        assertEquals("커밋 전에는 남아있다.", 1, cache.stats().getSize());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    private OrderQueryDto order(Long orderId, int items) {
+        List<OrderItemQueryDto> orderItems = new ArrayList<>(Collections.nCopies(items, new OrderItemQueryDto(orderId, "item", 1000, 1)));
+        return new OrderQueryDto(orderId, "회원", null, null, null, orderItems);
+    }
+}
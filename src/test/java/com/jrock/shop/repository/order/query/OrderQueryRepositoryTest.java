@@ -0,0 +1,105 @@
+package com.jrock.shop.repository.order.query;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderQueryRepository orderQueryRepository;
+
+    @Test
+    public void 플랫_데이터_스트리밍() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 100);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+
+        //when
+        List<OrderQueryDto> streamed = new ArrayList<>();
+        orderQueryRepository.streamAllByDto_flat(1, streamed::add); // chunk 1 -> row 마다 영속성 컨텍스트를 비운다.
+
+        //then
+        List<OrderQueryDto> expected = orderQueryRepository.findAllByDto_optimization();
+        assertEquals("주문 하나당 한번씩 넘어와야 한다.", expected.size(), streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue("주문 id 순서로 넘어와야 한다.", streamed.get(i - 1).getOrderId() < streamed.get(i).getOrderId());
+        }
+
+        OrderQueryDto order = streamed.stream()
+                .filter(o -> o.getOrderId().equals(orderId))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        assertEquals(1, order.getOrderItems().size());
+        assertEquals(2, order.getOrderItems().get(0).getCount());
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class) // @Repository 예외 변환
+    public void 스트리밍_chunk_크기는_1이상() throws Exception {
+        orderQueryRepository.streamAllByDto_flat(0, order -> {});
+    }
+
+    @Test
+    public void V5_페이징() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 100);
+        for (int i = 0; i < 3; i++) {
+            orderService.order(member.getId(), book.getId(), 1);
+        }
+        long total = em.createQuery("select count(o) from Order o", Long.class).getSingleResult();
+
+        //when
+        Page<OrderQueryDto> first = orderQueryRepository.findAllByDto_optimization(PageRequest.of(0, 2));
+        Page<OrderQueryDto> all = orderQueryRepository.findAllByDto_optimization(PageRequest.of(0, 1000));
+
+        //then
+        assertEquals(2, first.getContent().size());
+        assertEquals(total, first.getTotalElements());
+        assertEquals("첫 페이지가 작으면 count 쿼리 없이 content 크기가 전체 건수", total, all.getTotalElements());
+        first.getContent().forEach(o -> assertFalse("페이지의 주문에는 orderItem 이 채워져야 한다.", o.getOrderItems().isEmpty()));
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,84 @@
+package com.jrock.shop.repository.order.strategy;
+
+import com.jrock.shop.repository.order.query.OrderItemQueryDto;
+import com.jrock.shop.repository.order.query.OrderQueryDto;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 전략 선택 로직 단위 테스트 (가짜 전략으로 응답 시간, 데이터 모양을 흉내낸다)
+ */
+public class AdaptiveOrderReaderTest {
+
+    @Test
+    public void 워밍업_후_가장_빠른_전략을_고른다() throws Exception {
+        //given
+        AdaptiveOrderReader reader = new AdaptiveOrderReader(Arrays.asList(
+                new FakeStrategy(FetchJoinOrderReadStrategy.NAME, 20, 10, 1),
+                new FakeStrategy(DtoOrderReadStrategy.NAME, 1, 10, 1)),
+                1, 0, 1000, 20);
+
+        //when
+        reader.findOrders();
+        reader.findOrders();
+        reader.findOrders();
+
+        //then
+        assertEquals(DtoOrderReadStrategy.NAME, reader.diagnostics().getChosen());
+        reader.diagnostics().getStrategies().forEach(s -> assertTrue(s.getCalls() > 0));
+    }
+
+    @Test
+    public void 주문당_orderItem_이_많으면_flat_전략을_제외한다() throws Exception {
+        //given
+        AdaptiveOrderReader reader = new AdaptiveOrderReader(Arrays.asList(
+                new FakeStrategy(FlatDtoOrderReadStrategy.NAME, 0, 10, 50),
+                new FakeStrategy(DtoOrderReadStrategy.NAME, 5, 10, 50)),
+                1, 0, 1000, 20);
+
+        //when
+        reader.findOrders();
+        reader.findOrders();
+        reader.findOrders();
+
+        //then
+        assertEquals("flat 이 더 빨라도 주문당 orderItem 이 많으면 제외", DtoOrderReadStrategy.NAME, reader.diagnostics().getChosen());
+    }
+
+    static class FakeStrategy implements OrderReadStrategy {
+
+        private final String name;
+        private final long sleepMillis;
+        private final List<OrderQueryDto> result = new ArrayList<>();
+
+        FakeStrategy(String name, long sleepMillis, int orders, int itemsPerOrder) {
+            this.name = name;
+            this.sleepMillis = sleepMillis;
+            for (long id = 1; id <= orders; id++) {
+                List<OrderItemQueryDto> items = new ArrayList<>(Collections.nCopies(itemsPerOrder, new OrderItemQueryDto(id, "item", 1000, 1)));
+                result.add(new OrderQueryDto(id, "회원", null, null, null, items));
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<OrderQueryDto> findOrders() {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.item.Book;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 상품이 겹치는 장바구니 주문을 여러 클라이언트가 동시에 넣을 때 처리량
+ *   - 인기 상품 몇개 중에서 장바구니마다 여러개를 무작위 순서로 담는다. (락 순서를 요청 순서대로 잡으면 교착이 나는 조합)
+ *   - 교착/락 타임아웃 없이 모든 주문이 성공하고, 팔린 수량 + 남은 재고 = 처음 재고 여야 한다.
+ *
+ * 커밋된 데이터로 동시에 주문해야 하므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CartOrderBenchmarkTest {
+
+    static final int CLIENTS = 32;
+    static final int CARTS_PER_CLIENT = 20;
+    static final int ITEMS = 6;
+    static final int LINES_PER_CART = 3;
+    static final int STOCK = 100_000;
+
+    @Autowired OrderFacade orderFacade;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 상품이_겹치는_장바구니_동시주문() throws Exception {
+        Long memberId = transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("장바구니-" + System.nanoTime());
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            return member.getId();
+        });
+        List<Long> itemIds = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < ITEMS; i++) {
+                Book book = new Book();
+                book.setName("장바구니상품-" + i);
+                book.setPrice(10000);
+                book.setStockQuantity(STOCK);
+                em.persist(book);
+                ids.add(book.getId());
+            }
+            return ids;
+        });
+
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger failure = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < CARTS_PER_CLIENT; i++) {
+                        List<CartLine> lines = randomCart(itemIds);
+                        try {
+                            orderFacade.order(memberId, lines);
+                            success.incrementAndGet();
+                            sold.addAndGet(lines.stream().mapToInt(CartLine::getCount).sum());
+                        } catch (RuntimeException e) {
+                            failure.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+
+            long remainingStock = transactionTemplate.execute(status -> em.createQuery(
+                    "select sum(i.stockQuantity) from Item i where i.id in :ids", Long.class)
+                    .setParameter("ids", itemIds)
+                    .getSingleResult());
+
+            System.out.printf("[CartOrder] clients=%d carts=%d items=%d linesPerCart=%d success=%d failure=%d elapsed=%,dms (%.0f orders/s)%n",
+                    CLIENTS, CLIENTS * CARTS_PER_CLIENT, ITEMS, LINES_PER_CART, success.get(), failure.get(),
+                    elapsedMillis, success.get() * 1000.0 / elapsedMillis);
+
+            assertEquals("교착이나 락 타임아웃으로 실패한 주문이 없어야 한다.", 0, failure.get());
+            assertEquals("팔린 수량만큼만 재고가 빠져야 한다.", (long) STOCK * ITEMS, sold.get() + remainingStock);
+        } finally {
+            executor.shutdownNow();
+            cleanUp(memberId, itemIds);
+        }
+    }
+
+    /**
+     * 서로 다른 상품 LINES_PER_CART 개를 무작위 순서로
+     */
+    private static List<CartLine> randomCart(List<Long> itemIds) {
+        List<Long> shuffled = new ArrayList<>(itemIds);
+        Collections.shuffle(shuffled, ThreadLocalRandom.current());
+        List<CartLine> lines = new ArrayList<>();
+        for (Long itemId : shuffled.subList(0, LINES_PER_CART)) {
+            lines.add(new CartLine(itemId, ThreadLocalRandom.current().nextInt(1, 4)));
+        }
+        return lines;
+    }
+
+    private void cleanUp(Long memberId, List<Long> itemIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> orderIds = em.createQuery("select o.id from Order o where o.member.id = :memberId", Long.class)
+                    .setParameter("memberId", memberId)
+                    .getResultList();
+            if (!orderIds.isEmpty()) {
+                List<Long> deliveryIds = em.createQuery("select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                        .setParameter("orderIds", orderIds)
+                        .getResultList();
+                em.createQuery("delete from OrderItem oi where oi.order.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Order o where o.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Delivery d where d.id in :deliveryIds")
+                        .setParameter("deliveryIds", deliveryIds)
+                        .executeUpdate();
+            }
+            em.createQuery("delete from Item i where i.id in :itemIds").setParameter("itemIds", itemIds).executeUpdate();
+            em.createQuery("delete from Member m where m.id = :memberId").setParameter("memberId", memberId).executeUpdate();
+        });
+    }
+}
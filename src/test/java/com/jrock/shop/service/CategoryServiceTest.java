@@ -0,0 +1,325 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Category;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.repository.CategoryRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class CategoryServiceTest {
+
+    @Autowired CategoryService categoryService;
+    @Autowired CategoryRepository categoryRepository;
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 경로_하위트리_쿼리한번() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("경로-루트", null);
+        Long child = categoryService.saveCategory("경로-자식", root);
+        Long grandChild = categoryService.saveCategory("경로-손자", child);
+        Long sibling = categoryService.saveCategory("경로-형제", root);
+        em.flush();
+        em.clear();
+
+        //when
+        Category category = categoryRepository.findOne(child);
+        Statistics statistics = statistics();
+        List<Category> subtree = categoryRepository.findSubtree(category);
+
+        //then
+        assertEquals("/" + root + "/" + child + "/" + grandChild + "/", em.find(Category.class, grandChild).getPath());
+        assertEquals(List.of(child, grandChild), subtree.stream().map(Category::getId).collect(toList()));
+        assertEquals("하위 트리는 쿼리 한번", 1, statistics.getPrepareStatementCount());
+        List<Long> rootSubtree = categoryService.findSubtree(root).stream().map(Category::getId).collect(toList());
+        assertEquals("부모가 먼저", root, rootSubtree.get(0));
+        assertEquals(Set.of(root, child, grandChild, sibling), Set.copyOf(rootSubtree));
+
+        String plan = String.valueOf(em.createNativeQuery("explain select c.category_id from category c where c.path like ?")
+                .setParameter(1, category.subtreePathPattern())
+                .getSingleResult());
+        assertTrue(plan, plan.contains("IDX_CATEGORY_PATH"));
+    }
+
+    @Test
+    public void 하위트리_상품() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("상품-루트", null);
+        Long child = categoryService.saveCategory("상품-자식", root);
+        Long other = categoryService.saveCategory("상품-다른루트", null);
+        Long jpa = createBook("하위트리 JPA");
+        Long spring = createBook("하위트리 Spring");
+        Long etc = createBook("하위트리 기타");
+        categoryService.addItem(root, jpa);
+        categoryService.addItem(child, jpa); // 부모, 자식 둘다 있는 상품
+        categoryService.addItem(child, spring);
+        categoryService.addItem(other, etc);
+        em.clear();
+
+        //when
+        Category category = categoryRepository.findOne(root);
+        Statistics statistics = statistics();
+        List<Item> items = categoryRepository.findItemsInSubtree(category);
+
+        //then
+        assertEquals(List.of(jpa, spring), items.stream().map(Item::getId).collect(toList()));
+        assertEquals("category_item 조인 한번", 1, statistics.getPrepareStatementCount());
+        assertEquals(List.of(jpa, spring), categoryService.findItems(child, PageRequest.of(0, 10)).getContent().stream()
+                .map(ItemView::getId).collect(toList()));
+    }
+
+    @Test
+    public void 상품수_하위트리_중복없이() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("상품수-루트", null);
+        Long left = categoryService.saveCategory("상품수-왼쪽", root);
+        Long leaf = categoryService.saveCategory("상품수-왼쪽잎", left);
+        Long right = categoryService.saveCategory("상품수-오른쪽", root);
+        Long a = createBook("상품수 A");
+        Long b = createBook("상품수 B");
+
+        //when, then (루트, 왼쪽, 왼쪽잎, 오른쪽)
+        assertTrue(categoryService.addItem(left, a));
+        assertTrue(categoryService.addItem(leaf, a));
+        assertCounts(List.of(1, 1, 1, 0), root, left, leaf, right);
+
+        assertTrue(categoryService.addItem(right, a));
+        assertTrue(categoryService.addItem(root, b));
+        assertFalse("이미 있는 상품", categoryService.addItem(root, b));
+        assertCounts(List.of(2, 1, 1, 1), root, left, leaf, right);
+
+        assertTrue(categoryService.removeItem(left, a));
+        assertCounts("왼쪽잎에 아직 A 가 있다.", List.of(2, 1, 1, 1), root, left, leaf, right);
+        assertTrue(categoryService.removeItem(leaf, a));
+        assertCounts("오른쪽에 아직 A 가 있다.", List.of(2, 0, 0, 1), root, left, leaf, right);
+        assertTrue(categoryService.removeItem(right, a));
+        assertFalse("없는 상품", categoryService.removeItem(right, a));
+        assertCounts(List.of(1, 0, 0, 0), root, left, leaf, right);
+
+        em.createQuery("update Category c set c.itemCount = 100 where c.id in :ids") // 어긋난 상품 수
+                .setParameter("ids", List.of(root, left))
+                .executeUpdate();
+        categoryService.recountItems();
+        assertCounts(List.of(1, 0, 0, 0), root, left, leaf, right);
+    }
+
+    @Test
+    public void 상품_페이징_쿼리한번() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("페이징-루트", null);
+        Long child = categoryService.saveCategory("페이징-자식", root);
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Long itemId = createBook("페이징 상품" + i);
+            categoryService.addItem(i % 2 == 0 ? root : child, itemId);
+            itemIds.add(itemId);
+        }
+        categoryService.addItem(child, itemIds.get(0)); // 루트, 자식 둘다
+        em.clear();
+
+        //when
+        Category category = categoryRepository.findOne(root);
+        Statistics statistics = statistics();
+        Page<Item> page = categoryRepository.findItemsInSubtree(category, PageRequest.of(1, 2));
+
+        //then
+        assertEquals("페이지 조회 한번, count 쿼리 X", 1, statistics.getPrepareStatementCount());
+        assertEquals(itemIds.subList(2, 4), page.getContent().stream().map(Item::getId).collect(toList()));
+        assertEquals(5, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        assertEquals(itemIds.subList(4, 5), categoryService.findItems(root, PageRequest.of(2, 2)).getContent().stream()
+                .map(ItemView::getId).collect(toList()));
+    }
+
+    @Test
+    public void 없는_카테고리() throws Exception {
+        assertIllegalArgument(() -> categoryService.saveCategory("없는-부모", -1L));
+        assertIllegalArgument(() -> categoryService.findSubtree(-1L));
+        assertIllegalArgument(() -> categoryService.findItems(-1L, PageRequest.of(0, 10)));
+        assertIllegalArgument(() -> categoryService.addItem(-1L, -1L));
+        assertIllegalArgument(() -> categoryService.removeItem(-1L, -1L));
+    }
+
+    @Test
+    public void 상품_페이지_정렬() throws Exception {
+        //given
+        Long root = categoryService.saveCategory("정렬-루트", null);
+        Long cheap = createBook("정렬 상품", 1000);
+        Long expensive = createBook("정렬 상품", 3000);
+        Long middle = createBook("정렬 상품", 2000);
+        Long samePrice = createBook("정렬 상품", 2000);
+        for (Long itemId : List.of(cheap, expensive, middle, samePrice)) {
+            categoryService.addItem(root, itemId);
+        }
+
+        //when, then 같은 가격은 id 순
+        assertEquals(List.of(expensive, middle), itemIds(root, PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "price"))));
+        assertEquals(List.of(samePrice, cheap), itemIds(root, PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "price"))));
+        assertEquals(List.of(cheap, expensive, middle, samePrice), itemIds(root, PageRequest.of(0, 10)));
+        try {
+            itemIds(root, PageRequest.of(0, 10, Sort.by("version")));
+            fail("정렬할 수 없는 속성");
+        } catch (InvalidDataAccessApiUsageException expected) {
+        }
+    }
+
+    private List<Long> itemIds(Long categoryId, Pageable pageable) {
+        return categoryService.findItems(categoryId, pageable).getContent().stream().map(ItemView::getId).collect(toList());
+    }
+
+    @Test
+    public void 경로가_없는_카테고리는_채운다() throws Exception {
+        //given 경로 컬럼이 생기기 전에 저장된 카테고리 (CategoryRepository.save 를 거치지 않는다)
+        Category root = new Category();
+        root.setName("채우기-루트");
+        Category child = new Category();
+        child.setName("채우기-자식");
+        Category grandChild = new Category();
+        grandChild.setName("채우기-손자");
+        root.addChildCategory(child);
+        child.addChildCategory(grandChild);
+        em.persist(root);
+        em.persist(child);
+        em.persist(grandChild);
+        try {
+            grandChild.subtreePathPattern();
+            fail("경로가 없으면 \"null%\" 로 검색하지 않아야 한다.");
+        } catch (IllegalStateException expected) {
+        }
+
+        //when
+        int assigned = categoryService.assignMissingPaths();
+
+        //then
+        assertEquals(3, assigned);
+        assertEquals("/" + root.getId() + "/" + child.getId() + "/" + grandChild.getId() + "/", grandChild.getPath());
+        assertEquals(List.of(child.getId(), grandChild.getId()),
+                categoryService.findSubtree(child.getId()).stream().map(Category::getId).collect(toList()));
+        assertEquals(0, categoryService.assignMissingPaths());
+    }
+
+    private void assertIllegalArgument(Runnable action) {
+        try {
+            action.run();
+            fail("IllegalArgumentException 이 발생해야 한다.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 다른_부모로_옮기기는_안된다() throws Exception {
+        Long first = categoryService.saveCategory("이동-첫번째", null);
+        Long second = categoryService.saveCategory("이동-두번째", null);
+        Long child = categoryService.saveCategory("이동-자식", first);
+
+        categoryRepository.findOne(second).addChildCategory(categoryRepository.findOne(child));
+    }
+
+    /**
+     * 트리 캐시는 트랜잭션이 끝난 후에 버리므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 트리_캐시와_무효화() throws Exception {
+        Long root = categoryService.saveCategory("트리-루트", null);
+        try {
+            //given
+            Long b = categoryService.saveCategory("트리-나", root);
+            Long a = categoryService.saveCategory("트리-가", root);
+            Long leaf = categoryService.saveCategory("트리-잎", a);
+            CategoryTree tree = categoryService.getTree();
+            assertSame("바뀌기 전까지는 같은 스냅샷", tree, categoryService.getTree());
+
+            //when
+            Long added = categoryService.saveCategory("트리-추가", b);
+            CategoryTree changed = categoryService.getTree();
+
+            //then
+            assertNotSame(tree, changed);
+            assertTrue(changed.getVersion() > tree.getVersion());
+            assertNull(tree.find(added));
+
+            CategoryTree.Node rootNode = changed.find(root);
+            assertEquals("자식은 이름 순", List.of(a, b), rootNode.getChildren().stream().map(CategoryTree.Node::getId).collect(toList()));
+            assertEquals(leaf, rootNode.getChildren().get(0).getChildren().get(0).getId());
+            assertEquals(added, changed.find(b).getChildren().get(0).getId());
+            assertEquals(2, changed.find(leaf).getDepth());
+            assertEquals(a, changed.find(leaf).getParentId());
+            assertTrue(changed.getRoots().contains(rootNode));
+
+            categoryService.updateName(leaf, "트리-잎-변경");
+            assertEquals("트리-잎-변경", categoryService.getTree().find(leaf).getName());
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                String path = em.find(Category.class, root).subtreePathPattern();
+                em.createQuery("update Category c set c.parent = null where c.path like :path").setParameter("path", path).executeUpdate();
+                em.createQuery("delete from Category c where c.path like :path").setParameter("path", path).executeUpdate();
+            });
+            categoryService.invalidateTreeAfterCompletion();
+        }
+    }
+
+    private Long createBook(String name) {
+        return createBook(name, 10000);
+    }
+
+    private Long createBook(String name, int price) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book.getId();
+    }
+
+    private void assertCounts(List<Integer> expected, Long... categoryIds) {
+        assertCounts(null, expected, categoryIds);
+    }
+
+    /**
+     * 벌크 UPDATE 로 바뀌므로 영속성 컨텍스트를 비우고 다시 읽는다.
+     */
+    private void assertCounts(String message, List<Integer> expected, Long... categoryIds) {
+        em.flush();
+        em.clear();
+        List<Integer> counts = new ArrayList<>();
+        for (Long categoryId : categoryIds) {
+            counts.add(em.find(Category.class, categoryId).getItemCount());
+        }
+        assertEquals(message, expected, counts);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
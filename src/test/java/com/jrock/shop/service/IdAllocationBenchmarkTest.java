@@ -0,0 +1,143 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Delivery;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderItem;
+import com.jrock.shop.domain.item.Book;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * id 할당 크기(shop.id.allocation-size) 별 주문 INSERT 처리량 비교
+ *   - allocation-size 1 : persist 할 때마다 시퀀스 호출 (기존 @GeneratedValue 와 같은 왕복 수)
+ *   - allocation-size 50 : 시퀀스 한번에 id 50개 (pooled-lo)
+ *
+ * 설정이 다르면 스프링 컨텍스트가 따로 뜨므로 메모리 DB 이름도 따로 준다. (다른 테스트의 jdbc:h2:mem:shop 을 다시 만들지 않도록)
+ * SQL 로그 출력이 시간을 대부분 잡아먹으므로 끄고, JIT 워밍업으로 한번 돌린 뒤에 잰다.
+ * statements 는 INSERT + 시퀀스 호출 수다. (아웃박스, 주문 요약 INSERT 도 같이 세어진다)
+ * inserts 는 주문 + 배송 + 주문상품만 센다. 주문할 때 같이 쌓는 아웃박스 이벤트, 주문 요약은 id 할당과 상관없으므로 뺀다.
+ * batches 는 주문 + 배송 + 주문상품 INSERT 가 나간 JDBC 배치(executeBatch) 수다. (JdbcBatchCounter)
+ *   테스트 설정(src/test/resources/application.yml)이 메인 설정을 대신하므로 배치 설정을 여기서도 직접 준다.
+ *   시퀀스 호출은 persist 시점, INSERT 는 flush 시점이라 allocation-size 와 상관없이 batch_size 단위로 묶여야 한다.
+ */
+public class IdAllocationBenchmarkTest {
+
+    static final int LINES = 2000;
+    static final int BATCH_SIZE = 100;
+
+    @RunWith(SpringRunner.class)
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:id-allocation-1",
+            "spring.jpa.properties.shop.id.allocation-size=1",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=" + BATCH_SIZE,
+            "spring.jpa.properties.hibernate.order_inserts=true",
+            "spring.jpa.properties.hibernate.order_updates=true",
+            "logging.level.org.hibernate.SQL=info"})
+    public static class AllocationSize1 extends Benchmark {
+        @Test
+        public void 주문_INSERT_처리량() {
+            run(1);
+        }
+    }
+
+    @RunWith(SpringRunner.class)
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:id-allocation-50",
+            "spring.jpa.properties.shop.id.allocation-size=50",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=" + BATCH_SIZE,
+            "spring.jpa.properties.hibernate.order_inserts=true",
+            "spring.jpa.properties.hibernate.order_updates=true",
+            "logging.level.org.hibernate.SQL=info"})
+    public static class AllocationSize50 extends Benchmark {
+        @Test
+        public void 주문_INSERT_처리량() {
+            run(50);
+        }
+    }
+
+    abstract static class Benchmark {
+
+        @Autowired OrderService orderService;
+        @Autowired EntityManager em;
+        @Autowired EntityManagerFactory emf;
+        @Autowired TransactionTemplate transactionTemplate;
+        @Autowired JdbcBatchCounter jdbcBatchCounter;
+
+        void run(int allocationSize) {
+            order(allocationSize, "warmup");
+            order(allocationSize, "measure");
+        }
+
+        private void order(int allocationSize, String phase) {
+            Long[] ids = transactionTemplate.execute(status -> {
+                Member member = new Member();
+                member.setName("id할당-" + allocationSize + "-" + phase);
+                member.setAddress(new Address("서울", "강가", "123-123"));
+                em.persist(member);
+
+                Book book = new Book();
+                book.setName("id할당-" + allocationSize);
+                book.setPrice(10000);
+                book.setStockQuantity(LINES);
+                em.persist(book);
+                return new Long[]{member.getId(), book.getId()};
+            });
+
+            List<OrderLine> lines = new ArrayList<>(LINES);
+            for (int i = 0; i < LINES; i++) {
+                OrderLine line = new OrderLine();
+                line.setMemberId(ids[0]);
+                line.setItemId(ids[1]);
+                line.setCount(1);
+                lines.add(line);
+            }
+
+            Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+            jdbcBatchCounter.start();
+
+            long startedAt = System.nanoTime();
+            List<OrderLineResult> results = transactionTemplate.execute(status ->
+                    orderService.orderAll(lines, StockMode.DIRTY_CHECKING));
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+            jdbcBatchCounter.stop();
+
+            long inserts = insertCount(statistics, Order.class) + insertCount(statistics, Delivery.class)
+                    + insertCount(statistics, OrderItem.class);
+            long batches = jdbcBatchCounter.batches("insert orders") + jdbcBatchCounter.batches("insert delivery")
+                    + jdbcBatchCounter.batches("insert order_item");
+            if (phase.equals("measure")) {
+                System.out.printf("[IdAllocation] allocationSize=%-3d orders=%d inserts=%d batches=%d statements=%d elapsed=%,dms (%.0f inserts/s) [%s]%n",
+                        allocationSize, LINES, inserts, batches, statistics.getPrepareStatementCount(), elapsedMillis,
+                        inserts * 1000.0 / elapsedMillis, jdbcBatchCounter);
+            }
+
+            assertTrue(results.stream().allMatch(OrderLineResult::isSuccess));
+            assertEquals(LINES * 3L, inserts);
+            for (String insert : new String[]{"insert orders", "insert delivery", "insert order_item"}) {
+                assertEquals(insert + " 은 모두 배치로 나가야 한다.", LINES, jdbcBatchCounter.statements(insert));
+                assertEquals(insert + " 은 batch_size 단위로 묶여야 한다.", (LINES + BATCH_SIZE - 1) / BATCH_SIZE,
+                        jdbcBatchCounter.batches(insert));
+            }
+        }
+
+        private long insertCount(Statistics statistics, Class<?> entityClass) {
+            return statistics.getEntityStatistics(entityClass.getName()).getInsertCount();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.jrock.shop.service;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+public class ItemCatalogSnapshotTest {
+
+    @Test
+    public void 바뀐_상품만_교체() throws Exception {
+        //given
+        ItemView jpa = new ItemView(1L, "JPA", 10000, 10);
+        ItemView spring = new ItemView(2L, "Spring", 20000, 20);
+        ItemCatalogSnapshot snapshot = new ItemCatalogSnapshot(1, List.of(jpa, spring));
+
+        //when
+        ItemCatalogSnapshot changed = snapshot.with(2, List.of(
+                new ItemView(4L, "새 상품2", 1000, 1),
+                new ItemView(1L, "JPA", 10000, 7),
+                new ItemView(3L, "새 상품1", 1000, 1)));
+
+        //then
+        assertEquals(2, changed.getVersion());
+        assertEquals(List.of(1L, 2L, 3L, 4L), changed.getItems().stream().map(ItemView::getId).collect(toList()));
+        assertEquals(7, changed.getItemsById().get(1L).getStockQuantity());
+        assertSame("안 바뀐 상품은 그대로 같이 쓴다.", spring, changed.getItemsById().get(2L));
+        assertEquals("이전 스냅샷은 그대로", 10, snapshot.getItemsById().get(1L).getStockQuantity());
+    }
+
+    @Test
+    public void 페이지_범위_밖() throws Exception {
+        ItemCatalogSnapshot snapshot = new ItemCatalogSnapshot(1, List.of(
+                new ItemView(1L, "JPA", 10000, 10),
+                new ItemView(2L, "Spring", 20000, 20),
+                new ItemView(3L, "Querydsl", 30000, 30)));
+
+        assertEquals(List.of(3L), snapshot.page(1, 2).stream().map(ItemView::getId).collect(toList()));
+        assertEquals("음수 page 는 첫 페이지", 2, snapshot.page(-1, 2).size());
+        assertTrue(snapshot.page(0, -1).isEmpty());
+        assertTrue(snapshot.page(0, 0).isEmpty());
+        assertTrue("page * size 가 int 를 넘어도", snapshot.page(Integer.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+        assertTrue(snapshot.page(5, 2).isEmpty());
+    }
+}
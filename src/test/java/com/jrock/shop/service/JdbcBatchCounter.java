@@ -0,0 +1,81 @@
+package com.jrock.shop.service;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 테이블별 JDBC 배치 실행(executeBatch) 횟수와 배치로 묶여 나간 문장 수를 센다.
+ *   - p6spy 가 JdbcEventListener 빈을 등록한다. 테스트 소스도 컴포넌트 스캔 대상이라 모든 테스트 컨텍스트에 뜬다.
+ *     (@TestConfiguration 으로 테스트마다 붙이면 컨텍스트가 따로 떠서 같은 메모리 DB 를 다시 만든다)
+ *   - start ~ stop 사이에만 센다. 배치 없이 executeUpdate 로 나간 문장은 세지 않는다.
+ */
+@Component
+public class JdbcBatchCounter extends SimpleJdbcEventListener {
+
+    private volatile boolean counting;
+    private final Map<String, Count> counts = new ConcurrentHashMap<>(); // "insert orders", "update item"
+
+    public void start() {
+        counts.clear();
+        counting = true;
+    }
+
+    public void stop() {
+        counting = false;
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos,
+                                    int[] updateCounts, SQLException e) {
+        if (counting && e == null) {
+            Count count = counts.computeIfAbsent(key(statementInformation.getSql()), k -> new Count());
+            count.batches.increment();
+            count.statements.add(updateCounts.length);
+        }
+    }
+
+    /**
+     * @param statement "insert orders", "update item" 처럼 문장 종류와 테이블
+     */
+    public long batches(String statement) {
+        Count count = counts.get(statement);
+        return count == null ? 0 : count.batches.sum();
+    }
+
+    public long statements(String statement) {
+        Count count = counts.get(statement);
+        return count == null ? 0 : count.statements.sum();
+    }
+
+    public long totalBatches() {
+        return counts.values().stream().mapToLong(count -> count.batches.sum()).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        counts.forEach((statement, count) -> out.append(out.length() == 0 ? "" : ", ")
+                .append(statement).append('=').append(count.statements.sum()).append('/').append(count.batches.sum()));
+        return out.toString();
+    }
+
+    private static String key(String sql) {
+        String[] words = sql.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (words[0].equals("insert") || words[0].equals("delete")) {
+            return words[0] + " " + words[2]; // insert into x, delete from x
+        }
+        return words[0] + " " + words[1]; // update x
+    }
+
+    private static class Count {
+        final LongAdder batches = new LongAdder();
+        final LongAdder statements = new LongAdder();
+    }
+}
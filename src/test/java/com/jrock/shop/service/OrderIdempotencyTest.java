@@ -0,0 +1,220 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.exception.IdempotencyKeyMismatchException;
+import com.jrock.shop.repository.IdempotencyKeyRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderIdempotencyTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderFacade orderFacade;
+    @Autowired OrderService orderService;
+    @Autowired OrderIdempotency orderIdempotency;
+    @Autowired IdempotencyKeyRepository idempotencyKeyRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 같은_키로_재시도하면_처음_주문을_돌려준다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+        long memoryHitsBefore = orderIdempotency.stats().getMemoryHits();
+
+        //when
+        Long first = orderFacade.order(key, member.getId(), book.getId(), 2);
+        Long retried = orderFacade.order(key, member.getId(), book.getId(), 2);
+
+        //then
+        assertEquals(first, retried);
+        assertEquals(1, orderIdempotency.stats().getMemoryHits() - memoryHitsBefore);
+        assertEquals("재고는 한번만 빠져야 한다.", 8, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals("주문은 하나만 생겨야 한다.", 1L, (long) em.createQuery("select count(o) from Order o where o.member = :member", Long.class)
+                .setParameter("member", member)
+                .getSingleResult());
+    }
+
+    @Test
+    public void 메모리에_없으면_테이블에서_찾는다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+        Long first = orderFacade.order(key, member.getId(), book.getId(), 2);
+
+        // 재시작한 서버 (메모리가 비어있다)
+        OrderIdempotency restarted = new OrderIdempotency(idempotencyKeyRepository, transactionManager, 60, 100, 60_000);
+
+        //when
+        String requestHash = OrderIdempotency.requestHash(member.getId(), List.of(new CartLine(book.getId(), 2)));
+        Long retried = restarted.execute(key, requestHash, () -> {
+            fail("이미 처리한 키는 주문하지 않아야 한다.");
+            return null;
+        });
+
+        //then
+        assertEquals(first, retried);
+        assertEquals(1, restarted.stats().getTableHits());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void 같은_키로_다른_요청이면_거절한다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        Book other = createBook(10);
+        String key = UUID.randomUUID().toString();
+        orderFacade.order(key, member.getId(), book.getId(), 2);
+
+        //when 수량, 상품이 다른 요청
+        assertMismatch(() -> orderFacade.order(key, member.getId(), book.getId(), 3));
+        assertMismatch(() -> orderFacade.order(key, member.getId(), List.of(new CartLine(other.getId(), 2))));
+
+        // 재시작한 서버는 테이블에 저장된 해시와 비교한다.
+        OrderIdempotency restarted = new OrderIdempotency(idempotencyKeyRepository, transactionManager, 60, 100, 60_000);
+        String otherHash = OrderIdempotency.requestHash(member.getId(), List.of(new CartLine(other.getId(), 2)));
+        assertMismatch(() -> restarted.execute(key, otherHash, () -> {
+            fail("다른 요청은 주문하지 않아야 한다.");
+            return null;
+        }));
+        restarted.shutdown();
+
+        //then
+        assertEquals("재고는 처음 주문만큼만 빠져야 한다.", 8, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals(10, em.find(Book.class, other.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 줄_순서만_다른_장바구니는_같은_요청() throws Exception {
+        List<CartLine> lines = List.of(new CartLine(1L, 2), new CartLine(2L, 1));
+        List<CartLine> reordered = List.of(new CartLine(2L, 1), new CartLine(1L, 2));
+
+        assertEquals(OrderIdempotency.requestHash(1L, lines), OrderIdempotency.requestHash(1L, reordered));
+        assertNotEquals("회원이 다르면 다른 요청", OrderIdempotency.requestHash(1L, lines), OrderIdempotency.requestHash(2L, lines));
+    }
+
+    private void assertMismatch(Runnable request) {
+        try {
+            request.run();
+            fail("IdempotencyKeyMismatchException 이 발생해야 한다.");
+        } catch (IdempotencyKeyMismatchException expected) {
+        }
+    }
+
+    @Test
+    public void 만료된_키는_지워지기_전에_다시_써도_새_주문() throws Exception {
+        //given window 가 지났지만 아직 지워지지 않은 키
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+        em.createNativeQuery("insert into idempotency_key (idempotency_key, request_hash, order_id, created_at)" +
+                        " values (?, ?, ?, dateadd('DAY', -2, current_timestamp))")
+                .setParameter(1, key)
+                .setParameter(2, "expired")
+                .setParameter(3, -1L)
+                .executeUpdate();
+
+        //when
+        Long orderId = orderFacade.order(key, member.getId(), book.getId(), 2);
+
+        //then
+        assertNotEquals(Long.valueOf(-1L), orderId);
+        assertEquals(8, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals(orderId, orderFacade.order(key, member.getId(), book.getId(), 2));
+    }
+
+    @Test
+    public void 다른_키는_새_주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+
+        //when
+        Long first = orderFacade.order(UUID.randomUUID().toString(), member.getId(), book.getId(), 2);
+        Long second = orderFacade.order(UUID.randomUUID().toString(), member.getId(), book.getId(), 2);
+
+        //then
+        assertNotEquals(first, second);
+        assertEquals(6, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 일괄_주문도_줄마다_키로_중복을_막는다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+
+        //when
+        List<OrderLineResult> first = orderService.orderAll(List.of(
+                new OrderLine(member.getId(), book.getId(), 2, key),
+                new OrderLine(member.getId(), book.getId(), 2, key)), StockMode.DIRTY_CHECKING); // 같은 묶음에 같은 키
+        List<OrderLineResult> retried = orderService.orderAll(List.of(
+                new OrderLine(member.getId(), book.getId(), 2, key),
+                new OrderLine(member.getId(), book.getId(), 1, null)), StockMode.DIRTY_CHECKING);
+
+        //then
+        Long orderId = first.get(0).getOrderId();
+        assertEquals(orderId, first.get(1).getOrderId());
+        assertEquals(orderId, retried.get(0).getOrderId());
+        assertNotEquals(orderId, retried.get(1).getOrderId());
+        assertEquals("키가 같은 줄은 재고가 한번만 빠져야 한다.", 7, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals("단건 주문도 일괄 주문이 저장한 키를 본다.", orderId, orderFacade.order(key, member.getId(), book.getId(), 2));
+    }
+
+    @Test
+    public void 일괄_주문에서_같은_키로_다른_요청이면_그_줄만_실패() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+        orderFacade.order(key, member.getId(), book.getId(), 2);
+
+        //when
+        List<OrderLineResult> results = orderService.orderAll(List.of(
+                new OrderLine(member.getId(), book.getId(), 3, key),
+                new OrderLine(member.getId(), book.getId(), 1, UUID.randomUUID().toString())), StockMode.DIRTY_CHECKING);
+
+        //then
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getCause() instanceof IdempotencyKeyMismatchException);
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(7, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    private Book createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("중복주문-" + System.nanoTime());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
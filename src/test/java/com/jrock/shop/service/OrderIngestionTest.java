@@ -0,0 +1,178 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.exception.NotEnoughStockException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 비동기 주문 접수 (group commit)
+ * 워커 스레드가 커밋된 데이터로 주문해야 하므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderIngestionTest {
+
+    static final int CLIENTS = 32;
+    static final int ORDERS_PER_CLIENT = 20;
+
+    @Autowired OrderIngestion orderIngestion;
+    @Autowired OrderFacade orderFacade;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    Long memberId;
+    List<Long> itemIds = new ArrayList<>();
+
+    @Test
+    public void 동시_접수_묶음_커밋() throws Exception {
+        //given
+        memberId = createMember();
+        Long syncItemId = createBook(CLIENTS * ORDERS_PER_CLIENT);
+        Long asyncItemId = createBook(CLIENTS * ORDERS_PER_CLIENT);
+        long batchesBefore = orderIngestion.stats().getBatches();
+
+        //when
+        long syncMillis = run(() -> CompletableFuture.completedFuture(orderFacade.order(memberId, syncItemId, 1)));
+        long asyncMillis = run(() -> orderIngestion.submit(memberId, asyncItemId, 1));
+
+        //then
+        OrderIngestion.Stats stats = orderIngestion.stats();
+        System.out.printf("[OrderIngestion] clients=%d orders=%d sync=%,dms async=%,dms batches=%d avgBatchSize=%.1f queueWait(avg/max)=%d/%dus commit(avg/max)=%d/%dus fallbacks=%d%n",
+                CLIENTS, CLIENTS * ORDERS_PER_CLIENT, syncMillis, asyncMillis, stats.getBatches() - batchesBefore,
+                stats.getAvgBatchSize(), stats.getQueueWait().getAvgMicros(), stats.getQueueWait().getMaxMicros(),
+                stats.getCommit().getAvgMicros(), stats.getCommit().getMaxMicros(), stats.getFallbacks());
+
+        assertEquals("모든 주문이 커밋되어야 한다.", 0, stockOf(asyncItemId));
+        assertTrue("요청보다 적은 수의 트랜잭션으로 묶여야 한다.", stats.getBatches() - batchesBefore < CLIENTS * ORDERS_PER_CLIENT);
+    }
+
+    @Test
+    public void 재고부족_요청만_실패() throws Exception {
+        //given
+        memberId = createMember();
+        Long itemId = createBook(1);
+
+        //when
+        CompletableFuture<Long> first = orderIngestion.submit(memberId, itemId, 1);
+        CompletableFuture<Long> second = orderIngestion.submit(memberId, itemId, 1);
+
+        //then
+        List<Throwable> errors = new ArrayList<>();
+        int success = 0;
+        for (CompletableFuture<Long> future : List.of(first, second)) {
+            try {
+                assertNotNull(future.get(10, TimeUnit.SECONDS));
+                success++;
+            } catch (ExecutionException e) {
+                errors.add(e.getCause());
+            }
+        }
+        assertEquals(1, success);
+        assertEquals(1, errors.size());
+        assertTrue("단건 주문과 같은 예외로 실패해야 한다.", errors.get(0) instanceof NotEnoughStockException);
+        assertEquals(0, stockOf(itemId));
+    }
+
+    private long run(OrderCall call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long startedAt = System.nanoTime();
+            List<Future<List<CompletableFuture<Long>>>> clients = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.add(executor.submit(() -> {
+                    List<CompletableFuture<Long>> futures = new ArrayList<>();
+                    for (int i = 0; i < ORDERS_PER_CLIENT; i++) {
+                        futures.add(call.order());
+                        futures.get(futures.size() - 1).get(10, TimeUnit.SECONDS); // 클라이언트는 응답을 받고 다음 요청
+                    }
+                    return futures;
+                }));
+            }
+            for (Future<List<CompletableFuture<Long>>> client : clients) {
+                for (CompletableFuture<Long> future : client.get()) {
+                    assertNotNull(future.get());
+                }
+            }
+            return (System.nanoTime() - startedAt) / 1_000_000;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface OrderCall {
+        CompletableFuture<Long> order();
+    }
+
+    private Long createMember() {
+        return transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("비동기주문-" + System.nanoTime());
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            return member.getId();
+        });
+    }
+
+    private Long createBook(int stockQuantity) {
+        Long itemId = transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("비동기주문상품");
+            book.setPrice(10000);
+            book.setStockQuantity(stockQuantity);
+            em.persist(book);
+            return book.getId();
+        });
+        itemIds.add(itemId);
+        return itemId;
+    }
+
+    private int stockOf(Long itemId) {
+        return transactionTemplate.execute(status -> em.find(Item.class, itemId).getStockQuantity());
+    }
+
+    @After
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> orderIds = em.createQuery("select o.id from Order o where o.member.id = :memberId", Long.class)
+                    .setParameter("memberId", memberId)
+                    .getResultList();
+            if (!orderIds.isEmpty()) {
+                List<Long> deliveryIds = em.createQuery("select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                        .setParameter("orderIds", orderIds)
+                        .getResultList();
+                em.createQuery("delete from OrderItem oi where oi.order.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Order o where o.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Delivery d where d.id in :deliveryIds")
+                        .setParameter("deliveryIds", deliveryIds)
+                        .executeUpdate();
+            }
+            em.createQuery("delete from Item i where i.id in :itemIds").setParameter("itemIds", itemIds).executeUpdate();
+            em.createQuery("delete from Member m where m.id = :memberId").setParameter("memberId", memberId).executeUpdate();
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package com.jrock.shop.service;
 
 import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.DeliveryStatus;
 import com.jrock.shop.domain.Member;
 import com.jrock.shop.domain.Order;
 import com.jrock.shop.domain.OrderStatus;
@@ -16,6 +17,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -39,6 +43,9 @@ public class OrderServiceTest {
     @Autowired
     OrderRepository orderRepository;
 
+    @Autowired
+    JdbcBatchCounter jdbcBatchCounter;
+
     @Test
     public void 상품주문() throws Exception {
         //given
@@ -95,6 +102,106 @@ public class OrderServiceTest {
         assertEquals("주문이 취소된 상품은 재고가 증가해야 한다.", 10, item.getStockQuantity());
     }
 
+    @Test
+    public void 일괄주문_줄별_결과() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        List<OrderLine> lines = Arrays.asList(
+                new OrderLine(member.getId(), book.getId(), 3),
+                new OrderLine(member.getId(), book.getId(), 100), // 재고 부족
+                new OrderLine(-1L, book.getId(), 1), // 없는 회원
+                new OrderLine(member.getId(), book.getId(), 2));
+
+        //when
+        List<OrderLineResult> results = orderService.orderAll(lines, StockMode.CONDITIONAL_UPDATE);
+
+        //then
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse("재고 부족인 줄만 실패", results.get(1).isSuccess());
+        assertFalse("없는 회원인 줄만 실패", results.get(2).isSuccess());
+        assertTrue("실패한 줄이 있어도 나머지는 주문된다.", results.get(3).isSuccess());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(results.get(3).getOrderId()).getStatus());
+        assertEquals("성공한 줄만큼 재고가 줄어야 한다.", 5, book.getStockQuantity());
+    }
+
+    @Test
+    public void 일괄주문_INSERT_는_배치로_나간다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 250);
+        em.flush();
+
+        List<OrderLine> lines = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            lines.add(new OrderLine(member.getId(), book.getId(), 1));
+        }
+
+        //when
+        jdbcBatchCounter.start();
+        List<OrderLineResult> results = orderService.orderAll(lines, StockMode.DIRTY_CHECKING);
+        em.flush(); // 커밋 대신 (테스트는 롤백)
+        jdbcBatchCounter.stop();
+
+        //then
+        assertTrue(results.stream().allMatch(OrderLineResult::isSuccess));
+        for (String insert : new String[]{"insert orders", "insert delivery", "insert order_item"}) {
+            assertEquals(insert + " 은 모두 배치로 나가야 한다. " + jdbcBatchCounter, 250, jdbcBatchCounter.statements(insert));
+            assertEquals(insert + " 은 batch_size(100) 단위로 묶여야 한다. " + jdbcBatchCounter, 3, jdbcBatchCounter.batches(insert));
+        }
+    }
+
+    @Test
+    public void 여러상품_주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 SPRING", 20000, 10);
+
+        List<CartLine> lines = Arrays.asList(
+                new CartLine(book2.getId(), 3), // id 역순으로 요청해도 락은 오름차순
+                new CartLine(book1.getId(), 2));
+
+        //when
+        Long orderId = orderService.order(member.getId(), lines);
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+        assertEquals("주문 하나에 주문상품이 줄 수만큼 있어야 한다.", 2, getOrder.getOrderItems().size());
+        assertEquals(20000 * 3 + 10000 * 2, getOrder.getTotalPrice());
+        assertEquals(8, book1.getStockQuantity());
+        assertEquals(7, book2.getStockQuantity());
+    }
+
+    @Test
+    public void 일괄취소_배송완료_이미취소_건너뜀() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 SPRING", 20000, 10);
+
+        Long orderId1 = orderService.order(member.getId(), Arrays.asList(new CartLine(book1.getId(), 2), new CartLine(book2.getId(), 1)));
+        Long orderId2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long completedId = orderService.order(member.getId(), book1.getId(), 1);
+        Long canceledId = orderService.order(member.getId(), book2.getId(), 4);
+        orderRepository.findOne(completedId).getDelivery().setStatus(DeliveryStatus.COMP);
+        orderService.cancelOrder(canceledId);
+
+        //when
+        BulkCancelResult result = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, completedId, canceledId, -1L));
+
+        //then
+        assertEquals(5, result.getRequestedCount());
+        assertEquals(Arrays.asList(orderId1, orderId2), result.getCanceledOrderIds());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals("배송완료된 주문은 취소되지 않는다.", OrderStatus.ORDER, orderRepository.findOne(completedId).getStatus());
+        assertEquals("배송완료된 주문 수량만 빠져 있어야 한다.", 9, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals("이미 취소된 주문은 두번 원복하지 않는다.", 10, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
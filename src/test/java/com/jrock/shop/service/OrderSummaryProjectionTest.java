@@ -0,0 +1,158 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.domain.OrderSummary;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.repository.order.summary.OrderSummaryDto;
+import com.jrock.shop.repository.order.summary.OrderSummaryRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+/**
+ * 주문 목록 읽기 모델 (order_summary)
+ * rebuild 를 여러 chunk 로 나눠서 돌리려고 chunk 크기를 줄인다. 설정이 달라 컨텍스트가 따로 뜨므로 메모리 DB 도 따로 쓴다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:order-summary",
+        "shop.order-summary.rebuild-chunk-size=2"})
+@Transactional
+public class OrderSummaryProjectionTest {
+
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired OrderSummaryProjection orderSummaryProjection;
+    @Autowired OrderSummaryRepository orderSummaryRepository;
+    @Autowired EntityManager em;
+
+    @Test
+    public void 주문_취소_회원명변경_반영() throws Exception {
+        //given
+        Member member = createMember("요약회원");
+        Book book = createBook(10000, 10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        Long canceledId = orderService.order(member.getId(), List.of(new CartLine(book.getId(), 1), new CartLine(book.getId(), 3)));
+        orderService.cancelOrder(canceledId);
+        memberService.update(member.getId(), "요약회원-변경");
+        em.flush();
+        em.clear();
+
+        //then
+        OrderSummary ordered = em.find(OrderSummary.class, orderId);
+        assertEquals(OrderStatus.ORDER, ordered.getStatus());
+        assertEquals("요약회원-변경", ordered.getMemberName());
+        assertEquals(20000, ordered.getTotalPrice());
+        assertEquals("서울", ordered.getAddress().getCity());
+
+        OrderSummary canceled = em.find(OrderSummary.class, canceledId);
+        assertEquals(OrderStatus.CANCEL, canceled.getStatus());
+        assertEquals("요약회원-변경", canceled.getMemberName());
+        assertEquals(40000, canceled.getTotalPrice());
+    }
+
+    @Test
+    public void 일괄취소_반영() throws Exception {
+        //given
+        Member member = createMember("요약일괄취소");
+        Book book = createBook(10000, 10);
+        Long first = orderService.order(member.getId(), book.getId(), 1);
+        Long second = orderService.order(member.getId(), book.getId(), 1);
+
+        //when
+        orderService.cancelOrders(List.of(first, second));
+
+        //then
+        assertEquals(OrderStatus.CANCEL, em.find(OrderSummary.class, first).getStatus());
+        assertEquals(OrderStatus.CANCEL, em.find(OrderSummary.class, second).getStatus());
+    }
+
+    @Test
+    public void 다시만들기_원본조인과_같다() throws Exception {
+        //given
+        Member member = createMember("요약다시만들기");
+        Book book = createBook(10000, 10);
+        for (int i = 0; i < 5; i++) {
+            orderService.order(member.getId(), book.getId(), 1);
+        }
+        orderService.cancelOrder(orderService.order(member.getId(), book.getId(), 2));
+        List<OrderSummaryDto> before = orderSummaryRepository.findSummaries(0, 1000);
+        em.createQuery("delete from OrderSummary").executeUpdate(); // 백필 전 상태
+        em.createQuery("update Member m set m.name = :name where m.id = :id") // 읽기 모델을 거치지 않은 변경
+                .setParameter("name", "요약다시만들기-변경")
+                .setParameter("id", member.getId())
+                .executeUpdate();
+
+        //when
+        OrderSummaryProjection.RebuildResult result = orderSummaryProjection.rebuild();
+
+        //then
+        List<OrderSummaryDto> after = orderSummaryRepository.findSummaries(0, 1000);
+        assertEquals(before.size(), result.getRows());
+        assertTrue("chunk 크기 2 로 나눠서 만든다.", result.getChunks() >= 3);
+        assertEquals(before.stream().map(OrderSummaryDto::getOrderId).collect(toList()),
+                after.stream().map(OrderSummaryDto::getOrderId).collect(toList()));
+        for (int i = 0; i < before.size(); i++) {
+            OrderSummaryDto expected = before.get(i);
+            OrderSummaryDto actual = after.get(i);
+            assertEquals(expected.getOrderStatus(), actual.getOrderStatus());
+            assertEquals(expected.getTotalPrice(), actual.getTotalPrice());
+            assertEquals(expected.getAddress().getZipcode(), actual.getAddress().getZipcode());
+        }
+        assertEquals("원본 테이블의 현재 회원명으로 만든다.", 6,
+                after.stream().filter(s -> s.getName().equals("요약다시만들기-변경")).count());
+    }
+
+    @Test
+    public void 다시만들기_마지막_구간_뒤에_들어온_주문은_남긴다() throws Exception {
+        //given 마지막 구간을 읽은 뒤에 들어온 주문과, 주문이 지워진 요약 행
+        Member member = createMember("요약마지막구간");
+        Book book = createBook(10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.createNativeQuery("insert into order_summary (order_id, member_id, member_name, order_date, status, total_price)" +
+                        " values (:orderId, :memberId, '요약마지막구간', current_timestamp, 'ORDER', 10000)")
+                .setParameter("orderId", orderId + 1_000_000)
+                .setParameter("memberId", member.getId())
+                .executeUpdate();
+
+        //when
+        int deleted = orderSummaryRepository.deleteAfter(orderId - 1);
+
+        //then
+        em.clear();
+        assertEquals("주문이 지워진 행만 지운다.", 1, deleted);
+        assertNotNull(em.find(OrderSummary.class, orderId));
+        assertNull(em.find(OrderSummary.class, orderId + 1_000_000));
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    private Book createBook(int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName("요약상품");
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,222 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.OutboxEvent;
+import com.jrock.shop.domain.OutboxEventType;
+import com.jrock.shop.domain.item.Book;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+/**
+ * 아웃박스 (H2)
+ * 드레이너가 커밋된 이벤트를 읽어야 하므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+ * 테스트 핸들러를 등록하면 컨텍스트가 따로 뜬다. 다른 컨텍스트의 드레이너가 이벤트를 먼저 가져가지 않도록 메모리 DB 도 따로 쓴다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:outbox")
+public class OutboxDrainerTest {
+
+    @TestConfiguration
+    static class HandlerConfig {
+        @Bean
+        RecordingHandler recordingHandler(PlatformTransactionManager transactionManager) {
+            return new RecordingHandler(new TransactionTemplate(transactionManager));
+        }
+    }
+
+    /**
+     * 받은 이벤트를 기록한다. failOrderIds 에 있는 주문의 이벤트는 실패한다.
+     * @Transactional 빈처럼 드레이너의 트랜잭션에 참여한 채로 예외를 던진다. (참여한 트랜잭션이 rollback-only 가 된다)
+     */
+    static class RecordingHandler implements OutboxEventHandler {
+        final List<OutboxEvent> received = new CopyOnWriteArrayList<>();
+        final Set<Long> failOrderIds = ConcurrentHashMap.newKeySet();
+        final TransactionTemplate tx;
+
+        RecordingHandler(TransactionTemplate tx) {
+            this.tx = tx;
+        }
+
+        @Override
+        public boolean supports(OutboxEventType eventType) {
+            return true;
+        }
+
+        @Override
+        public void handle(OutboxEvent event) {
+            tx.executeWithoutResult(status -> {
+                if (failOrderIds.contains(event.getAggregateId())) {
+                    throw new IllegalStateException("handler failed");
+                }
+                received.add(event);
+            });
+        }
+    }
+
+    @Autowired OrderService orderService;
+    @Autowired OutboxDrainer outboxDrainer;
+    @Autowired RecordingHandler handler;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    Long memberId;
+    Long itemId;
+
+    @Test
+    public void 주문_취소_이벤트_전달() throws Exception {
+        //given
+        createMemberAndItem();
+
+        //when
+        Long orderId = orderService.order(memberId, itemId, 2);
+        orderService.cancelOrder(orderId);
+
+        //then
+        await(() -> eventsOf(orderId).size() == 2);
+        List<OutboxEvent> events = eventsOf(orderId);
+        assertEquals("쓰여진 순서대로 전달", OutboxEventType.ORDER_PLACED, events.get(0).getEventType());
+        assertEquals(OutboxEventType.ORDER_CANCELED, events.get(1).getEventType());
+        assertTrue(events.get(0).getPayload().contains("\"itemId\":" + itemId));
+        assertEquals("전달된 이벤트는 지워진다.", 0L, countOutbox(orderId));
+        assertTrue(outboxDrainer.stats().getDispatched() >= 2);
+    }
+
+    @Test
+    public void 롤백된_주문은_이벤트가_없다() throws Exception {
+        //given
+        createMemberAndItem();
+        long before = transactionTemplate.execute(status ->
+                em.createQuery("select count(e) from OutboxEvent e", Long.class).getSingleResult());
+
+        //when
+        try {
+            orderService.order(memberId, itemId, 100); // 재고 부족
+            fail();
+        } catch (RuntimeException expected) {
+        }
+
+        //then
+        long after = transactionTemplate.execute(status ->
+                em.createQuery("select count(e) from OutboxEvent e", Long.class).getSingleResult());
+        assertTrue(after <= before);
+    }
+
+    @Test
+    public void 핸들러가_실패하면_남겨두고_다시_전달() throws Exception {
+        //given
+        createMemberAndItem();
+        Long orderId = transactionTemplate.execute(status -> {
+            Long id = orderService.order(memberId, itemId, 1);
+            handler.failOrderIds.add(id); // 커밋 전에 실패하도록 설정
+            return id;
+        });
+
+        //when
+        await(() -> attemptsOf(orderId) >= 2);
+        handler.failOrderIds.remove(orderId);
+
+        //then
+        await(() -> eventsOf(orderId).size() == 1);
+        assertEquals(0L, countOutbox(orderId));
+        assertTrue(outboxDrainer.stats().getFailures() >= 2);
+    }
+
+    private List<OutboxEvent> eventsOf(Long orderId) {
+        return handler.received.stream()
+                .filter(e -> e.getAggregateId().equals(orderId))
+                .collect(toList());
+    }
+
+    private long countOutbox(Long orderId) {
+        return transactionTemplate.execute(status -> em.createQuery(
+                "select count(e) from OutboxEvent e where e.aggregateId = :orderId", Long.class)
+                .setParameter("orderId", orderId)
+                .getSingleResult());
+    }
+
+    private int attemptsOf(Long orderId) {
+        return transactionTemplate.execute(status -> em.createQuery(
+                "select e.attempts from OutboxEvent e where e.aggregateId = :orderId", Integer.class)
+                .setParameter("orderId", orderId)
+                .getResultStream()
+                .findFirst()
+                .orElse(0));
+    }
+
+    /**
+     * 드레이너를 직접 돌리면서 조건이 맞을 때까지 기다린다. (백그라운드 드레이너와 같이 돌아도 된다)
+     */
+    private void await(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.get()) {
+            assertTrue("10초 안에 조건을 만족해야 한다.", System.currentTimeMillis() < deadline);
+            outboxDrainer.drain();
+            Thread.sleep(20);
+        }
+    }
+
+    private void createMemberAndItem() {
+        memberId = transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("아웃박스-" + System.nanoTime());
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            return member.getId();
+        });
+        itemId = transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("아웃박스상품");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            return book.getId();
+        });
+    }
+
+    @After
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> orderIds = em.createQuery("select o.id from Order o where o.member.id = :memberId", Long.class)
+                    .setParameter("memberId", memberId)
+                    .getResultList();
+            if (!orderIds.isEmpty()) {
+                List<Long> deliveryIds = em.createQuery("select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                        .setParameter("orderIds", orderIds)
+                        .getResultList();
+                em.createQuery("delete from OutboxEvent e where e.aggregateId in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from OrderItem oi where oi.order.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Order o where o.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Delivery d where d.id in :deliveryIds")
+                        .setParameter("deliveryIds", deliveryIds)
+                        .executeUpdate();
+            }
+            em.createQuery("delete from Item i where i.id = :itemId").setParameter("itemId", itemId).executeUpdate();
+            em.createQuery("delete from Member m where m.id = :memberId").setParameter("memberId", memberId).executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.domain.item.Item;
+import com.jrock.shop.exception.NotEnoughStockException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 인기 상품 하나에 주문이 몰릴 때 재고 변경 방식(StockMode) 비교
+ *   - 재고보다 많은 주문을 여러 스레드에서 동시에 넣는다.
+ *   - 어떤 방식이든 "성공한 주문 수 + 남은 재고 = 처음 재고" 여야 한다. (유실된 업데이트, 초과 판매 X)
+ *   - 끝나면 방식별 처리량(성공한 주문/s, 시도/s)을 한번에 출력한다.
+ *
+ * 주의: DIRTY_CHECKING 은 @Version 이 없던 예전 동작이 아니다.
+ *   Item.version 은 모든 방식에 걸리므로, 예전에는 유실되던 동시 UPDATE 가 지금은 낙관적 락 충돌(conflict)로 실패한다.
+ *   (엔티티 매핑은 컨텍스트마다 바꿀 수 없어서 @Version 없는 기준선은 다시 잴 수 없다)
+ *   그래서 DIRTY_CHECKING 의 orders/s 는 "충돌을 재시도하지 않는 변경 감지" 의 처리량이고, 예전 기준선과 바로 비교하면 안 된다.
+ *
+ * 커밋된 데이터로 동시에 주문해야 하므로 @Transactional 을 걸지 않고, 끝나면 직접 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class StockContentionBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int ORDERS_PER_THREAD = 50;
+    static final int STOCK = 200;
+
+    @Autowired OrderFacade orderFacade;
+    @Autowired StockLedger stockLedger;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 재고변경_방식별_동시주문() throws Exception {
+        Map<StockMode, Result> results = new EnumMap<>(StockMode.class);
+        for (StockMode mode : StockMode.values()) {
+            Result result = run(mode);
+            results.put(mode, result);
+
+            System.out.printf("[StockContention] mode=%-18s threads=%d orders=%d success=%d notEnoughStock=%d conflict=%d stock=%d elapsed=%,dms (%.0f orders/s)%n",
+                    mode, THREADS, THREADS * ORDERS_PER_THREAD, result.success, result.notEnoughStock, result.conflict,
+                    result.remainingStock, result.elapsedMillis, result.ordersPerSecond());
+
+            assertEquals(mode + ": 성공한 주문 수만큼만 재고가 빠져야 한다.", STOCK, result.success + result.remainingStock);
+            assertTrue(mode + ": 재고는 음수가 될 수 없다.", result.remainingStock >= 0);
+            if (mode == StockMode.CONDITIONAL_UPDATE) {
+                assertEquals("조건부 UPDATE 는 재고가 다 팔릴 때까지 실패하지 않는다.", STOCK, result.success);
+            }
+        }
+
+        System.out.println("[StockContention] throughput (DIRTY_CHECKING runs with @Version, conflicts are not retried)");
+        results.forEach((mode, result) ->
+                System.out.printf("[StockContention]   %-18s %,8.0f orders/s %,8.0f attempts/s%n",
+                        mode, result.ordersPerSecond(), result.attemptsPerSecond()));
+    }
+
+    private Result run(StockMode mode) throws Exception {
+        Long[] ids = transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("동시주문-" + mode + "-" + System.nanoTime());
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+
+            Book book = new Book();
+            book.setName("인기상품-" + mode);
+            book.setPrice(10000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+            return new Long[]{member.getId(), book.getId()};
+        });
+        Long memberId = ids[0];
+        Long itemId = ids[1];
+
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger notEnoughStock = new AtomicInteger();
+        AtomicInteger conflict = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        try {
+                            orderFacade.order(memberId, itemId, 1, mode);
+                            success.incrementAndGet();
+                        } catch (NotEnoughStockException e) {
+                            notEnoughStock.incrementAndGet();
+                        } catch (OptimisticLockingFailureException e) {
+                            conflict.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+            while (stockLedger.flush() > 0) {
+                // LEDGER 는 반영 주기를 기다리지 않고 바로 DB 에 반영
+            }
+
+            int remainingStock = transactionTemplate.execute(status -> em.find(Item.class, itemId).getStockQuantity());
+            return new Result(success.get(), notEnoughStock.get(), conflict.get(), remainingStock, elapsedMillis);
+        } finally {
+            executor.shutdownNow();
+            cleanUp(memberId, itemId);
+        }
+    }
+
+    private void cleanUp(Long memberId, Long itemId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> orderIds = em.createQuery("select o.id from Order o where o.member.id = :memberId", Long.class)
+                    .setParameter("memberId", memberId)
+                    .getResultList();
+            if (!orderIds.isEmpty()) {
+                List<Long> deliveryIds = em.createQuery("select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                        .setParameter("orderIds", orderIds)
+                        .getResultList();
+                em.createQuery("delete from OrderItem oi where oi.order.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Order o where o.id in :orderIds")
+                        .setParameter("orderIds", orderIds)
+                        .executeUpdate();
+                em.createQuery("delete from Delivery d where d.id in :deliveryIds")
+                        .setParameter("deliveryIds", deliveryIds)
+                        .executeUpdate();
+            }
+            em.createQuery("delete from Item i where i.id = :itemId").setParameter("itemId", itemId).executeUpdate();
+            em.createQuery("delete from Member m where m.id = :memberId").setParameter("memberId", memberId).executeUpdate();
+        });
+    }
+
+    static class Result {
+        final int success;
+        final int notEnoughStock;
+        final int conflict;
+        final int remainingStock;
+        final long elapsedMillis;
+
+        Result(int success, int notEnoughStock, int conflict, int remainingStock, long elapsedMillis) {
+            this.success = success;
+            this.notEnoughStock = notEnoughStock;
+            this.conflict = conflict;
+            this.remainingStock = remainingStock;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        double ordersPerSecond() {
+            return success * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        double attemptsPerSecond() {
+            return THREADS * ORDERS_PER_THREAD * 1000.0 / Math.max(1, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.jrock.shop.service;
+
+import com.jrock.shop.domain.Address;
+import com.jrock.shop.domain.Member;
+import com.jrock.shop.domain.Order;
+import com.jrock.shop.domain.OrderItem;
+import com.jrock.shop.domain.OrderStatus;
+import com.jrock.shop.domain.item.Book;
+import com.jrock.shop.exception.NotEnoughStockException;
+import com.jrock.shop.repository.OrderRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class StockLedgerTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired StockLedger stockLedger;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 예약은_flush_때_재고에_반영() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 3, StockMode.LEDGER);
+
+        //then
+        assertEquals("반영 전에는 DB 재고가 그대로다.", 10, stockQuantity(book.getId()));
+        assertFalse(orderItem(orderId).isStockApplied());
+
+        stockLedger.flush();
+
+        assertEquals("반영 후에는 예약 수량만큼 빠진다.", 7, stockQuantity(book.getId()));
+        assertTrue(orderItem(orderId).isStockApplied());
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 가용재고_초과() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        orderService.order(member.getId(), book.getId(), 6, StockMode.LEDGER);
+
+        //when 아직 DB 에 반영 안된 예약도 가용 재고에서 빠져있어야 한다.
+        orderService.order(member.getId(), book.getId(), 5, StockMode.LEDGER);
+
+        //then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 반영_전_취소는_재고를_건드리지_않는다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 3, StockMode.LEDGER);
+
+        //when
+        orderService.cancelOrder(orderId, StockMode.LEDGER);
+        stockLedger.flush();
+
+        //then
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId).getStatus());
+        assertEquals(10, stockQuantity(book.getId()));
+    }
+
+    @Test
+    public void 반영_후_취소는_재고를_되돌린다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 3, StockMode.LEDGER);
+        stockLedger.flush();
+
+        //when 설정된 모드와 상관없이 취소
+        orderService.cancelOrder(orderId);
+
+        //then
+        assertEquals(10, stockQuantity(book.getId()));
+    }
+
+    @Test
+    public void 장바구니_주문도_장부의_예약을_본다() throws Exception {
+        //given
+        Member member = createMember();
+        Book reserved = createBook(10);
+        Book other = createBook(10);
+        orderService.order(member.getId(), reserved.getId(), 6, StockMode.LEDGER); // 아직 DB 에 반영 안된 예약
+
+        //when 설정된 모드(CONDITIONAL_UPDATE)로 주문해도 예약이 있는 상품은 가용 재고 4 개로 판단
+        try {
+            orderService.order(member.getId(), List.of(cartLine(other.getId(), 1), cartLine(reserved.getId(), 5)));
+            fail("재고 수량 부족 예외가 발생해야 한다.");
+        } catch (NotEnoughStockException expected) {
+        }
+        Long orderId = orderService.order(member.getId(), List.of(cartLine(reserved.getId(), 4)));
+
+        //then
+        assertFalse("장부로 예약한 주문상품", orderItem(orderId).isStockApplied());
+        stockLedger.flush();
+        assertEquals(0, stockQuantity(reserved.getId()));
+    }
+
+    @Test
+    public void 단건_일괄_주문도_장부의_예약을_본다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook(10);
+        orderService.order(member.getId(), book.getId(), 6, StockMode.LEDGER); // 아직 DB 에 반영 안된 예약
+
+        //when 다른 모드로 주문해도 가용 재고 4 개로 판단
+        try {
+            orderService.order(member.getId(), book.getId(), 5, StockMode.CONDITIONAL_UPDATE);
+            fail("재고 수량 부족 예외가 발생해야 한다.");
+        } catch (NotEnoughStockException expected) {
+        }
+        List<OrderLineResult> results = orderService.orderAll(List.of(orderLine(member.getId(), book.getId(), 5),
+                orderLine(member.getId(), book.getId(), 3)), StockMode.DIRTY_CHECKING);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1, StockMode.CONDITIONAL_UPDATE);
+
+        //then
+        assertFalse("재고 부족", results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse("장부로 예약한 주문상품", orderItem(orderId).isStockApplied());
+        stockLedger.flush();
+        assertEquals(0, stockQuantity(book.getId()));
+    }
+
+    /**
+     * 카운터 조정은 커밋 후에 하므로 @Transactional 을 걸지 않는다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 다른_모드로_취소해도_카운터를_되돌린다() throws Exception {
+        //given
+        Long memberId = transactionTemplate.execute(status -> createMember("장부취소-" + System.nanoTime()).getId());
+        Long bookId = transactionTemplate.execute(status -> createBook(10).getId());
+        Long conditional = orderService.order(memberId, bookId, 3, StockMode.CONDITIONAL_UPDATE); // 카운터 생기기 전 주문
+        orderService.order(memberId, bookId, 7, StockMode.LEDGER); // 가용 재고 7 -> 0
+
+        //when
+        orderService.cancelOrder(conditional, StockMode.CONDITIONAL_UPDATE);
+
+        //then 되돌린 3 개를 장부로 다시 팔 수 있다.
+        orderService.order(memberId, bookId, 3, StockMode.LEDGER);
+        stockLedger.flush();
+        assertEquals(0, (int) transactionTemplate.execute(status -> stockQuantity(bookId)));
+    }
+
+    private OrderLine orderLine(Long memberId, Long itemId, int count) {
+        OrderLine line = new OrderLine();
+        line.setMemberId(memberId);
+        line.setItemId(itemId);
+        line.setCount(count);
+        return line;
+    }
+
+    private CartLine cartLine(Long itemId, int count) {
+        CartLine line = new CartLine();
+        line.setItemId(itemId);
+        line.setCount(count);
+        return line;
+    }
+
+    private int stockQuantity(Long itemId) {
+        return em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", itemId)
+                .getSingleResult();
+    }
+
+    private OrderItem orderItem(Long orderId) {
+        Order order = orderRepository.findOne(orderId);
+        OrderItem orderItem = order.getOrderItems().get(0);
+        em.flush();
+        em.refresh(orderItem);
+        return orderItem;
+    }
+
+    private Book createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        return createMember("회원1");
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
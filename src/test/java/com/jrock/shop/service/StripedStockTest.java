@@ -0,0 +1,80 @@
+package com.jrock.shop.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StripedStockTest {
+
+    @Test
+    public void 칸을_넘는_수량은_여러_칸에서_모은다() throws Exception {
+        StripedStock stock = new StripedStock(10, 4); // 3, 3, 2, 2
+
+        assertTrue(stock.tryTake(7));
+        assertEquals(3, stock.sum());
+        assertFalse("모자라면 아무것도 바꾸지 않는다.", stock.tryTake(4));
+        assertEquals(3, stock.sum());
+        assertTrue(stock.tryTake(3));
+        assertEquals(0, stock.sum());
+    }
+
+    @Test
+    public void 음수_조정() throws Exception {
+        StripedStock stock = new StripedStock(4, 4);
+
+        stock.add(-3); // 재고 직접 수정으로 줄어든 경우
+        assertEquals(1, stock.sum());
+        assertFalse(stock.tryTake(2));
+        assertTrue(stock.tryTake(1));
+        assertFalse(stock.tryTake(1));
+
+        stock.add(-2); // 예약보다 재고를 더 줄이면 음수
+        assertEquals(-2, stock.sum());
+        stock.add(3); // 취소
+        assertEquals(1, stock.sum());
+        assertFalse(stock.tryTake(2));
+        assertTrue(stock.tryTake(1));
+    }
+
+    @Test
+    public void 동시에_차감해도_초과판매_없음() throws Exception {
+        int threads = 8;
+        int stock = 1000;
+        StripedStock stripedStock = new StripedStock(stock, 4);
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        int count = i % 3 + 1;
+                        if (stripedStock.tryTake(count)) {
+                            taken.addAndGet(count);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(stock, taken.get() + stripedStock.sum());
+        assertTrue(stripedStock.sum() >= 0);
+    }
+}